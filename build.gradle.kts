@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("maven-publish")
     alias(libs.plugins.shadow)
+    alias(libs.plugins.jmh)
 }
 
 group = "cz.foresttech"
@@ -78,6 +79,15 @@ tasks.jar {
     archiveClassifier.set("raw")
 }
 
+// ./gradlew jmh でベンチマークを実行します。Redisサーバーは不要です
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(2)
+    iterations.set(3)
+    fork.set(1)
+    includes.set(listOf(providers.gradleProperty("jmhInclude").getOrElse(".*")))
+}
+
 tasks.publishToMavenLocal {
     dependsOn(tasks.shadowJar)
 }
@@ -0,0 +1,98 @@
+#!/bin/sh
+# ClusterTransportの動作を確認するためのローカルのRedis Cluster（Redis 7以降、3つのマスター）を操作するスクリプト
+#
+# 使い方:
+#   scripts/redis-cluster.sh up                  127.0.0.1:7001-7003 でクラスタを起動します
+#   scripts/redis-cluster.sh move <チャンネル>    チャンネルのスロットを次のノードに移行します
+#   scripts/redis-cluster.sh channels            ノードごとに購読されているシャードチャンネルを表示します
+#   scripts/redis-cluster.sh down                クラスタを停止し、データを削除します
+#
+# redis-server と redis-cli は PATH から使用されます（REDIS_SERVER と REDIS_CLI で変更できます）
+set -eu
+
+REDIS_SERVER=${REDIS_SERVER:-redis-server}
+REDIS_CLI=${REDIS_CLI:-redis-cli}
+HOST=127.0.0.1
+PORTS="7001 7002 7003"
+DATA_DIR=${CLUSTER_DIR:-${TMPDIR:-/tmp}/forestredis-cluster}
+
+cli() {
+    port=$1
+    shift
+    "$REDIS_CLI" -h "$HOST" -p "$port" "$@"
+}
+
+up() {
+    nodes=""
+    for port in $PORTS; do
+        mkdir -p "$DATA_DIR/$port"
+        "$REDIS_SERVER" --port "$port" --cluster-enabled yes --cluster-config-file nodes.conf \
+            --dir "$DATA_DIR/$port" --appendonly no --save "" --daemonize yes --logfile "$DATA_DIR/$port/log"
+        nodes="$nodes $HOST:$port"
+    done
+
+    # ノードが起動するまで待機する
+    for port in $PORTS; do
+        until cli "$port" ping >/dev/null 2>&1; do
+            sleep 0.2
+        done
+    done
+
+    # shellcheck disable=SC2086
+    "$REDIS_CLI" --cluster create $nodes --cluster-replicas 0 --cluster-yes
+}
+
+# CLUSTER NODES の出力から、スロットを所有するノードのポートを取得する
+owner_of() {
+    cli "${PORTS%% *}" cluster nodes | awk -v slot="$1" '{
+        for (i = 9; i <= NF; i++) {
+            if ($i ~ /^\[/) continue
+            n = split($i, range, "-")
+            if (slot >= range[1] && slot <= range[n]) { split($2, address, "[:@]"); print address[2]; exit }
+        }
+    }'
+}
+
+# チャンネルのスロットを現在のノードから次のノードに移行する。pubsubのチャンネルはキーではないため、MIGRATEは不要
+move() {
+    channel=$1
+    slot=$(cli "${PORTS%% *}" cluster keyslot "$channel")
+    source_port=$(owner_of "$slot")
+    if [ -z "$source_port" ]; then
+        echo "スロット $slot を所有するノードが見つかりません" >&2
+        exit 1
+    fi
+
+    # 次のポートのノードに移行する（最後のノードの場合は最初のノード）
+    target_port=$(echo "$PORTS $PORTS" | tr ' ' '\n' | grep -A1 -x "$source_port" | sed -n 2p)
+    source_id=$(cli "$source_port" cluster myid)
+    target_id=$(cli "$target_port" cluster myid)
+
+    cli "$target_port" cluster setslot "$slot" importing "$source_id" >/dev/null
+    cli "$source_port" cluster setslot "$slot" migrating "$target_id" >/dev/null
+    for port in $PORTS; do
+        cli "$port" cluster setslot "$slot" node "$target_id" >/dev/null
+    done
+    echo "チャンネル '$channel'（スロット $slot）を $source_port から $target_port に移行しました"
+}
+
+channels() {
+    for port in $PORTS; do
+        echo "$HOST:$port: $(cli "$port" pubsub shardchannels | tr '\n' ' ')"
+    done
+}
+
+down() {
+    for port in $PORTS; do
+        cli "$port" shutdown nosave >/dev/null 2>&1 || true
+    done
+    rm -rf "$DATA_DIR"
+}
+
+case "${1:-}" in
+    up) up ;;
+    move) [ $# -eq 2 ] || { echo "使い方: $0 move <チャンネル>" >&2; exit 1; }; move "$2" ;;
+    channels) channels ;;
+    down) down ;;
+    *) echo "使い方: $0 {up|move <チャンネル>|channels|down}" >&2; exit 1 ;;
+esac
@@ -0,0 +1,57 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.adapter.ILoggerAdapter;
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ベンチマーク用の{@link IForestRedisPlugin}の実装。Redisサーバーやプラットフォームを必要とせず、
+ * 受信したメッセージは{@link Blackhole}で消費されます。
+ */
+public class BenchmarkPlugin implements IForestRedisPlugin {
+
+    private final ILoggerAdapter loggerAdapter = new ILoggerAdapter() {
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warning(String message) {
+        }
+
+        @Override
+        public void error(String message) {
+        }
+    };
+
+    private Blackhole blackhole;
+
+    /**
+     * 受信したメッセージを消費する{@link Blackhole}を設定します
+     *
+     * @param blackhole 使用する{@link Blackhole}
+     */
+    public void setBlackhole(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        Thread thread = new Thread(task, "forestredis-benchmark");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void onMessageReceived(String channel, MessageTransferObject messageTransferObject) {
+        if (this.blackhole != null) {
+            this.blackhole.consume(messageTransferObject);
+        }
+    }
+
+    @Override
+    public ILoggerAdapter logger() {
+        return loggerAdapter;
+    }
+
+}
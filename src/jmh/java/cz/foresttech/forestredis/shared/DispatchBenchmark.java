@@ -0,0 +1,52 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.codec.EnvelopeFormat;
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+import cz.foresttech.forestredis.shared.models.RedisConfiguration;
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 受信したメッセージのデコードからイベントまたはハンドラーへの配信までの経路を測定するベンチマーク。
+ * Redisサーバーに接続せずに実行されます。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DispatchBenchmark {
+
+    private static final String CHANNEL = "benchmark";
+
+    @Param({"JSON", "BINARY"})
+    public EnvelopeFormat format;
+
+    @Param({"event", "handler"})
+    public String target;
+
+    private BenchmarkPlugin plugin;
+    private RedisManager redisManager;
+    private byte[] message;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.plugin = new BenchmarkPlugin();
+        this.plugin.setBlackhole(blackhole);
+        this.redisManager = new RedisManager(this.plugin, "benchmark", new RedisConfiguration("localhost", 6379, null, null, false), new RedisSettings());
+
+        if (this.target.equals("handler")) {
+            this.redisManager.registerHandler(CHANNEL, Payloads.Payload.class, (channel, messageTransferObject, payload) -> blackhole.consume(payload));
+        }
+
+        this.message = MessageTransferObject.wrap("sender", Payloads.create(256), System.currentTimeMillis()).encode(this.format);
+    }
+
+    @Benchmark
+    public void decodeAndDispatch() {
+        MessageTransferObject messageTransferObject = MessageTransferObject.decode(this.message);
+        this.redisManager.dispatchMessage(CHANNEL, messageTransferObject);
+    }
+
+}
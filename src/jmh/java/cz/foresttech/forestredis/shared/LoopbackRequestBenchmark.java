@@ -0,0 +1,53 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+import cz.foresttech.forestredis.shared.transport.TransportType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link cz.foresttech.forestredis.shared.transport.LoopbackTransport}を使用して、公開、送信キュー、配信、
+ * レスポンスまでのリクエスト/レスポンスの往復を測定するベンチマーク。Redisサーバーに接続せずに実行されます。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoopbackRequestBenchmark {
+
+    private static final String CHANNEL = "benchmark-request";
+
+    private RedisManager requester;
+    private RedisManager responder;
+    private Payloads.Payload payload;
+
+    @Setup
+    public void setup() {
+        this.requester = createManager("requester");
+        this.responder = createManager("responder");
+        this.responder.registerResponder(CHANNEL, Payloads.Payload.class, (channel, messageTransferObject, payload) -> payload);
+        this.responder.subscribe(CHANNEL);
+        this.payload = Payloads.create(256);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.requester.close();
+        this.responder.close();
+    }
+
+    @Benchmark
+    public Payloads.Payload requestResponse() {
+        return this.requester.request(CHANNEL, this.payload, Payloads.Payload.class, 1000).join();
+    }
+
+    private static RedisManager createManager(String serverIdentifier) {
+        RedisSettings redisSettings = new RedisSettings();
+        redisSettings.setTransportType(TransportType.LOOPBACK);
+
+        RedisManager redisManager = new RedisManager(new BenchmarkPlugin(), serverIdentifier, null, redisSettings);
+        redisManager.setup();
+        return redisManager;
+    }
+
+}
@@ -0,0 +1,40 @@
+package cz.foresttech.forestredis.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ベンチマークで使用するペイロードを作成するためのクラス。
+ */
+public final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * おおよそ指定されたサイズにシリアル化されるペイロードを作成します
+     *
+     * @param size シリアル化後のおおよそのサイズ（バイト）
+     * @return 作成されたペイロード
+     */
+    public static Payload create(int size) {
+        Payload payload = new Payload();
+        payload.name = "player";
+        payload.online = true;
+        payload.values = new ArrayList<>();
+        for (int i = 0; payload.values.size() * 8 < size; i++) {
+            payload.values.add(1_000_000 + i);
+        }
+        return payload;
+    }
+
+    /**
+     * ベンチマーク用のペイロード
+     */
+    public static class Payload {
+        public String name;
+        public boolean online;
+        public List<Integer> values;
+    }
+
+}
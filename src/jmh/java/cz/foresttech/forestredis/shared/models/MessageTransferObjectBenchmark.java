@@ -0,0 +1,76 @@
+package cz.foresttech.forestredis.shared.models;
+
+import cz.foresttech.forestredis.shared.Payloads;
+import cz.foresttech.forestredis.shared.codec.EnvelopeFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageTransferObject}のシリアル化とデシリアライズを測定するベンチマーク。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageTransferObjectBenchmark {
+
+    @Param({"64", "1024", "16384"})
+    public int payloadSize;
+
+    private Payloads.Payload payload;
+    private MessageTransferObject messageTransferObject;
+    private String json;
+    private byte[] jsonData;
+    private byte[] binaryData;
+
+    @Setup
+    public void setup() {
+        this.payload = Payloads.create(this.payloadSize);
+        this.messageTransferObject = MessageTransferObject.wrap("sender", this.payload, System.currentTimeMillis());
+        this.json = this.messageTransferObject.toJson();
+        this.jsonData = this.messageTransferObject.encode(EnvelopeFormat.JSON);
+        this.binaryData = this.messageTransferObject.encode(EnvelopeFormat.BINARY);
+    }
+
+    @Benchmark
+    public MessageTransferObject wrap() {
+        return MessageTransferObject.wrap("sender", this.payload, 0L);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return this.messageTransferObject.toJson();
+    }
+
+    @Benchmark
+    public MessageTransferObject fromJson() {
+        return MessageTransferObject.fromJson(this.json);
+    }
+
+    @Benchmark
+    public Payloads.Payload parseMessageObject() {
+        // キャッシュされていない解析を測定するため、毎回新しいエンベロープを使用する
+        return MessageTransferObject.fromJson(this.json).parseMessageObject(Payloads.Payload.class);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return this.messageTransferObject.encode(EnvelopeFormat.JSON);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return this.messageTransferObject.encode(EnvelopeFormat.BINARY);
+    }
+
+    @Benchmark
+    public Payloads.Payload decodeJsonAndParse() {
+        return MessageTransferObject.decode(this.jsonData).parseMessageObject(Payloads.Payload.class);
+    }
+
+    @Benchmark
+    public Payloads.Payload decodeBinaryAndParse() {
+        return MessageTransferObject.decode(this.binaryData).parseMessageObject(Payloads.Payload.class);
+    }
+
+}
@@ -1,6 +1,7 @@
 package cz.foresttech.forestredis.bungee;
 
 import cz.foresttech.forestredis.bungee.adapter.BungeeConfigAdapter;
+import cz.foresttech.forestredis.bungee.commands.ForestRedisCommand;
 import cz.foresttech.forestredis.bungee.events.RedisMessageReceivedEvent;
 import cz.foresttech.forestredis.shared.*;
 import cz.foresttech.forestredis.shared.adapter.IConfigurationAdapter;
@@ -25,6 +26,8 @@ public class ForestRedisBungee extends Plugin implements IForestRedisPlugin {
         loggerAdapter = new JUtilLoggerAdapter(getLogger());
 
         load();
+
+        getProxy().getPluginManager().registerCommand(this, new ForestRedisCommand());
     }
 
     @Override
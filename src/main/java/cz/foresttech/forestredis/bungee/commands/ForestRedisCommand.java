@@ -0,0 +1,29 @@
+package cz.foresttech.forestredis.bungee.commands;
+
+import cz.foresttech.forestredis.shared.commands.AdminCommandExecutor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.TabExecutor;
+
+/**
+ * ForestRedisAPIの管理コマンドのBungeeCord実装。
+ */
+public class ForestRedisCommand extends Command implements TabExecutor {
+
+    public ForestRedisCommand() {
+        super(AdminCommandExecutor.COMMAND_NAME, AdminCommandExecutor.PERMISSION);
+    }
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        for (String line : AdminCommandExecutor.execute(args)) {
+            sender.sendMessage(new TextComponent(line));
+        }
+    }
+
+    @Override
+    public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
+        return AdminCommandExecutor.complete(args);
+    }
+}
@@ -0,0 +1,123 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.models.MessagePriority;
+import cz.foresttech.forestredis.shared.models.OverflowPolicy;
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * APIを使用して実行時に登録されたチャンネルの設定を保持するためのクラス。
+ * <p>
+ * リロードでは設定ファイルから新しい{@link RedisSettings}が作成されるため、APIで登録された設定は
+ * 新しい設定に適用されてから使用されます。これにより、プラグインが登録した永続チャンネルや優先度はリロード後も維持されます。
+ */
+class ChannelRegistrations {
+
+    /**
+     * APIで登録された永続チャンネル
+     */
+    private final Set<String> durableChannels;
+
+    /**
+     * APIで登録された統合チャンネル
+     */
+    private final Set<String> conflatedChannels;
+
+    /**
+     * APIで設定されたチャンネルの優先度（NORMALは設定ファイルの指定を削除します）
+     */
+    private final Map<String, MessagePriority> channelPriorities;
+
+    /**
+     * APIで設定されたチャンネルの配信キューが満杯の場合の動作
+     */
+    private final Map<String, OverflowPolicy> channelOverflowPolicies;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    ChannelRegistrations() {
+        this.durableChannels = ConcurrentHashMap.newKeySet();
+        this.conflatedChannels = ConcurrentHashMap.newKeySet();
+        this.channelPriorities = new ConcurrentHashMap<>();
+        this.channelOverflowPolicies = new ConcurrentHashMap<>();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 永続チャンネルの登録を記録します。
+     *
+     * @param channels 永続チャンネルとして登録するチャンネル
+     */
+    void addDurableChannels(List<String> channels) {
+        this.durableChannels.addAll(channels);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 統合チャンネルの登録を記録します。
+     *
+     * @param channels 統合チャンネルとして登録するチャンネル
+     */
+    void addConflatedChannels(List<String> channels) {
+        this.conflatedChannels.addAll(channels);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルの優先度の設定を記録します。
+     *
+     * @param channels 優先度を設定するチャンネル
+     * @param priority 設定する優先度（nullの場合はNORMALとして扱います）
+     */
+    void setChannelPriority(List<String> channels, MessagePriority priority) {
+        for (String channel : channels) {
+            this.channelPriorities.put(channel, priority != null ? priority : MessagePriority.NORMAL);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルの配信キューが満杯の場合の動作の設定を記録します。
+     *
+     * @param channels 動作を設定するチャンネル
+     * @param policy   設定する動作（nullの場合はAPIでの設定を削除します）
+     */
+    void setOverflowPolicy(List<String> channels, OverflowPolicy policy) {
+        for (String channel : channels) {
+            if (policy == null) {
+                this.channelOverflowPolicies.remove(channel);
+                continue;
+            }
+            this.channelOverflowPolicies.put(channel, policy);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 記録されたすべての登録を提供された設定に適用します。設定ファイルの同じチャンネルの指定よりも優先されます。
+     *
+     * @param redisSettings 登録を適用する設定
+     */
+    void applyTo(RedisSettings redisSettings) {
+        redisSettings.addDurableChannels(this.durableChannels);
+        redisSettings.addConflatedChannels(this.conflatedChannels);
+        for (Map.Entry<String, MessagePriority> entry : this.channelPriorities.entrySet()) {
+            redisSettings.setChannelPriority(List.of(entry.getKey()), entry.getValue());
+        }
+        for (Map.Entry<String, OverflowPolicy> entry : this.channelOverflowPolicies.entrySet()) {
+            redisSettings.setOverflowPolicy(List.of(entry.getKey()), entry.getValue());
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
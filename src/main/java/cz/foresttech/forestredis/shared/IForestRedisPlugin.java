@@ -2,8 +2,14 @@ package cz.foresttech.forestredis.shared;
 
 import cz.foresttech.forestredis.shared.adapter.IConfigurationAdapter;
 import cz.foresttech.forestredis.shared.adapter.ILoggerAdapter;
+import cz.foresttech.forestredis.shared.codec.EnvelopeFormat;
+import cz.foresttech.forestredis.shared.models.ExecutorType;
+import cz.foresttech.forestredis.shared.models.MessagePriority;
 import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+import cz.foresttech.forestredis.shared.models.OverflowPolicy;
 import cz.foresttech.forestredis.shared.models.RedisConfiguration;
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+import cz.foresttech.forestredis.shared.transport.TransportType;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -59,11 +65,6 @@ public interface IForestRedisPlugin {
      * configからRedisManagerを読み込むメソッド
      */
     default void load() {
-        // RedisManagerが既に初期化されている場合は閉じる
-        if (RedisManager.getAPI() != null) {
-            RedisManager.getAPI().close();
-        }
-
         // 設定ファイルを読み込む
         IConfigurationAdapter configAdapter = this.getConfigAdapter();
         if (!configAdapter.isSetup()) {
@@ -93,13 +94,44 @@ public interface IForestRedisPlugin {
                 configAdapter.getBoolean("redis.ssl", false)
         );
 
+        // RedisSettingsを構築する
+        RedisSettings redisSettings = new RedisSettings();
+        redisSettings.setTransportType(TransportType.fromName(configAdapter.getString("transport", null), redisSettings.getTransportType()));
+        redisSettings.setClusterNodes(configAdapter.getStringList("redis.clusterNodes"));
+        redisSettings.setPublishBatchSize(configAdapter.getInt("publisher.batchSize", redisSettings.getPublishBatchSize()));
+        redisSettings.setPublishMaxDelayMillis(configAdapter.getInt("publisher.maxDelayMillis", (int) redisSettings.getPublishMaxDelayMillis()));
+        redisSettings.setAlwaysFireEvents(configAdapter.getBoolean("events.alwaysFire", redisSettings.isAlwaysFireEvents()));
+        redisSettings.setEnvelopeFormat(EnvelopeFormat.fromName(configAdapter.getString("publisher.envelopeFormat", null), redisSettings.getEnvelopeFormat()));
+        redisSettings.addDurableChannels(configAdapter.getStringList("streams.channels"));
+        redisSettings.setChannelPriority(configAdapter.getStringList("priorities.high"), MessagePriority.HIGH);
+        redisSettings.setChannelPriority(configAdapter.getStringList("priorities.bulk"), MessagePriority.BULK);
+        redisSettings.setInboundQueueSize(configAdapter.getInt("inbound.queueSize", redisSettings.getInboundQueueSize()));
+        redisSettings.setInboundStripes(configAdapter.getInt("inbound.stripes", redisSettings.getInboundStripes()));
+        redisSettings.setInboundExecutorType(ExecutorType.fromName(configAdapter.getString("inbound.executor", null), redisSettings.getInboundExecutorType()));
+        redisSettings.addConflatedChannels(configAdapter.getStringList("inbound.conflate"));
+        redisSettings.setOverflowPolicy(OverflowPolicy.fromName(configAdapter.getString("inbound.overflowPolicy", null), redisSettings.getOverflowPolicy()));
+        redisSettings.setOverflowPolicy(configAdapter.getStringList("inbound.channels.block"), OverflowPolicy.BLOCK);
+        redisSettings.setOverflowPolicy(configAdapter.getStringList("inbound.channels.dropOldest"), OverflowPolicy.DROP_OLDEST);
+        redisSettings.setOverflowPolicy(configAdapter.getStringList("inbound.channels.dropNewest"), OverflowPolicy.DROP_NEWEST);
+        redisSettings.setStreamMaxLength(configAdapter.getInt("streams.maxLength", (int) redisSettings.getStreamMaxLength()));
+        redisSettings.setStreamReadCount(configAdapter.getInt("streams.readCount", redisSettings.getStreamReadCount()));
+        redisSettings.setStreamBlockMillis(configAdapter.getInt("streams.blockMillis", redisSettings.getStreamBlockMillis()));
+        redisSettings.setKeyValueBatchSize(configAdapter.getInt("keyValue.batchSize", redisSettings.getKeyValueBatchSize()));
+        redisSettings.setKeyValueMaxDelayMillis(configAdapter.getInt("keyValue.maxDelayMillis", (int) redisSettings.getKeyValueMaxDelayMillis()));
+        redisSettings.setCounterFlushMillis(configAdapter.getInt("counters.flushMillis", (int) redisSettings.getCounterFlushMillis()));
+        redisSettings.setCounterCacheMillis(configAdapter.getInt("counters.cacheMillis", (int) redisSettings.getCounterCacheMillis()));
+        redisSettings.setLockLeaseMillis(configAdapter.getInt("locks.leaseMillis", (int) redisSettings.getLockLeaseMillis()));
+        redisSettings.setCachePrefixes(configAdapter.getStringList("cache.prefixes"));
+        redisSettings.setCacheMaxSize(configAdapter.getInt("cache.maxSize", redisSettings.getCacheMaxSize()));
+        redisSettings.setCacheTtlMillis(configAdapter.getInt("cache.ttlMillis", (int) redisSettings.getCacheTtlMillis()));
 
         // RedisManagerを設定する
         List<String> channels = configAdapter.getStringList("channels");
 
         // RedisManagerオブジェクトを初期化する
         if (RedisManager.getAPI() == null) {
-            RedisManager.init(this, serverIdentifier, redisConfiguration);
+            RedisManager.init(this, serverIdentifier, redisConfiguration, redisSettings);
+            RedisManager.getAPI().setConfigChannels(channels);
             if (channels.isEmpty()) {
                 RedisManager.getAPI().setup();
                 return;
@@ -110,12 +142,12 @@ public interface IForestRedisPlugin {
             return;
         }
 
-        // 既に初期化されている場合はRedisManagerをリロードする
-        RedisManager.getAPI().reload(serverIdentifier, redisConfiguration, true);
-        if (!channels.isEmpty()) {
-            String[] channelsArray = channels.toArray(new String[0]);
-            RedisManager.getAPI().subscribe(channelsArray);
-        }
+        // 既に初期化されている場合は、接続を維持したまま新しい設定を反映する
+        RedisManager.getAPI().hotReload(serverIdentifier, redisConfiguration, redisSettings, channels).thenAccept(success -> {
+            if (!success) {
+                this.logger().warning("新しい設定を反映できませんでした！以前の設定を使用し続けます。");
+            }
+        });
 
     }
 
@@ -0,0 +1,349 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.metrics.RedisMetrics;
+import cz.foresttech.forestredis.shared.models.MessagePriority;
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+import cz.foresttech.forestredis.shared.models.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 1つの優先度（およびチャンネルのハッシュによるストライプ）の受信メッセージをキューに溜め、専用のスレッドからデコードして配信するためのクラス。
+ * <p>
+ * トランスポートのスレッドはメッセージをレーンに渡すだけなので、あるレーンの配信が遅れても、
+ * 購読接続からの読み取りや他の優先度のメッセージの配信は遅延しません。同じレーン内のメッセージは受信した順に配信されます。
+ * <p>
+ * キューのサイズは制限されており、満杯の場合はチャンネルの{@link OverflowPolicy}に従って動作します。
+ * 破棄されたメッセージは{@link RedisMetrics}に記録されます。配信の完了のコールバックを持つメッセージ（永続チャンネルのエントリ）は、
+ * 配信された後にのみ配信済みとして通知されるため、破棄されたエントリはトランスポートで確認されずに再び読み取られます。
+ * <p>
+ * 受信時に統合するチャンネルでは、キューに溜まっている同じ統合のキーのメッセージのうち最新のもののみが配信されます。
+ * キューが空の場合はすぐに配信されるため、統合によって配信が遅延することはありません。
+ */
+class InboundLane implements Runnable {
+
+    /**
+     * キューが空の場合にループが停止状態を確認する間隔（ミリ秒）
+     */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * 1回に取り出して統合するメッセージの最大数
+     */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * 停止時にすべてのレーンで残っているメッセージの配信を待機する最大時間（ミリ秒）
+     */
+    static final long CLOSE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * メッセージをデコードして配信するマネージャー
+     */
+    private final RedisManager redisManager;
+
+    /**
+     * レーンの優先度
+     */
+    private final MessagePriority priority;
+
+    /**
+     * 配信待ちのメッセージのキュー
+     */
+    private final BlockingQueue<InboundMessage> queue;
+
+    /**
+     * ループが終了したことを通知するためのラッチ
+     */
+    private final CountDownLatch stopped;
+
+    /**
+     * レーンが新しいメッセージを受け付けているかどうか
+     */
+    private volatile boolean running;
+
+    /**
+     * 停止の待機時間を超えたため、残りのメッセージを配信せずに破棄するかどうか
+     */
+    private volatile boolean discarding;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * レーンのインスタンスを構築します。ループは{@link #run()}が呼び出されるまで開始されません。
+     *
+     * @param redisManager メッセージをデコードして配信するマネージャー
+     * @param priority     レーンの優先度
+     * @param capacity     キューの最大サイズ
+     */
+    InboundLane(RedisManager redisManager, MessagePriority priority, int capacity) {
+        this.redisManager = redisManager;
+        this.priority = priority;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.stopped = new CountDownLatch(1);
+        this.running = true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを配信キューに追加します。キューが満杯の場合は提供された{@link OverflowPolicy}に従って動作します。
+     *
+     * @param channel     メッセージを受信したチャンネル
+     * @param message     受信したメッセージのデータ
+     * @param policy      キューが満杯の場合の動作
+     * @param onCompleted メッセージが配信または破棄されたときに呼び出すコールバック（nullの場合は呼び出しません）
+     * @return レーンが停止している場合は 'false' を返します（メッセージが破棄された場合は 'true'）
+     */
+    boolean offer(String channel, byte[] message, OverflowPolicy policy, Consumer<Boolean> onCompleted) {
+        if (!this.running) {
+            return false;
+        }
+
+        InboundMessage inboundMessage = new InboundMessage(channel, message, onCompleted);
+        if (this.queue.offer(inboundMessage)) {
+            return true;
+        }
+
+        switch (policy) {
+            case DROP_NEWEST -> {
+                this.redisManager.getMetrics().recordDropped(channel);
+                inboundMessage.completed(false);
+            }
+            case DROP_OLDEST -> {
+                while (!this.queue.offer(inboundMessage)) {
+                    // 破棄できるメッセージがキューにない場合は、新しいメッセージを破棄する
+                    InboundMessage oldest = this.evictOldest();
+                    if (oldest == null) {
+                        this.redisManager.getMetrics().recordDropped(channel);
+                        inboundMessage.completed(false);
+                        break;
+                    }
+
+                    this.redisManager.getMetrics().recordDropped(oldest.channel());
+                }
+            }
+            default -> {
+                // 空きができるまで待機する。待機中にレーンが停止した場合は呼び出し元で配信させる
+                try {
+                    while (this.running) {
+                        if (this.queue.offer(inboundMessage, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                            return true;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キューから破棄できる最も古いメッセージを削除します。キューは複数のチャンネルで共有されるため、
+     * 自身のチャンネルのポリシーで破棄が許可されているメッセージのみが対象です。永続チャンネルのエントリと内部のチャンネルのメッセージは破棄されません。
+     *
+     * @return 削除されたメッセージ、破棄できるメッセージがない場合はnull
+     */
+    private InboundMessage evictOldest() {
+        for (InboundMessage queued : this.queue) {
+            // 走査中に配信のスレッドが取り出した場合は削除されない
+            if (queued.onCompleted() == null && this.redisManager.getOverflowPolicy(queued.channel()) != OverflowPolicy.BLOCK
+                    && this.queue.remove(queued)) {
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void run() {
+        List<InboundMessage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        try {
+            while (this.running || !this.queue.isEmpty()) {
+                InboundMessage first = this.queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                this.queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                this.deliver(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.stopped.countDown();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 取り出したメッセージを受信した順に配信します。統合するチャンネルのメッセージは、
+     * 同じチャンネルと統合のキーの最新のメッセージのみが配信されます。
+     *
+     * @param batch 配信するメッセージのリスト
+     */
+    private void deliver(List<InboundMessage> batch) {
+        // 統合するチャンネルのメッセージを先にデコードし、キーごとの最新のメッセージの位置を記録する
+        MessageTransferObject[] decoded = null;
+        boolean[] conflated = null;
+        Map<String, Integer> latest = null;
+        for (int i = 0; i < batch.size(); i++) {
+            InboundMessage inboundMessage = batch.get(i);
+            if (!this.redisManager.isConflated(inboundMessage.channel()) || this.redisManager.hasRawHandler(inboundMessage.channel())) {
+                continue;
+            }
+
+            if (decoded == null) {
+                decoded = new MessageTransferObject[batch.size()];
+                conflated = new boolean[batch.size()];
+                latest = new HashMap<>();
+            }
+
+            conflated[i] = true;
+
+            MessageTransferObject messageTransferObject = this.redisManager.decodeMessage(inboundMessage.channel(), inboundMessage.message());
+            decoded[i] = messageTransferObject;
+            if (messageTransferObject != null && messageTransferObject.getConflationKey() != null) {
+                latest.put(inboundMessage.channel() + '\0' + messageTransferObject.getConflationKey(), i);
+            }
+        }
+
+        int coalesced = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            InboundMessage inboundMessage = batch.get(i);
+
+            // 停止の待機時間を超えた場合は、取り出し済みのメッセージも配信しない
+            if (this.discarding) {
+                inboundMessage.completed(false);
+                continue;
+            }
+
+            if (conflated == null || !conflated[i]) {
+                // デコードせずに受け取るハンドラーがある場合は、データをそのまま渡す
+                if (!this.redisManager.deliverRaw(inboundMessage.channel(), inboundMessage.message())) {
+                    this.redisManager.deliverMessage(inboundMessage.channel(), this.redisManager.decodeMessage(inboundMessage.channel(), inboundMessage.message()));
+                }
+                inboundMessage.completed(true);
+                continue;
+            }
+
+            // 新しいメッセージで置き換えられたメッセージも配信が完了したものとして扱う
+            MessageTransferObject messageTransferObject = decoded[i];
+            if (messageTransferObject != null && messageTransferObject.getConflationKey() != null
+                    && latest.get(inboundMessage.channel() + '\0' + messageTransferObject.getConflationKey()) != i) {
+                coalesced++;
+                inboundMessage.completed(true);
+                continue;
+            }
+            this.redisManager.deliverMessage(inboundMessage.channel(), messageTransferObject);
+            inboundMessage.completed(true);
+        }
+
+        if (coalesced > 0) {
+            this.redisManager.getMetrics().recordCoalesced(coalesced);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 新しいメッセージの受け付けを停止します。キューに残っているメッセージはループが終了するまでに配信されます。
+     */
+    void stop() {
+        this.running = false;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 新しいメッセージの受け付けを停止し、キューに残っているメッセージが配信されるまで待機します。
+     * 複数のレーンを停止する場合でも合計の待機時間が増えないように、待機の期限は呼び出し元で共有されます。
+     *
+     * @param deadlineNanos 待機の期限（{@link System#nanoTime()}の値）
+     * @return 時間内に配信されなかったメッセージの数
+     */
+    int close(long deadlineNanos) {
+        this.stop();
+
+        try {
+            if (!this.stopped.await(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                this.discarding = true;
+                List<InboundMessage> discarded = new ArrayList<>();
+                this.queue.drainTo(discarded);
+                for (InboundMessage inboundMessage : discarded) {
+                    inboundMessage.completed(false);
+                }
+                return discarded.size();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * レーンの優先度を返します。
+     *
+     * @return 優先度
+     */
+    MessagePriority priority() {
+        return priority;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信を待っているメッセージの数を返します。
+     *
+     * @return キューのサイズ
+     */
+    int size() {
+        return this.queue.size();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信待ちの受信メッセージ
+     *
+     * @param channel     メッセージを受信したチャンネル
+     * @param message     受信したメッセージのデータ
+     * @param onCompleted メッセージが配信または破棄されたときに呼び出すコールバック（nullの場合は呼び出しません）
+     */
+    private record InboundMessage(String channel, byte[] message, Consumer<Boolean> onCompleted) {
+
+        /**
+         * メッセージの処理が完了したことをトランスポートに通知します。
+         *
+         * @param delivered メッセージが配信されたかどうか
+         */
+        private void completed(boolean delivered) {
+            if (this.onCompleted != null) {
+                this.onCompleted.accept(delivered);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,83 @@
+package cz.foresttech.forestredis.shared;
+
+/**
+ * {@link RedisPresenceService}がサーバー間で送信するプレイヤーの在席の変更を表すレコード。
+ * <p>
+ * 変更は{@code 種類:エポック:シーケンス:プレイヤー}の形式の短い文字列として送信されます。
+ * 送信元のサーバーは{@link cz.foresttech.forestredis.shared.models.MessageTransferObject}の送信者識別子から取得されます。
+ *
+ * @param type     変更の種類
+ * @param epoch    送信元のサービスが開始された時刻（再起動を検出するため）
+ * @param sequence 送信元のサーバーごとに1ずつ増加するシーケンス番号
+ * @param player   プレイヤーの名前（{@link Type#OFFLINE}の場合は空）
+ */
+record PresenceDelta(Type type, long epoch, long sequence, String player) {
+
+    /**
+     * 変更の種類
+     */
+    enum Type {
+        JOIN('J'),
+        LEAVE('L'),
+        OFFLINE('O');
+
+        private final char code;
+
+        Type(char code) {
+            this.code = code;
+        }
+
+        static Type fromCode(char code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 変更を送信するための文字列に変換します。
+     *
+     * @return エンコードされた変更
+     */
+    String encode() {
+        return this.type.code + ":" + this.epoch + ":" + this.sequence + ":" + (this.player != null ? this.player : "");
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信した文字列から変更をデコードします。
+     *
+     * @param message エンコードされた変更
+     * @return デコードされた変更、形式が正しくない場合はnull
+     */
+    static PresenceDelta decode(String message) {
+        if (message == null) {
+            return null;
+        }
+
+        String[] parts = message.split(":", 4);
+        if (parts.length != 4 || parts[0].length() != 1) {
+            return null;
+        }
+
+        Type type = Type.fromCode(parts[0].charAt(0));
+        if (type == null) {
+            return null;
+        }
+
+        try {
+            return new PresenceDelta(type, Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,158 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.codec.BinaryEnvelopeCodec;
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 受信したデータをデコードせずにそのまま保持するメッセージ。
+ * <p>
+ * 受信時には文字列への変換やJSONの解析は行われません。送信者やタイムスタンプなどのヘッダーは、
+ * 最初に要求されたときに一度だけデコードされます。データを別のチャンネルに転送する場合は
+ * {@link RedisManager#forwardRaw(String, RawMessage)}を使用すると、データはコピーされずに送信されます。
+ */
+public final class RawMessage {
+
+    /**
+     * メッセージを受信したチャンネル
+     */
+    private final String channel;
+
+    /**
+     * 受信したデータ
+     */
+    private final byte[] payload;
+
+    /**
+     * デコードされたメッセージ（まだデコードされていない場合、またはデコードできない場合はnull）
+     */
+    private volatile MessageTransferObject decoded;
+
+    /**
+     * デコードが試行されたかどうか
+     */
+    private volatile boolean decodeAttempted;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージのインスタンスを構築します。データはコピーされません。
+     *
+     * @param channel メッセージを受信したチャンネル
+     * @param payload 受信したデータ
+     */
+    RawMessage(String channel, byte[] payload) {
+        this.channel = channel;
+        this.payload = payload;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを受信したチャンネルを返します。
+     *
+     * @return チャンネルの名前
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したデータを読み取り専用のバッファとして返します。データはコピーされません。
+     *
+     * @return 読み取り専用の{@link ByteBuffer}
+     */
+    public ByteBuffer getPayload() {
+        return ByteBuffer.wrap(this.payload).asReadOnlyBuffer();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したデータのコピーを返します。
+     *
+     * @return データのコピー
+     */
+    public byte[] copyPayload() {
+        return Arrays.copyOf(this.payload, this.payload.length);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したデータのサイズを返します。
+     *
+     * @return バイト数
+     */
+    public int size() {
+        return this.payload.length;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * データがバイナリ形式のエンベロープかどうかを返します。データはデコードされません。
+     *
+     * @return バイナリ形式の場合は 'true'、JSONまたは不明な形式の場合は 'false'
+     */
+    public boolean isBinaryEnvelope() {
+        return BinaryEnvelopeCodec.isBinary(this.payload);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * データを{@link MessageTransferObject}としてデコードします。デコードは最初の呼び出しでのみ実行されます。
+     *
+     * @return デコードされた{@link MessageTransferObject}、エンベロープではない場合はnull
+     */
+    public MessageTransferObject decode() {
+        if (!this.decodeAttempted) {
+            this.decoded = MessageTransferObject.decode(this.payload);
+            this.decodeAttempted = true;
+        }
+        return this.decoded;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信サーバーの識別子を返します。最初の呼び出しでデータがデコードされます。
+     *
+     * @return 送信者の識別子、エンベロープではない場合はnull
+     */
+    public String getSenderIdentifier() {
+        MessageTransferObject messageTransferObject = this.decode();
+        return messageTransferObject != null ? messageTransferObject.getSenderIdentifier() : null;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージのタイムスタンプを返します。最初の呼び出しでデータがデコードされます。
+     *
+     * @return タイムスタンプ（ミリ秒）、エンベロープではない場合は0
+     */
+    public long getTimestamp() {
+        MessageTransferObject messageTransferObject = this.decode();
+        return messageTransferObject != null ? messageTransferObject.getTimestamp() : 0;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 転送のために受信したデータをコピーせずに返します。
+     *
+     * @return 受信したデータ
+     */
+    byte[] array() {
+        return payload;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,123 @@
+package cz.foresttech.forestredis.shared;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link RedisLockService}で取得した分散ロックを表すクラス。
+ * <p>
+ * ロックは保持している間、自動的にリースが更新されます。使用後は必ず{@link #unlock()}を呼び出すか、
+ * try-with-resourcesで閉じてください。ロックは再入可能ではありません。
+ */
+public class RedisLock implements AutoCloseable {
+
+    /**
+     * ロックを取得したサービス
+     */
+    private final RedisLockService lockService;
+
+    /**
+     * ロックの名前
+     */
+    private final String name;
+
+    /**
+     * Redisサーバーに保存されているロックの所有者の値
+     */
+    private final String owner;
+
+    /**
+     * ロックの取得ごとに増加するフェンシングトークン
+     */
+    private final long fencingToken;
+
+    /**
+     * ロックが解放されたかどうか
+     */
+    private final AtomicBoolean released;
+
+    /**
+     * リースの更新に失敗し、ロックが失われたかどうか
+     */
+    private volatile boolean lost;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    RedisLock(RedisLockService lockService, String name, String owner, long fencingToken) {
+        this.lockService = lockService;
+        this.name = name;
+        this.owner = owner;
+        this.fencingToken = fencingToken;
+        this.released = new AtomicBoolean();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ロックの名前を返します。
+     *
+     * @return ロックの名前
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ロックのフェンシングトークンを返します。トークンは同じ名前のロックが取得されるたびに増加するため、
+     * 外部のリソースに書き込む際に古いロックの所有者からの書き込みを拒否するために使用できます。
+     *
+     * @return フェンシングトークン
+     */
+    public long getFencingToken() {
+        return fencingToken;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ロックがまだ保持されているかどうかを返します。
+     *
+     * @return ロックが解放されておらず、リースの更新に失敗していない場合は 'true'
+     */
+    public boolean isHeld() {
+        return !this.released.get() && !this.lost;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ロックを解放します。既に解放されている場合は何もしません。
+     */
+    public void unlock() {
+        this.lockService.unlock(this);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void close() {
+        this.unlock();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    String owner() {
+        return owner;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    boolean markReleased() {
+        return this.released.compareAndSet(false, true);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    void markLost() {
+        this.lost = true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,432 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * リースに基づく分散ロックを提供するためのクラス。{@link RedisManager#getLocks()}から取得します。
+ * <p>
+ * ロックは{@code SET NX PX}で取得され、取得ごとにフェンシングトークンが発行されます。解放はLuaスクリプトで
+ * 所有者を確認してから行われ、保持している間はリースが自動的に更新されます。
+ * <p>
+ * 同じサーバー内で同じロックを待っているスレッドはローカルのキューに並ぶため、Redisサーバーで競合するのは
+ * 1つのスレッドのみです。ロックが解放されると既存の購読接続でpub/subの通知が送信されるため、
+ * 待機中のサーバーはポーリングせずに再試行します。
+ */
+public class RedisLockService implements Runnable {
+
+    /**
+     * ロックの解放が通知されるチャンネル
+     */
+    static final String NOTIFY_CHANNEL = "forestredis:locks";
+
+    /**
+     * ロックのキーの接頭辞
+     */
+    private static final String KEY_PREFIX = "forestredis:lock:";
+
+    /**
+     * 通知を受信できなかった場合に再試行するまでの最大時間（ミリ秒）
+     */
+    private static final long RETRY_MILLIS = 50;
+
+    /**
+     * 停止時にリースの更新のループの終了を待機する最大時間（ミリ秒）
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * ロックを取得し、成功した場合はフェンシングトークンを、失敗した場合は残りの有効期間を返すスクリプト
+     */
+    private static final String ACQUIRE_SCRIPT = """
+            if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+              return {redis.call('INCR', KEYS[2]), 0}
+            end
+            return {0, redis.call('PTTL', KEYS[1])}""";
+
+    /**
+     * 所有者が一致する場合にのみロックを削除するスクリプト
+     */
+    private static final String RELEASE_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0""";
+
+    /**
+     * 所有者が一致する場合にのみリースを更新するスクリプト
+     */
+    private static final String RENEW_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0""";
+
+    /**
+     * サービスが関連付けられているマネージャー
+     */
+    private final RedisManager redisManager;
+
+    /**
+     * Redisサーバーへの接続を提供するサプライヤー
+     */
+    private final Supplier<Jedis> connections;
+
+    /**
+     * ロックのリースの期間（ミリ秒）
+     */
+    private final long leaseMillis;
+
+    /**
+     * ロックの名前ごとのローカルの状態。ロックを保持または待機しているスレッドがなくなると削除されます
+     */
+    private final Map<String, LockState> states;
+
+    /**
+     * このサーバーが保持しているロック
+     */
+    private final Set<RedisLock> heldLocks;
+
+    /**
+     * ループの停止を要求するためのラッチ
+     */
+    private final CountDownLatch closing;
+
+    /**
+     * ループが終了したことを通知するためのラッチ
+     */
+    private final CountDownLatch stopped;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * サービスのインスタンスを構築します。リースは{@link #run()}が呼び出されるまで更新されません。
+     *
+     * @param redisManager サービスが関連付けられているマネージャー
+     * @param connections  Redisサーバーへの接続を提供するサプライヤー（接続は使用後に閉じられます）
+     * @param leaseMillis  ロックのリースの期間（ミリ秒）
+     */
+    RedisLockService(RedisManager redisManager, Supplier<Jedis> connections, long leaseMillis) {
+        this.redisManager = redisManager;
+        this.connections = connections;
+        this.leaseMillis = Math.max(3, leaseMillis);
+        this.states = new ConcurrentHashMap<>();
+        this.heldLocks = ConcurrentHashMap.newKeySet();
+        this.closing = new CountDownLatch(1);
+        this.stopped = new CountDownLatch(1);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ロックを取得するまで待機します。
+     *
+     * @param name ロックの名前
+     * @return 取得した{@link RedisLock}
+     * @throws InterruptedException  待機中に割り込まれた場合
+     * @throws IllegalStateException サービスが停止している場合
+     */
+    public RedisLock lock(String name) throws InterruptedException {
+        return this.tryLock(name, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定された時間までロックの取得を試みます。
+     *
+     * @param name    ロックの名前
+     * @param timeout 最大待機時間（0の場合は1回のみ試行します）
+     * @param unit    最大待機時間の単位
+     * @return 取得した{@link RedisLock}、時間内に取得できなかった場合はnull
+     * @throws InterruptedException  待機中に割り込まれた場合
+     * @throws IllegalStateException サービスが停止している場合
+     */
+    public RedisLock tryLock(String name, long timeout, TimeUnit unit) throws InterruptedException {
+        long timeoutNanos = unit.toNanos(Math.max(0, timeout));
+        long start = System.nanoTime();
+        LockState state = this.retainState(name);
+
+        boolean acquired = false;
+        boolean localAcquired = false;
+        try {
+            // 同じサーバーのスレッドはローカルで順番を待ち、1つのスレッドのみがRedisサーバーで競合する
+            if (!state.local.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                return null;
+            }
+            localAcquired = true;
+
+            String owner = this.redisManager.getServerIdentifier() + ":" + UUID.randomUUID();
+            while (true) {
+                if (this.closing.getCount() == 0) {
+                    throw new IllegalStateException("ロックのサービスは停止しています！");
+                }
+
+                long releases = state.releases();
+                List<?> result;
+                try (Jedis jedis = this.connections.get()) {
+                    result = (List<?>) jedis.eval(ACQUIRE_SCRIPT, List.of(lockKey(name), fenceKey(name)), List.of(owner, String.valueOf(this.leaseMillis)));
+                }
+
+                long fencingToken = (Long) result.get(0);
+                if (fencingToken > 0) {
+                    RedisLock lock = new RedisLock(this, name, owner, fencingToken);
+                    this.heldLocks.add(lock);
+                    acquired = true;
+                    return lock;
+                }
+
+                long remaining = timeoutNanos - (System.nanoTime() - start);
+                if (remaining <= 0) {
+                    return null;
+                }
+
+                // 解放の通知、またはリースの期限切れまで待機する
+                long ttlMillis = (Long) result.get(1);
+                long waitNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis > 0 ? ttlMillis : RETRY_MILLIS);
+                state.awaitRelease(releases, Math.min(remaining, waitNanos));
+            }
+        } finally {
+            if (!acquired) {
+                if (localAcquired) {
+                    state.local.release();
+                }
+                this.releaseState(name, state);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ロックを解放し、待機しているサーバーに通知します。
+     *
+     * @param lock 解放するロック
+     */
+    void unlock(RedisLock lock) {
+        if (!lock.markReleased()) {
+            return;
+        }
+
+        this.heldLocks.remove(lock);
+        try (Jedis jedis = this.connections.get()) {
+            Object released = jedis.eval(RELEASE_SCRIPT, List.of(lockKey(lock.getName())), List.of(lock.owner()));
+            if (released instanceof Long count && count > 0) {
+                this.redisManager.publishMessage(NOTIFY_CHANNEL, lock.getName());
+            }
+        } catch (Exception e) {
+            this.redisManager.getPlugin().logger().warning("ロック'" + lock.getName() + "'を解放できませんでした。リースの期限切れで解放されます: " + e.getMessage());
+        } finally {
+            LockState state = this.states.get(lock.getName());
+            if (state != null) {
+                state.local.release();
+                this.releaseState(lock.getName(), state);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ロックの名前のローカルの状態を取得し、使用しているスレッドの数を増やします。状態がない場合は作成されます。
+     *
+     * @param name ロックの名前
+     * @return ロックの名前のローカルの状態
+     */
+    private LockState retainState(String name) {
+        return this.states.compute(name, (key, state) -> {
+            LockState retained = state != null ? state : new LockState();
+            retained.users++;
+            return retained;
+        });
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ローカルの状態を使用しているスレッドの数を減らし、ロックを保持または待機しているスレッドがなくなった場合は状態を削除します。
+     *
+     * @param name  ロックの名前
+     * @param state {@link #retainState(String)}で取得した状態
+     */
+    private void releaseState(String name, LockState state) {
+        this.states.computeIfPresent(name, (key, current) -> {
+            if (current != state) {
+                return current;
+            }
+            return --current.users > 0 ? current : null;
+        });
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージがロックの解放の通知である場合、待機しているスレッドを起こします。
+     *
+     * @param channel               メッセージを受信したチャンネル
+     * @param messageTransferObject 受信した{@link MessageTransferObject}
+     * @return メッセージがサービスによって処理された場合は 'true'
+     */
+    boolean handle(String channel, MessageTransferObject messageTransferObject) {
+        if (!channel.equals(NOTIFY_CHANNEL)) {
+            return false;
+        }
+
+        LockState state = this.states.get(messageTransferObject.getMessage());
+        if (state != null) {
+            state.signalRelease();
+        }
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void run() {
+        try {
+            while (!this.closing.await(this.leaseMillis / 3, TimeUnit.MILLISECONDS)) {
+                this.renew();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.stopped.countDown();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 保持しているすべてのロックのリースを1回のパイプラインで更新します。所有者が変わっていたロックは失われたものとして扱われます。
+     */
+    private void renew() {
+        List<RedisLock> locks = new ArrayList<>(this.heldLocks);
+        if (locks.isEmpty()) {
+            return;
+        }
+
+        List<Response<Object>> responses = new ArrayList<>(locks.size());
+        try (Jedis jedis = this.connections.get()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (RedisLock lock : locks) {
+                responses.add(pipeline.eval(RENEW_SCRIPT, List.of(lockKey(lock.getName())), List.of(lock.owner(), String.valueOf(this.leaseMillis))));
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            this.redisManager.getPlugin().logger().warning("ロックのリースを更新できませんでした: " + e.getMessage());
+            return;
+        }
+
+        for (int i = 0; i < locks.size(); i++) {
+            RedisLock lock = locks.get(i);
+            if (responses.get(i).get() instanceof Long renewed && renewed > 0) {
+                continue;
+            }
+
+            if (this.heldLocks.remove(lock)) {
+                lock.markLost();
+                this.redisManager.getPlugin().logger().warning("ロック'" + lock.getName() + "'のリースが失われました！");
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * リースの更新を停止し、保持しているすべてのロックを解放します。待機しているスレッドは{@link IllegalStateException}で終了します。
+     */
+    void close() {
+        this.closing.countDown();
+
+        try {
+            if (!this.stopped.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                this.redisManager.getPlugin().logger().warning("ロックのリースの更新が時間内に停止しませんでした！");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (RedisLock lock : new ArrayList<>(this.heldLocks)) {
+            this.unlock(lock);
+        }
+        this.states.values().forEach(LockState::signalRelease);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    private static String lockKey(String name) {
+        return KEY_PREFIX + "{" + name + "}";
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    private static String fenceKey(String name) {
+        return KEY_PREFIX + "{" + name + "}:fence";
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ロックの名前ごとのローカルの状態
+     */
+    private static final class LockState {
+
+        /**
+         * 同じサーバーのスレッドが順番を待つためのセマフォ
+         */
+        private final Semaphore local = new Semaphore(1, true);
+
+        /**
+         * ロックを保持または待機しているスレッドの数（{@link #states}の更新の中でのみ変更されます）
+         */
+        private int users;
+
+        /**
+         * 受信した解放の通知の数
+         */
+        private long releases;
+
+        synchronized long releases() {
+            return this.releases;
+        }
+
+        synchronized void signalRelease() {
+            this.releases++;
+            this.notifyAll();
+        }
+
+        /**
+         * 指定された数以降の解放の通知を受信するか、時間が経過するまで待機します。
+         *
+         * @param seen  待機を開始する前に確認した通知の数
+         * @param nanos 最大待機時間（ナノ秒）
+         * @throws InterruptedException 待機中に割り込まれた場合
+         */
+        synchronized void awaitRelease(long seen, long nanos) throws InterruptedException {
+            long deadline = System.nanoTime() + nanos;
+            while (this.releases == seen) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -1,23 +1,63 @@
 package cz.foresttech.forestredis.shared;
 
+import cz.foresttech.forestredis.shared.handler.IMessageHandler;
+import cz.foresttech.forestredis.shared.handler.IMessageResponder;
+import cz.foresttech.forestredis.shared.handler.IRawMessageHandler;
+import cz.foresttech.forestredis.shared.handler.MessageHandlerRegistry;
+import cz.foresttech.forestredis.shared.kv.RedisCounters;
+import cz.foresttech.forestredis.shared.kv.RedisKeyValueStore;
+import cz.foresttech.forestredis.shared.metrics.RedisMetrics;
+import cz.foresttech.forestredis.shared.models.ExecutorType;
+import cz.foresttech.forestredis.shared.models.MessagePriority;
 import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+import cz.foresttech.forestredis.shared.models.OverflowPolicy;
 import cz.foresttech.forestredis.shared.models.RedisConfiguration;
-import redis.clients.jedis.*;
-
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+import cz.foresttech.forestredis.shared.transport.ClusterTransport;
+import cz.foresttech.forestredis.shared.transport.IRedisTransport;
+import cz.foresttech.forestredis.shared.transport.ITransportListener;
+import cz.foresttech.forestredis.shared.transport.JedisTransport;
+import cz.foresttech.forestredis.shared.transport.LoopbackTransport;
+import cz.foresttech.forestredis.shared.transport.TransportType;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Redisサーバーへの接続を維持し、処理するためのクラス。
  * 自動的に現在のサーバータイプに対応するBungee/Spigotイベントを発生させます。
  * <p>
  * 開発者がチャンネルを購読し、ジェネリックなEventHandlersを使用してそれらをリッスンすることを可能にします。
+ * また、{@link #registerHandler(String, Class, IMessageHandler)}を使用して、チャンネルごとにハンドラーを直接登録することもできます。
  */
 public class RedisManager {
 
+    /**
+     * 仮想スレッドを開始するメソッド（{@code Thread#startVirtualThread}、Java 21未満ではnull）
+     */
+    private static final Method START_VIRTUAL_THREAD = findVirtualThreadStarter();
+
+    /**
+     * ホットリロード時に新しいトランスポートの準備ができるまで待機する最大時間（ミリ秒）
+     */
+    private static final long READY_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * ホットリロード時にトランスポートを切り替える間、新しいトランスポートから保持するメッセージの最大数
+     */
+    private static final int HANDOFF_LIMIT = 10000;
+
     /**
      * メインインスタンス
      */
-    private static RedisManager api;
+    private static volatile RedisManager api;
 
     /**
      * プラグインが関連付けられているプラグイン
@@ -27,32 +67,107 @@ public class RedisManager {
     /**
      * 認証情報を保存するための構成オブジェクト
      */
-    private RedisConfiguration redisConfiguration;
+    private volatile RedisConfiguration redisConfiguration;
+
+    /**
+     * マネージャーの動作に関する設定オブジェクト
+     */
+    private volatile RedisSettings redisSettings;
 
     /**
      * 現在のサーバーの識別子。ネットワーク全体で一意である必要があります。
      */
-    private String serverIdentifier;
+    private volatile String serverIdentifier;
+
+    /**
+     * 購読されたチャンネルのセット。任意のスレッドから購読/購読解除できるように、ロックを使用しないセットを使用します
+     */
+    private final Set<String> channels;
+
+    /**
+     * 設定ファイルから購読されたチャンネルのセット。ホットリロード時に変更されたチャンネルのみを購読/購読解除するために使用されます
+     */
+    private volatile Set<String> configChannels;
+
+    /**
+     * チャンネルごとに直接登録されたハンドラーのレジストリ
+     */
+    private final MessageHandlerRegistry handlerRegistry;
+
+    /**
+     * チャンネルごとに直接登録された、デコードせずにメッセージを受け取るハンドラー
+     */
+    private final Map<String, IRawMessageHandler> rawHandlers;
+
+    /**
+     * リクエスト/レスポンスを処理するブローカー
+     */
+    private final RedisRequestBroker requestBroker;
+
+    /**
+     * メッセージングに関する統計
+     */
+    private final RedisMetrics metrics;
+
+    /**
+     * メッセージを送受信するトランスポート
+     */
+    private volatile IRedisTransport transport;
+
+    /**
+     * 現在のトランスポートの世代。ホットリロードで置き換えられたトランスポートが受信したメッセージを破棄するために使用されます
+     */
+    private volatile int transportGeneration;
+
+    /**
+     * ホットリロードでトランスポートを切り替えている間のpubsubのメッセージの引き継ぎ（切り替え中でない場合はnull）
+     */
+    private volatile TransportHandoff transportHandoff;
+
+    /**
+     * 優先度ごとに送信メッセージをバッチで公開するためのオブジェクト
+     */
+    private volatile Map<MessagePriority, RedisPublisher> publishers;
+
+    /**
+     * 優先度ごとに受信メッセージを配信するためのレーン。各優先度のレーンはチャンネルのハッシュでストライプに分割されます
+     */
+    private volatile Map<MessagePriority, InboundLane[]> inboundLanes;
+
+    /**
+     * Redisサーバーのキー/値を読み書きするためのストア（トランスポートがRedisサーバーに接続している場合のみ）
+     */
+    private volatile RedisKeyValueStore keyValueStore;
+
+    /**
+     * ネットワーク全体のカウンター（トランスポートがRedisサーバーに接続している場合のみ）
+     */
+    private volatile RedisCounters counters;
 
     /**
-     * 購読されたチャンネルのセット
+     * 分散ロックのサービス（トランスポートがRedisサーバーに接続している場合のみ）
      */
-    private final HashSet<String> channels;
+    private volatile RedisLockService lockService;
 
     /**
-     * 現在のサブスクリプションのリスト
+     * プレイヤーの在席のサービス（トランスポートがRedisサーバーに接続している場合のみ）
      */
-    private final List<Subscription> subscriptions;
+    private volatile RedisPresenceService presenceService;
 
     /**
-     * 現在のJedisPoolオブジェクト
+     * マネージャーの状態。複数のスレッドから同時に閉じられた場合でも、閉じる処理は1回だけ実行されます
      */
-    private JedisPool jedisPool;
+    private final AtomicReference<State> state;
 
     /**
-     * プロセスが閉じる状態にあるかどうか
+     * APIで登録されたチャンネルの設定。リロードで設定が置き換えられた場合も新しい設定に適用されます
      */
-    private boolean closing;
+    private final ChannelRegistrations registrations;
+
+    /**
+     * リロードと閉じる処理を1つずつ実行するためのロック
+     */
+    private final Object reloadLock;
 
     /*----------------------------------------------------------------------------------------------------------*/
 
@@ -65,15 +180,39 @@ public class RedisManager {
      * @param redisConfiguration Redisサーバーの認証情報を含む{@link RedisConfiguration}オブジェクト
      */
     public RedisManager(IForestRedisPlugin plugin, String serverIdentifier, RedisConfiguration redisConfiguration) {
+        this(plugin, serverIdentifier, redisConfiguration, new RedisSettings());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * {@link RedisManager}インスタンスを作成するためのコンストラクタメソッド。コンストラクタはチャンネルを購読せず、
+     * 将来のために提供されたデータを保存するだけです。
+     *
+     * @param plugin             インスタンスを取得しようとする元のプラグイン
+     * @param serverIdentifier   サーバーの識別子（例： 'Bungee01'）。バグを防ぐために一意である必要があります
+     * @param redisConfiguration Redisサーバーの認証情報を含む{@link RedisConfiguration}オブジェクト
+     * @param redisSettings      マネージャーの動作に関する{@link RedisSettings}オブジェクト
+     */
+    public RedisManager(IForestRedisPlugin plugin, String serverIdentifier, RedisConfiguration redisConfiguration, RedisSettings redisSettings) {
         this.plugin = plugin;
-        this.closing = false;
+        this.state = new AtomicReference<>(State.OPEN);
+        this.reloadLock = new Object();
+        this.registrations = new ChannelRegistrations();
 
         this.serverIdentifier = serverIdentifier;
         this.redisConfiguration = redisConfiguration;
+        this.redisSettings = redisSettings != null ? redisSettings : new RedisSettings();
 
-        this.subscriptions = new ArrayList<>();
+        this.channels = ConcurrentHashMap.newKeySet();
+        this.configChannels = Set.of();
 
-        this.channels = new HashSet<>();
+        this.metrics = new RedisMetrics();
+        this.handlerRegistry = new MessageHandlerRegistry();
+        this.rawHandlers = new ConcurrentHashMap<>();
+        this.publishers = Map.of();
+        this.inboundLanes = Map.of();
+        this.requestBroker = new RedisRequestBroker(this);
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
@@ -86,30 +225,62 @@ public class RedisManager {
      * @param keepChannels  既に購読されているチャンネルを保持する
      */
     public void reload(String serverIdentifier, RedisConfiguration redisConfiguration, boolean keepChannels) {
-        this.close();
-        this.closing = false;
+        this.reload(serverIdentifier, redisConfiguration, null, keepChannels);
+    }
 
-        if (serverIdentifier != null) {
-            this.serverIdentifier = serverIdentifier;
-        }
-        if (redisConfiguration != null) {
-            this.redisConfiguration = redisConfiguration;
-        }
+    /*----------------------------------------------------------------------------------------------------------*/
 
-        if (keepChannels) {
-            String[] channels = this.channels.toArray(String[]::new);
-            this.channels.clear();
-            this.setup(channels);
-            return;
-        }
+    /**
+     * 既に購読されているチャンネルを保持する場合にマネージャーをリロードします。
+     *
+     * @param serverIdentifier   新しいサーバー識別子（nullの場合、既に使用しているサーバーIDが使用されます）
+     * @param redisConfiguration 新しいRedisConfiguration（nullの場合、既に使用している構成が使用されます）
+     * @param redisSettings      新しいRedisSettings（nullの場合、既に使用している設定が使用されます）
+     * @param keepChannels       既に購読されているチャンネルを保持する
+     */
+    public void reload(String serverIdentifier, RedisConfiguration redisConfiguration, RedisSettings redisSettings, boolean keepChannels) {
+        // 同時に閉じられた場合に新しいトランスポートが残らないように、閉じる処理とロックを共有する
+        synchronized (this.reloadLock) {
+            // 閉じる処理で在席から削除されるため、このサーバーのプレイヤーを新しいサービスに引き継ぐ
+            RedisPresenceService previousPresence = this.presenceService;
+            List<String> localPlayers = previousPresence != null ? List.copyOf(previousPresence.getPlayers(this.serverIdentifier)) : List.of();
+
+            this.close();
+            if (!this.state.compareAndSet(State.CLOSED, State.OPEN)) {
+                return;
+            }
+
+            if (serverIdentifier != null) {
+                this.serverIdentifier = serverIdentifier;
+            }
+            if (redisConfiguration != null) {
+                this.redisConfiguration = redisConfiguration;
+            }
+            if (redisSettings != null) {
+                this.registrations.applyTo(redisSettings);
+                this.redisSettings = redisSettings;
+            }
+
+            if (keepChannels) {
+                String[] channels = this.channels.toArray(String[]::new);
+                this.channels.clear();
+                this.setup(channels);
+            } else {
+                this.setup();
+            }
 
-        this.setup();
+            RedisPresenceService presenceService = this.presenceService;
+            if (presenceService != null) {
+                localPlayers.forEach(presenceService::join);
+            }
+        }
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * {@link #redisConfiguration}から{@link JedisPool}を確立するための主要なセットアップメソッド。
+     * 設定されたトランスポートを開始するための主要なセットアップメソッド。{@link TransportType#REDIS}の場合、
+     * {@link #redisConfiguration}から{@link redis.clients.jedis.JedisPool}を確立します。
      * メソッドは自動的に{@link #channels}を購読します。
      * <p>
      * 注意！サブスクリプション自体が失敗した場合でも、呼び出しは非同期で行われるため、falseを返しません。
@@ -119,28 +290,52 @@ public class RedisManager {
      * @see #subscribe(String...)
      */
     public boolean setup(String... channels) {
-        // RedisConfigurationの存在を確認する
-        if (this.redisConfiguration == null) {
-            plugin.logger().warning("Jedisプールを確立できません！構成がnullであってはなりません！");
-            return false;
-        }
+        this.inboundLanes = this.createInboundLanes(this.redisSettings);
 
-        // JedisPoolを構築する
-        this.jedisPool = this.redisConfiguration.build();
-        if (this.jedisPool == null) {
-            plugin.logger().warning("提供された構成からJedisプールを確立できません！");
+        // トランスポートを開始する
+        int generation = this.transportGeneration + 1;
+        IRedisTransport transport = this.createTransport(this.redisConfiguration, this.redisSettings, generation);
+        if (!transport.start()) {
+            this.closeInboundLanes();
             return false;
         }
+        this.transport = transport;
+        this.transportGeneration = generation;
+
+        this.publishers = this.createPublishers(transport, this.redisSettings);
+
+        // リクエストへのレスポンスを受信するためのチャンネルを購読する
+        this.transport.addChannels(List.of(this.requestBroker.replyChannel()), false);
+
+        // キー/値のストアを開始する
+        // サービスは接続を現在のトランスポートから取得するため、ホットリロードで接続先が切り替えられても使用し続けられる
+        if (this.transport instanceof JedisTransport) {
+            this.keyValueStore = new RedisKeyValueStore(this.plugin, this::getJedis, this.redisSettings);
+            this.keyValueStore.start();
 
-        this.plugin.logger().info("サーバー識別子 '" + this.serverIdentifier + "' でJedisプールが確立されました！");
+            this.counters = new RedisCounters(this.plugin, this::getJedis, this.redisSettings);
+            this.plugin.runAsync(this.counters);
+
+            // ロックの解放の通知を受信するためのチャンネルを購読する
+            this.lockService = new RedisLockService(this, this::getJedis, this.redisSettings.getLockLeaseMillis());
+            this.transport.addChannels(List.of(RedisLockService.NOTIFY_CHANNEL), false);
+            this.plugin.runAsync(this.lockService);
+
+            // 差分を購読してからスナップショットを取得する
+            this.presenceService = new RedisPresenceService(this, this.keyValueStore, this::getJedis);
+            this.transport.addChannels(List.of(RedisPresenceService.UPDATE_CHANNEL), false);
+            this.presenceService.start();
+            this.plugin.runAsync(this.presenceService);
+        }
 
         // チャンネルが提供された場合、それらをリストに追加し、購読する
         if (channels != null && channels.length > 0) {
-            this.channels.addAll(Set.of(channels));
-
-            Subscription subscription = new Subscription(this.channels.toArray(new String[0]));
-            this.plugin.runAsync(subscription);
-            this.subscriptions.add(subscription);
+            for (String channel : channels) {
+                if (channel != null) {
+                    this.channels.add(channel);
+                }
+            }
+            this.attachChannels(this.channels);
         }
 
         return true;
@@ -149,280 +344,1405 @@ public class RedisManager {
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * 指定されたチャンネルを購読解除します。
+     * 接続と購読を維持したまま、新しい設定を反映します。{@link #reload(String, RedisConfiguration, RedisSettings, boolean)}とは異なり、
+     * リロード中もメッセージの送受信は停止しません。
+     * <p>
+     * 接続先または接続に関する設定が変更された場合は、新しい接続プールとサブスクリプションを非同期で準備し、
+     * すべてのチャンネルの購読が確認されてから切り替えます。古い接続は未送信のメッセージを送信してから閉じられます。
+     * 新しい接続の準備ができない場合は、古い接続がそのまま使用されます。
+     * <p>
+     * 設定ファイルのチャンネルは前回のリストとの差分のみが購読/購読解除されます。サーバー識別子、トランスポートの種類、
+     * キー/値のストア、カウンター、ロックの設定が変更された場合は、通常のリロードが実行されます。
      *
-     * @param channels 購読解除するチャンネルの名前（大文字小文字を区別）
+     * @param serverIdentifier   新しいサーバー識別子（nullの場合、既に使用しているサーバーIDが使用されます）
+     * @param redisConfiguration 新しいRedisConfiguration（nullの場合、既に使用している構成が使用されます）
+     * @param redisSettings      新しいRedisSettings（nullの場合、既に使用している設定が使用されます）
+     * @param configChannels     設定ファイルで購読するチャンネルのリスト（大文字小文字を区別）
+     * @return 新しい設定が反映されたかどうかで完了する{@link CompletableFuture}
      */
-    public void unsubscribe(String... channels) {
-        if (this.closing) {
-            return;
-        }
+    public CompletableFuture<Boolean> hotReload(String serverIdentifier, RedisConfiguration redisConfiguration, RedisSettings redisSettings, Collection<String> configChannels) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        this.plugin.runAsync(() -> {
+            try {
+                future.complete(this.applyReload(serverIdentifier, redisConfiguration, redisSettings, configChannels));
+            } catch (Exception ex) {
+                this.plugin.logger().warning("ホットリロード中にエラーが発生しました: " + ex);
+                future.complete(false);
+            }
+        });
+        return future;
+    }
 
-        if (channels == null || channels.length == 0) {
-            return;
-        }
+    /*----------------------------------------------------------------------------------------------------------*/
 
-        try {
-            for (Subscription sub : this.subscriptions) {
-                sub.unsubscribe(channels);
+    /**
+     * {@link #hotReload(String, RedisConfiguration, RedisSettings, Collection)}の処理を実行します。
+     *
+     * @param serverIdentifier   新しいサーバー識別子（nullの場合は変更しません）
+     * @param redisConfiguration 新しいRedisConfiguration（nullの場合は変更しません）
+     * @param redisSettings      新しいRedisSettings（nullの場合は変更しません）
+     * @param configChannels     設定ファイルで購読するチャンネルのリスト
+     * @return 新しい設定が反映されたかどうか
+     */
+    private boolean applyReload(String serverIdentifier, RedisConfiguration redisConfiguration, RedisSettings redisSettings, Collection<String> configChannels) {
+        synchronized (this.reloadLock) {
+            String nextIdentifier = serverIdentifier != null ? serverIdentifier : this.serverIdentifier;
+            RedisConfiguration nextConfiguration = redisConfiguration != null ? redisConfiguration : this.redisConfiguration;
+            RedisSettings previousSettings = this.redisSettings;
+            RedisSettings nextSettings = redisSettings != null ? redisSettings : previousSettings;
+
+            // APIで登録された設定を新しい設定に引き継いでから、現在の設定と比較する
+            if (nextSettings != previousSettings) {
+                this.registrations.applyTo(nextSettings);
+            }
+
+            // 設定ファイルのチャンネルの差分を計算する
+            Set<String> nextConfigChannels = new HashSet<>();
+            if (configChannels != null) {
+                for (String channel : configChannels) {
+                    if (channel != null) {
+                        nextConfigChannels.add(channel);
+                    }
+                }
+            }
+            Set<String> removedChannels = new HashSet<>(this.configChannels);
+            removedChannels.removeAll(nextConfigChannels);
+            Set<String> addedChannels = new HashSet<>(nextConfigChannels);
+            addedChannels.removeAll(this.configChannels);
+
+            // 接続中に反映できない変更の場合は、通常のリロードを実行する
+            if (this.state.get() != State.OPEN || this.transport == null || !Objects.equals(nextIdentifier, this.serverIdentifier)
+                    || requiresRestart(previousSettings, nextSettings)) {
+                this.plugin.logger().info("変更された設定は接続中に反映できないため、マネージャーを再起動します！");
+                this.channels.removeAll(removedChannels);
+                this.reload(nextIdentifier, nextConfiguration, nextSettings, true);
+                this.configChannels = Set.copyOf(nextConfigChannels);
+                if (!addedChannels.isEmpty()) {
+                    this.subscribe(addedChannels.toArray(String[]::new));
+                }
+                return this.transport != null;
             }
-            this.plugin.logger().info("チャンネルの購読解除に成功しました: " + Arrays.toString(channels) + "!");
-        } catch (Exception ex) {
-            this.plugin.logger().warning("チャンネルの購読解除中にエラーが発生しました: " + Arrays.toString(channels) + "!");
-            return;
-        }
 
-        this.channels.removeAll(Set.of(channels));
+            boolean reconnect = !Objects.equals(nextConfiguration, this.redisConfiguration) || requiresReconnect(previousSettings, nextSettings);
+            if (reconnect && !this.swapTransport(nextConfiguration, nextSettings, removedChannels, addedChannels)) {
+                return false;
+            }
+
+            if (!reconnect) {
+                this.redisSettings = nextSettings;
+
+                // 永続化の設定が変更されたチャンネルは、pubsubとストリームの間で付け替える
+                Set<String> changedChannels = new HashSet<>();
+                for (String channel : this.channels) {
+                    if (!removedChannels.contains(channel) && previousSettings.getDurableChannels().contains(channel) != nextSettings.getDurableChannels().contains(channel)) {
+                        changedChannels.add(channel);
+                    }
+                }
+
+                Set<String> channelsToDetach = new HashSet<>(removedChannels);
+                channelsToDetach.addAll(changedChannels);
+                if (!channelsToDetach.isEmpty()) {
+                    this.detachChannels(channelsToDetach);
+                }
+                this.channels.removeAll(removedChannels);
+
+                if (!changedChannels.isEmpty()) {
+                    this.attachChannels(changedChannels);
+                }
+
+                Set<String> channelsToAttach = new HashSet<>();
+                for (String channel : addedChannels) {
+                    if (this.channels.add(channel)) {
+                        channelsToAttach.add(channel);
+                    }
+                }
+                if (!channelsToAttach.isEmpty()) {
+                    this.attachChannels(channelsToAttach);
+                }
+            }
+            this.configChannels = Set.copyOf(nextConfigChannels);
+
+            // 配信のレーンの設定が変更された場合は、新しいレーンに切り替えてから古いレーンの残りのメッセージを配信する
+            if (previousSettings.getInboundStripes() != nextSettings.getInboundStripes()
+                    || previousSettings.getInboundQueueSize() != nextSettings.getInboundQueueSize()
+                    || previousSettings.getInboundExecutorType() != nextSettings.getInboundExecutorType()) {
+                Map<MessagePriority, InboundLane[]> previousLanes = this.inboundLanes;
+                this.inboundLanes = this.createInboundLanes(nextSettings);
+                this.closeInboundLanes(previousLanes);
+            }
+
+            this.plugin.logger().info("設定を接続を維持したままリロードしました" + (reconnect ? "（接続を切り替えました）" : "") + "！");
+            return true;
+        }
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * 既に購読されていない場合、提供されたチャンネルを購読します。対応するイベントは、
-     * 受信したメッセージが購読されたチャンネルに送信された場合にのみ発生します。
+     * 新しいトランスポートを開始し、準備ができてから現在のトランスポートと送信の公開者を置き換えます。
      *
-     * @param channels 購読するチャンネルの名前（大文字小文字を区別）
-     * @return 少なくとも1つのチャンネルが正常に購読されたかどうか
+     * @param redisConfiguration 新しいトランスポートの接続先
+     * @param redisSettings      新しい設定
+     * @param removedChannels    新しいトランスポートで購読しないチャンネル
+     * @param addedChannels      新しいトランスポートで追加で購読するチャンネル
+     * @return 切り替えられたかどうか。失敗した場合は現在のトランスポートがそのまま使用されます
      */
-    public boolean subscribe(String... channels) {
-        if (this.closing) {
+    private boolean swapTransport(RedisConfiguration redisConfiguration, RedisSettings redisSettings, Set<String> removedChannels, Set<String> addedChannels) {
+        Set<String> nextChannels = new HashSet<>(this.channels);
+        nextChannels.removeAll(removedChannels);
+        nextChannels.addAll(addedChannels);
+
+        // 新しいトランスポートを開始し、すべてのチャンネルの購読が確認されるまで待機する
+        // 新しいトランスポートのpubsubのメッセージは、切り替えまで保持される
+        int generation = this.transportGeneration + 1;
+        TransportHandoff handoff = new TransportHandoff(this, this.transportGeneration, generation, HANDOFF_LIMIT);
+        this.transportHandoff = handoff;
+
+        IRedisTransport nextTransport = this.createTransport(redisConfiguration, redisSettings, generation);
+        if (!nextTransport.start()) {
+            this.transportHandoff = null;
+            this.plugin.logger().warning("新しい接続を開始できませんでした！現在の接続を使用し続けます。");
             return false;
         }
 
-        if (channels == null || channels.length == 0) {
+        nextTransport.addChannels(this.internalChannels(), false);
+        this.attachChannels(nextTransport, redisSettings, nextChannels);
+        if (!nextTransport.awaitReady(READY_TIMEOUT_MILLIS)) {
+            this.transportHandoff = null;
+            this.plugin.logger().warning("新しい接続の準備ができませんでした！現在の接続を使用し続けます。");
+            nextTransport.close();
             return false;
         }
 
-        Set<String> actualChannelsToAdd = new HashSet<>();
+        // 切り替える。古いトランスポートが受信したpubsubのメッセージは、この時点から破棄される
+        IRedisTransport previousTransport = this.transport;
+        Map<MessagePriority, RedisPublisher> previousPublishers = this.publishers;
 
-        for (String channel : channels) {
-            if (this.channels.contains(channel) && channel != null) {
-                continue;
-            }
-            actualChannelsToAdd.add(channel);
+        this.redisConfiguration = redisConfiguration;
+        this.redisSettings = redisSettings;
+        this.publishers = this.createPublishers(nextTransport, redisSettings);
+        this.transport = nextTransport;
+        this.transportGeneration = generation;
+        handoff.switchOver();
+
+        this.channels.removeAll(removedChannels);
+        this.channels.addAll(addedChannels);
+
+        // 切り替え中に購読/購読解除されたチャンネルを新しいトランスポートに反映する
+        Set<String> lateAdded = new HashSet<>(this.channels);
+        lateAdded.removeAll(nextChannels);
+        if (!lateAdded.isEmpty()) {
+            this.attachChannels(nextTransport, redisSettings, lateAdded);
         }
-
-        // ユーザーが実際に購読するチャンネルを提供したかどうかを確認する
-        if (actualChannelsToAdd.isEmpty()) {
-            return false;
+        Set<String> lateRemoved = new HashSet<>(nextChannels);
+        lateRemoved.removeAll(this.channels);
+        if (!lateRemoved.isEmpty()) {
+            nextTransport.removeChannels(lateRemoved);
         }
 
-        this.channels.addAll(actualChannelsToAdd);
-
-        Subscription subscription = new Subscription(actualChannelsToAdd.toArray(new String[0]));
-        this.plugin.runAsync(subscription);
-        subscriptions.add(subscription);
+        // 古い公開者の未送信のメッセージを古い接続で送信してから閉じる
+        for (RedisPublisher publisher : previousPublishers.values()) {
+            publisher.close();
+        }
+        previousTransport.close();
+        this.transportHandoff = null;
 
+        if (this.keyValueStore != null) {
+            this.keyValueStore.reconnect();
+        }
         return true;
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * 提供されたチャンネルにオブジェクトを公開します。サーバー識別も処理します。
-     * 単純な{@link String}メッセージを公開するためにこれを使用しないでください。
+     * 接続中に反映できず、マネージャーの再起動が必要な設定が変更されたかどうかを返します。
      *
-     * @param targetChannel   公開するチャンネル（大文字小文字を区別）
-     * @param objectToPublish 公開するオブジェクト
-     * @return メッセージがJSONに変換できない場合や閉じる状態にある場合は 'false' を返します。プロセスが成功した場合は 'true' を返します
-     * @see #publishMessage(String, String)
+     * @param previous 現在の設定
+     * @param next     新しい設定
+     * @return 再起動が必要かどうか
      */
-    public boolean publishObject(String targetChannel, Object objectToPublish) {
-        MessageTransferObject messageTransferObject = MessageTransferObject.wrap(this.serverIdentifier, objectToPublish, System.currentTimeMillis());
-        return this.executePublish(targetChannel, messageTransferObject);
+    private static boolean requiresRestart(RedisSettings previous, RedisSettings next) {
+        return previous.getTransportType() != next.getTransportType()
+                || previous.getKeyValueBatchSize() != next.getKeyValueBatchSize()
+                || previous.getKeyValueMaxDelayMillis() != next.getKeyValueMaxDelayMillis()
+                || previous.getCounterFlushMillis() != next.getCounterFlushMillis()
+                || previous.getCounterCacheMillis() != next.getCounterCacheMillis()
+                || previous.getLockLeaseMillis() != next.getLockLeaseMillis()
+                || !previous.getCachePrefixes().equals(next.getCachePrefixes())
+                || previous.getCacheMaxSize() != next.getCacheMaxSize()
+                || previous.getCacheTtlMillis() != next.getCacheTtlMillis();
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * 提供されたチャンネルにメッセージを公開します。サーバー識別も処理します。
-     * このメソッドはシリアル化されたオブジェクトを公開するためには推奨されません。オブジェクトを公開するには：
+     * 新しい接続への切り替えが必要な設定が変更されたかどうかを返します。
      *
-     * @param targetChannel    公開するチャンネル（大文字小文字を区別）
-     * @param messageToPublish 公開するメッセージ
-     * @return メッセージがJSONに変換できない場合や閉じる状態にある場合は 'false' を返します。プロセスが成功した場合は 'true' を返します。
-     * @see #publishObject(String, Object)
+     * @param previous 現在の設定
+     * @param next     新しい設定
+     * @return 新しいトランスポートが必要かどうか
      */
-    public boolean publishMessage(String targetChannel, String messageToPublish) {
-        MessageTransferObject messageTransferObject = new MessageTransferObject(this.serverIdentifier, messageToPublish, System.currentTimeMillis());
-        return this.executePublish(targetChannel, messageTransferObject);
+    private static boolean requiresReconnect(RedisSettings previous, RedisSettings next) {
+        return !previous.getClusterNodes().equals(next.getClusterNodes())
+                || previous.getPublishBatchSize() != next.getPublishBatchSize()
+                || previous.getPublishMaxDelayMillis() != next.getPublishMaxDelayMillis()
+                || previous.getStreamMaxLength() != next.getStreamMaxLength()
+                || previous.getStreamReadCount() != next.getStreamReadCount()
+                || previous.getStreamBlockMillis() != next.getStreamBlockMillis();
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * {@link MessageTransferObject}オブジェクトを公開するための内部メソッド。
+     * 設定ファイルから購読されたチャンネルを記録します。次のホットリロードではこのリストとの差分のみが反映されます。
      *
-     * @param targetChannel         公開するチャンネル
-     * @param messageTransferObject 公開する{@link MessageTransferObject}オブジェクト
-     * @return 提供された{@link MessageTransferObject}が意味をなすかどうか
+     * @param configChannels 設定ファイルのチャンネル
      */
-    private boolean executePublish(String targetChannel, MessageTransferObject messageTransferObject) {
-        if (this.closing) {
-            return false;
-        }
-
-        if (messageTransferObject == null) {
-            return false;
-        }
-
-        String messageJson = messageTransferObject.toJson();
-        if (messageJson == null) {
-            return false;
-        }
-
-        this.plugin.runAsync(() -> {
-            try (Jedis jedis = this.jedisPool.getResource()) {
-                jedis.publish(targetChannel, messageJson);
-            } catch (Exception e) {
-                RedisManager.this.plugin.logger().warning("Redisサーバーにメッセージを送信できませんでした！");
+    void setConfigChannels(Collection<String> configChannels) {
+        Set<String> channels = new HashSet<>();
+        for (String channel : configChannels) {
+            if (channel != null) {
+                channels.add(channel);
             }
-        });
-
-        return true;
+        }
+        this.configChannels = Set.copyOf(channels);
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * Redis接続を閉じ、すべてのチャンネルの購読を解除します。
+     * マネージャーが内部で使用するチャンネルのリストを返します。
+     *
+     * @return リクエストのレスポンス、ロックの解放と在席の通知のチャンネル
      */
-    public void close() {
-        if (this.closing) {
-            return;
-        }
-
-        this.closing = true;
-        for (Subscription sub : this.subscriptions) {
-            if (sub.isSubscribed()) {
-                sub.unsubscribe();
-            }
+    private List<String> internalChannels() {
+        List<String> internalChannels = new ArrayList<>();
+        internalChannels.add(this.requestBroker.replyChannel());
+        if (this.lockService != null) {
+            internalChannels.add(RedisLockService.NOTIFY_CHANNEL);
         }
-
-        this.subscriptions.clear();
-
-        if (this.jedisPool == null) {
-            return;
+        if (this.presenceService != null) {
+            internalChannels.add(RedisPresenceService.UPDATE_CHANNEL);
         }
-
-        this.jedisPool.destroy();
+        return internalChannels;
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * 現在のサーバー識別子を返します。イベントの送信者名として使用されます。
+     * 設定に応じて優先度ごとの受信メッセージのレーンを作成し、開始します。同じチャンネルのメッセージは常に同じストライプで順番に配信されます。
      *
-     * @return サーバー識別子
+     * @param redisSettings レーンの数とキューのサイズを含む設定
+     * @return 開始されたレーン
      */
-    public String getServerIdentifier() {
-        return serverIdentifier;
+    private Map<MessagePriority, InboundLane[]> createInboundLanes(RedisSettings redisSettings) {
+        int stripes = Math.max(1, redisSettings.getInboundStripes());
+        int capacity = Math.max(1, redisSettings.getInboundQueueSize() / stripes);
+        boolean virtual = redisSettings.getInboundExecutorType() == ExecutorType.VIRTUAL && START_VIRTUAL_THREAD != null;
+        if (redisSettings.getInboundExecutorType() == ExecutorType.VIRTUAL && !virtual) {
+            this.plugin.logger().warning("仮想スレッドはこのJavaのバージョンでは使用できません！プラットフォームのスレッドを使用します。");
+        }
+
+        Map<MessagePriority, InboundLane[]> inboundLanes = new EnumMap<>(MessagePriority.class);
+        for (MessagePriority priority : MessagePriority.values()) {
+            InboundLane[] lanes = new InboundLane[stripes];
+            for (int i = 0; i < stripes; i++) {
+                lanes[i] = new InboundLane(this, priority, capacity);
+                this.startLane(lanes[i], virtual);
+            }
+            inboundLanes.put(priority, lanes);
+        }
+        return inboundLanes;
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * チャンネルが購読されているかどうかを返します。
+     * 優先度ごとの送信メッセージの公開者を作成し、開始します。各公開者は独自のキューを持ち、プールから独自の接続を使用します。
      *
-     * @param channel 確認するチャンネルの名前（大文字小文字を区別）。
-     * @return チャンネルが購読されているかどうか
+     * @param transport     メッセージを送信するトランスポート
+     * @param redisSettings バッチのサイズと最大待機時間を含む設定
+     * @return 開始された公開者
      */
-    public boolean isSubscribed(String channel) {
-        return this.channels.contains(channel);
-    }
-
-    /*----------------------------------------------------------------------------------------------------------*/
-
-    public Jedis getJedis() {
-        return this.jedisPool.getResource();
+    private Map<MessagePriority, RedisPublisher> createPublishers(IRedisTransport transport, RedisSettings redisSettings) {
+        Map<MessagePriority, RedisPublisher> publishers = new EnumMap<>(MessagePriority.class);
+        for (MessagePriority priority : MessagePriority.values()) {
+            RedisPublisher publisher = new RedisPublisher(this, transport, redisSettings.getPublishBatchSize(), redisSettings.getPublishMaxDelayMillis());
+            publishers.put(priority, publisher);
+            this.plugin.runAsync(publisher);
+        }
+        return publishers;
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * すべての購読されたチャンネルのリストを返します。
+     * レーンのループを仮想スレッドまたはプラットフォームの非同期スレッドで開始します。
      *
-     * @return すべての購読されたチャンネルのリスト（大文字小文字を区別）
+     * @param inboundLane 開始するレーン
+     * @param virtual     仮想スレッドを使用するかどうか
      */
-    public Set<String> getSubscribedChannels() {
-        return channels;
+    private void startLane(InboundLane inboundLane, boolean virtual) {
+        if (virtual) {
+            try {
+                START_VIRTUAL_THREAD.invoke(null, inboundLane);
+                return;
+            } catch (ReflectiveOperationException e) {
+                this.plugin.logger().warning("仮想スレッドを開始できませんでした: " + e);
+            }
+        }
+        this.plugin.runAsync(inboundLane);
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * PubSub接続を処理するために使用されるプライベートサブスクリプションクラス。
+     * 設定に応じたトランスポートを作成します。トランスポートが受信したメッセージは、
+     * そのトランスポートが現在の世代である場合にのみ配信されます。
      *
-     * @see #subscribe(String...)
+     * @param redisConfiguration トランスポートの接続先
+     * @param redisSettings      トランスポートの設定
+     * @param generation         トランスポートの世代
+     * @return 開始されていない{@link IRedisTransport}
      */
-    private class Subscription extends JedisPubSub implements Runnable {
+    private IRedisTransport createTransport(RedisConfiguration redisConfiguration, RedisSettings redisSettings, int generation) {
+        ITransportListener listener = new ITransportListener() {
+            @Override
+            public void onMessage(String channel, byte[] message) {
+                RedisManager.this.receiveFromTransport(generation, channel, message, null);
+            }
 
-        private final String[] channels;
+            @Override
+            public void onMessage(String channel, byte[] message, Consumer<Boolean> onCompleted) {
+                RedisManager.this.receiveFromTransport(generation, channel, message, onCompleted);
+            }
+        };
 
-        public Subscription(String[] channels) {
-            this.channels = channels;
+        if (redisSettings.getTransportType() == TransportType.LOOPBACK) {
+            this.plugin.logger().info("サーバー識別子 '" + this.serverIdentifier + "' でループバックトランスポートを使用します！");
+            return new LoopbackTransport(listener);
+        }
+        if (redisSettings.getTransportType() == TransportType.CLUSTER) {
+            return new ClusterTransport(this.plugin, redisConfiguration, redisSettings, listener);
         }
 
-        @Override
-        public void run() {
-            boolean firstTry = true;
-
-            while (!RedisManager.this.closing && !Thread.interrupted() && !RedisManager.this.jedisPool.isClosed()) {
-                try (Jedis jedis = RedisManager.this.jedisPool.getResource()) {
-                    if (firstTry) {
-                        RedisManager.this.plugin.logger().info("Redis pubsub接続が確立されました！");
-                        firstTry = false;
-                    } else {
-                        RedisManager.this.plugin.logger().info("Redis pubsub接続が再確立されました！");
-                    }
-
-                    try {
-                        jedis.subscribe(this, channels); // ブロッキング呼び出し
-                        RedisManager.this.plugin.logger().info("チャンネルの購読に成功しました: " + Arrays.toString(channels) + "!");
-                    } catch (Exception e) {
-                        RedisManager.this.plugin.logger().warning("購読できませんでした！");
-                    }
-                } catch (Exception e) {
-                    if (RedisManager.this.closing) {
-                        return;
-                    }
-
-                    RedisManager.this.plugin.logger().warning("Redis pubsub接続が切断されました。接続を再開しようとしています！");
-                    try {
-                        unsubscribe();
-                    } catch (Exception ignored) {
-                    }
+        return new JedisTransport(this.plugin, redisConfiguration, redisSettings, this.serverIdentifier, listener);
+    }
 
-                    // コンソールの大量のスパムを防ぐために5秒間スリープする
-                    try {
-                        Thread.sleep(5000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            }
-        }
+    /*----------------------------------------------------------------------------------------------------------*/
 
-        @Override
-        public void onMessage(String channel, String message) {
-            if (channel == null || message == null) {
+    /**
+     * トランスポートが受信したメッセージを配信のレーンに渡します。ホットリロードで置き換えられたトランスポートのpubsubのメッセージは、
+     * 新しいトランスポートでも受信されるため破棄されます。切り替え中のpubsubのメッセージは{@link TransportHandoff}で少なくとも1回配信されるように引き継がれます。
+     * 永続チャンネルのメッセージはコンシューマーグループで1回だけ読み取られるため、常に配信されます。
+     *
+     * @param generation  メッセージを受信したトランスポートの世代
+     * @param channel     メッセージを受信したチャンネル
+     * @param message     受信したメッセージのデータ
+     * @param onCompleted メッセージが配信または破棄されたときに呼び出すコールバック（nullの場合は呼び出しません）
+     */
+    private void receiveFromTransport(int generation, String channel, byte[] message, Consumer<Boolean> onCompleted) {
+        if (onCompleted == null) {
+            TransportHandoff handoff = this.transportHandoff;
+            if (handoff != null && handoff.receive(generation, channel, message)) {
                 return;
             }
-
-            MessageTransferObject messageTransferObject = MessageTransferObject.fromJson(message);
-            if (messageTransferObject == null) {
-                RedisManager.this.plugin.logger().warning("チャンネル '" + channel + "' に送信されたメッセージオブジェクトを取得できません！メッセージ: '" + message + "'");
+            if (generation != this.transportGeneration) {
                 return;
             }
-
-            RedisManager.this.plugin.onMessageReceived(channel, messageTransferObject);
         }
+        this.routeMessage(channel, message, onCompleted);
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
 
     /**
-     * {@link RedisManager}メインインスタンスを作成するための初期化メソッド。これにより、接続や購読は開始されません。
+     * 指定されたチャンネルを購読解除します。
+     *
+     * @param channels 購読解除するチャンネルの名前（大文字小文字を区別）
+     */
+    public void unsubscribe(String... channels) {
+        if (this.state.get() != State.OPEN) {
+            return;
+        }
+
+        if (channels == null || channels.length == 0) {
+            return;
+        }
+
+        Set<String> channelsToRemove = new HashSet<>();
+        for (String channel : channels) {
+            if (channel != null) {
+                channelsToRemove.add(channel);
+            }
+        }
+
+        try {
+            this.detachChannels(channelsToRemove);
+            this.plugin.logger().info("チャンネルの購読解除に成功しました: " + Arrays.toString(channels) + "!");
+        } catch (Exception ex) {
+            this.plugin.logger().warning("チャンネルの購読解除中にエラーが発生しました: " + Arrays.toString(channels) + "!");
+            return;
+        }
+
+        this.channels.removeAll(channelsToRemove);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 既に購読されていない場合、提供されたチャンネルを購読します。対応するイベントは、
+     * 受信したメッセージが購読されたチャンネルに送信された場合にのみ発生します。
+     *
+     * @param channels 購読するチャンネルの名前（大文字小文字を区別）
+     * @return 少なくとも1つのチャンネルが正常に購読されたかどうか
+     */
+    public boolean subscribe(String... channels) {
+        if (this.state.get() != State.OPEN) {
+            return false;
+        }
+
+        if (channels == null || channels.length == 0) {
+            return false;
+        }
+
+        // セットへの追加は原子的に行われるため、複数のスレッドが同じチャンネルを同時に購読しても1回だけ追加される
+        Set<String> actualChannelsToAdd = new HashSet<>();
+        for (String channel : channels) {
+            if (channel != null && this.channels.add(channel)) {
+                actualChannelsToAdd.add(channel);
+            }
+        }
+
+        // ユーザーが実際に購読するチャンネルを提供したかどうかを確認する
+        if (actualChannelsToAdd.isEmpty()) {
+            return false;
+        }
+
+        this.attachChannels(actualChannelsToAdd);
+
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルを、永続チャンネルの場合はストリームの読み取りに、それ以外の場合はpubsub接続に追加します。
+     *
+     * @param channelsToAttach 追加するチャンネル
+     */
+    private void attachChannels(Collection<String> channelsToAttach) {
+        IRedisTransport transport = this.transport;
+        if (transport == null) {
+            return;
+        }
+
+        this.attachChannels(transport, this.redisSettings, channelsToAttach);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルを、提供された設定で永続チャンネルの場合はストリームの読み取りに、それ以外の場合はpubsub接続に追加します。
+     *
+     * @param transport        チャンネルを追加するトランスポート
+     * @param redisSettings    永続チャンネルを含む設定
+     * @param channelsToAttach 追加するチャンネル
+     */
+    private void attachChannels(IRedisTransport transport, RedisSettings redisSettings, Collection<String> channelsToAttach) {
+        List<String> pubSubChannels = new ArrayList<>();
+        List<String> durableChannels = new ArrayList<>();
+        for (String channel : channelsToAttach) {
+            if (redisSettings.getDurableChannels().contains(channel)) {
+                durableChannels.add(channel);
+            } else {
+                pubSubChannels.add(channel);
+            }
+        }
+
+        if (!pubSubChannels.isEmpty()) {
+            transport.addChannels(pubSubChannels, false);
+        }
+        if (!durableChannels.isEmpty()) {
+            transport.addChannels(durableChannels, true);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルをpubsub接続とストリームの読み取りから削除します。
+     *
+     * @param channelsToDetach 削除するチャンネル
+     */
+    private void detachChannels(Collection<String> channelsToDetach) {
+        if (this.transport != null) {
+            this.transport.removeChannels(channelsToDetach);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルを永続チャンネルとして登録します。永続チャンネルはpubsubの代わりにRedis Streamsを使用するため、
+     * 接続が切断されている間に送信されたメッセージも再接続後に受信されます。
+     * <p>
+     * 公開側と購読側の両方のサーバーで登録する必要があります。既に購読されているチャンネルには、再購読するまで反映されません。
+     *
+     * @param channels 永続チャンネルとして登録するチャンネルの名前（大文字小文字を区別）
+     */
+    public void registerDurableChannels(String... channels) {
+        if (channels == null || channels.length == 0) {
+            return;
+        }
+
+        this.registrations.addDurableChannels(Arrays.asList(channels));
+        this.redisSettings.addDurableChannels(Arrays.asList(channels));
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルが永続チャンネルとして登録されているかどうかを返します。
+     *
+     * @param channel 確認するチャンネルの名前（大文字小文字を区別）
+     * @return チャンネルがRedis Streamsを使用するかどうか
+     */
+    public boolean isDurable(String channel) {
+        return channel != null && this.redisSettings.getDurableChannels().contains(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルを受信時に統合するチャンネルとして登録します。配信を待っている間に同じ統合のキーの新しいメッセージを
+     * 受信した場合、古いメッセージは配信されません。{@link #publishConflated(String, String, Object)}で送信されたメッセージのみが対象です。
+     *
+     * @param channels 統合するチャンネルの名前（大文字小文字を区別）
+     */
+    public void registerConflatedChannels(String... channels) {
+        if (channels == null || channels.length == 0) {
+            return;
+        }
+
+        this.registrations.addConflatedChannels(Arrays.asList(channels));
+        this.redisSettings.addConflatedChannels(Arrays.asList(channels));
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルが受信時に統合するチャンネルとして登録されているかどうかを返します。
+     *
+     * @param channel 確認するチャンネルの名前（大文字小文字を区別）
+     * @return 同じキーの未配信のメッセージが統合されるかどうか
+     */
+    public boolean isConflated(String channel) {
+        return channel != null && this.redisSettings.getConflatedChannels().contains(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルの優先度を設定します。優先度ごとに送信キューと受信の配信スレッドが分かれるため、
+     * {@link MessagePriority#BULK}のチャンネルの大量のメッセージが{@link MessagePriority#HIGH}のメッセージを遅延させることはありません。
+     * <p>
+     * 送信と受信の両方に即座に反映されます。同じチャンネル内のメッセージの順序は保たれます。
+     *
+     * @param priority 設定する{@link MessagePriority}
+     * @param channels 優先度を設定するチャンネルの名前（大文字小文字を区別）
+     */
+    public void setChannelPriority(MessagePriority priority, String... channels) {
+        if (channels == null || channels.length == 0) {
+            return;
+        }
+
+        this.registrations.setChannelPriority(Arrays.asList(channels), priority);
+        this.redisSettings.setChannelPriority(Arrays.asList(channels), priority);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルのメッセージを受信したときに、配信キューが満杯の場合の動作を設定します。
+     * 購読接続からの読み取りを停止させたくないチャンネルには{@link OverflowPolicy#DROP_OLDEST}または
+     * {@link OverflowPolicy#DROP_NEWEST}を設定してください。破棄されたメッセージの数は{@link #getMetrics()}で確認できます。
+     *
+     * @param policy   設定する{@link OverflowPolicy}（nullの場合はデフォルトの動作に戻ります）
+     * @param channels 動作を設定するチャンネルの名前（大文字小文字を区別）
+     */
+    public void setOverflowPolicy(OverflowPolicy policy, String... channels) {
+        if (channels == null || channels.length == 0) {
+            return;
+        }
+
+        this.registrations.setOverflowPolicy(Arrays.asList(channels), policy);
+        this.redisSettings.setOverflowPolicy(Arrays.asList(channels), policy);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルにハンドラーを直接登録します。メッセージはプラットフォームのイベントバスを経由せず、
+     * そのチャンネルのハンドラーにのみ配信されます。チャンネルは別途{@link #subscribe(String...)}で購読する必要があります。
+     * <p>
+     * ハンドラーが登録されているチャンネルでは、設定で有効にされていない限り、プラットフォームのイベントは発生しません。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     * @param type    メッセージを解析するオブジェクトのクラス（{@link String}の場合はメッセージがそのまま渡されます）
+     * @param handler 登録するハンドラー
+     * @param <T>     オブジェクトの型
+     * @see RedisSettings#setAlwaysFireEvents(boolean)
+     */
+    public <T> void registerHandler(String channel, Class<T> type, IMessageHandler<T> handler) {
+        if (channel == null || type == null || handler == null) {
+            return;
+        }
+
+        this.handlerRegistry.register(channel, type, handler);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルからハンドラーを登録解除します。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     * @param handler 登録解除するハンドラー
+     */
+    public void unregisterHandler(String channel, IMessageHandler<?> handler) {
+        if (channel == null || handler == null) {
+            return;
+        }
+
+        this.handlerRegistry.unregister(channel, handler);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルに、受信したデータをデコードせずに受け取るハンドラーを登録します。既に登録されているハンドラーは置き換えられます。
+     * <p>
+     * ハンドラーが登録されているチャンネルのメッセージは、文字列への変換やJSONの解析を行わずにハンドラーにのみ配信され、
+     * 通常のハンドラー、レスポンダー、プラットフォームのイベントには配信されません。チャンネルは別途{@link #subscribe(String...)}で購読する必要があります。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     * @param handler 登録するハンドラー
+     * @see #forwardRaw(String, RawMessage)
+     */
+    public void registerRawHandler(String channel, IRawMessageHandler handler) {
+        if (channel == null || handler == null) {
+            return;
+        }
+
+        this.rawHandlers.put(channel, handler);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルのデコードせずにメッセージを受け取るハンドラーを登録解除します。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     */
+    public void unregisterRawHandler(String channel) {
+        if (channel == null) {
+            return;
+        }
+
+        this.rawHandlers.remove(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルにデコードせずにメッセージを受け取るハンドラーが登録されているかどうかを返します。
+     *
+     * @param channel 確認するチャンネルの名前（大文字小文字を区別）
+     * @return ハンドラーが登録されているかどうか
+     */
+    public boolean hasRawHandler(String channel) {
+        return channel != null && this.rawHandlers.containsKey(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージをチャンネルのハンドラーに配信し、必要に応じてプラットフォームのイベントを発生させます。
+     *
+     * @param channel               メッセージを受信したチャンネル
+     * @param messageTransferObject 受信した{@link MessageTransferObject}
+     */
+    void dispatchMessage(String channel, MessageTransferObject messageTransferObject) {
+        this.metrics.recordReceived(channel, messageTransferObject.getTimestamp());
+
+        if (this.requestBroker.handle(channel, messageTransferObject)) {
+            return;
+        }
+
+        RedisLockService lockService = this.lockService;
+        if (lockService != null && lockService.handle(channel, messageTransferObject)) {
+            return;
+        }
+
+        RedisPresenceService presenceService = this.presenceService;
+        if (presenceService != null && presenceService.handle(channel, messageTransferObject)) {
+            return;
+        }
+
+        // 内部のチャンネルのメッセージは、サービスが停止している場合でもイベントとして配信しない
+        if (channel.equals(RedisLockService.NOTIFY_CHANNEL) || channel.equals(RedisPresenceService.UPDATE_CHANNEL)) {
+            return;
+        }
+
+        boolean handled = this.handlerRegistry.dispatch(channel, messageTransferObject, this.plugin.logger());
+        if (!handled || this.redisSettings.isAlwaysFireEvents()) {
+            this.plugin.onMessageReceived(channel, messageTransferObject);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルにリクエストを送信し、レスポンスを待ちます。リクエストを受信するサーバーは、
+     * そのチャンネルを購読し、{@link #registerResponder(String, Class, IMessageResponder)}でレスポンダーを登録する必要があります。
+     * <p>
+     * 最初に受信したレスポンスで完了します。時間内にレスポンスがない場合は{@link java.util.concurrent.TimeoutException}で完了します。
+     *
+     * @param targetChannel リクエストを送信するチャンネル（大文字小文字を区別）
+     * @param payload       送信するオブジェクト
+     * @param responseType  レスポンスを解析するオブジェクトのクラス
+     * @param timeoutMillis レスポンスを待機する最大時間（ミリ秒）
+     * @param <T>           レスポンスの型
+     * @return レスポンスで完了する{@link CompletableFuture}
+     */
+    public <T> CompletableFuture<T> request(String targetChannel, Object payload, Class<T> responseType, long timeoutMillis) {
+        return this.requestBroker.request(targetChannel, payload, responseType, timeoutMillis);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルにレスポンダーを登録します。リクエストはそのチャンネルのハンドラーやイベントには配信されません。
+     * チャンネルは別途{@link #subscribe(String...)}で購読する必要があります。既に登録されているレスポンダーは置き換えられます。
+     *
+     * @param channel   チャンネルの名前（大文字小文字を区別）
+     * @param type      リクエストを解析するオブジェクトのクラス
+     * @param responder 登録するレスポンダー
+     * @param <T>       リクエストの型
+     */
+    public <T> void registerResponder(String channel, Class<T> type, IMessageResponder<T> responder) {
+        if (channel == null || type == null || responder == null) {
+            return;
+        }
+
+        this.requestBroker.registerResponder(channel, type, responder);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルのレスポンダーを登録解除します。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     */
+    public void unregisterResponder(String channel) {
+        if (channel == null) {
+            return;
+        }
+
+        this.requestBroker.unregisterResponder(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルにオブジェクトを公開します。サーバー識別も処理します。
+     * 単純な{@link String}メッセージを公開するためにこれを使用しないでください。
+     *
+     * @param targetChannel   公開するチャンネル（大文字小文字を区別）
+     * @param objectToPublish 公開するオブジェクト
+     * @return メッセージがJSONに変換できない場合や閉じる状態にある場合は 'false' を返します。プロセスが成功した場合は 'true' を返します
+     * @see #publishMessage(String, String)
+     */
+    public boolean publishObject(String targetChannel, Object objectToPublish) {
+        MessageTransferObject messageTransferObject = MessageTransferObject.wrap(this.serverIdentifier, objectToPublish, System.currentTimeMillis());
+        return this.executePublish(targetChannel, messageTransferObject);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルにメッセージを公開します。サーバー識別も処理します。
+     * このメソッドはシリアル化されたオブジェクトを公開するためには推奨されません。オブジェクトを公開するには：
+     *
+     * @param targetChannel    公開するチャンネル（大文字小文字を区別）
+     * @param messageToPublish 公開するメッセージ
+     * @return メッセージがJSONに変換できない場合や閉じる状態にある場合は 'false' を返します。プロセスが成功した場合は 'true' を返します。
+     * @see #publishObject(String, Object)
+     */
+    public boolean publishMessage(String targetChannel, String messageToPublish) {
+        MessageTransferObject messageTransferObject = new MessageTransferObject(this.serverIdentifier, messageToPublish, System.currentTimeMillis());
+        return this.executePublish(targetChannel, messageTransferObject);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 最新の値のみが必要な状態（サーバーのTPS、プレイヤー数など）を公開します。
+     * <p>
+     * 同じチャンネルと統合のキーの未送信のメッセージがある場合、そのメッセージは送信されずに新しいオブジェクトで置き換えられます。
+     * 受信側でチャンネルが{@link #registerConflatedChannels(String...)}で登録されている場合は、配信前にも同様に統合されます。
+     *
+     * @param targetChannel   公開するチャンネル
+     * @param conflationKey   統合のキー（例: サーバー名やキューの名前）
+     * @param objectToPublish 公開するオブジェクト
+     * @return オブジェクトが送信キューに追加されたかどうか
+     * @see #publishObject(String, Object)
+     */
+    public boolean publishConflated(String targetChannel, String conflationKey, Object objectToPublish) {
+        MessageTransferObject messageTransferObject = MessageTransferObject.wrap(this.serverIdentifier, objectToPublish, System.currentTimeMillis());
+        messageTransferObject.setConflationKey(conflationKey);
+        return this.executePublish(targetChannel, messageTransferObject);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたデータをエンベロープで包まずにそのまま公開します。受信側のチャンネルには
+     * {@link #registerRawHandler(String, IRawMessageHandler)}でハンドラーを登録するか、データ自体がエンベロープである必要があります。
+     *
+     * @param targetChannel 公開するチャンネル（大文字小文字を区別）
+     * @param payload       公開するデータ（コピーされないため、送信されるまで変更しないでください）
+     * @return データが送信キューに追加されたかどうか
+     */
+    public boolean publishRaw(String targetChannel, byte[] payload) {
+        if (this.state.get() == State.CLOSED) {
+            return false;
+        }
+
+        if (targetChannel == null || payload == null) {
+            return false;
+        }
+
+        return this.enqueue(targetChannel, payload, null);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたデータをエンベロープで包まずにそのまま公開します。
+     *
+     * @param targetChannel 公開するチャンネルの名前のデータ（UTF-8）
+     * @param payload       公開するデータ（コピーされないため、送信されるまで変更しないでください）
+     * @return データが送信キューに追加されたかどうか
+     * @see #publishRaw(String, byte[])
+     */
+    public boolean publishRaw(byte[] targetChannel, byte[] payload) {
+        if (targetChannel == null) {
+            return false;
+        }
+
+        return this.publishRaw(SafeEncoder.encode(targetChannel), payload);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージのデータを、コピーやデコードを行わずに提供されたチャンネルに転送します。
+     * データが元の送信者のエンベロープの場合、送信者の識別子やタイムスタンプは変更されません。
+     *
+     * @param targetChannel 転送するチャンネル（大文字小文字を区別）
+     * @param rawMessage    {@link IRawMessageHandler}で受信した{@link RawMessage}
+     * @return データが送信キューに追加されたかどうか
+     */
+    public boolean forwardRaw(String targetChannel, RawMessage rawMessage) {
+        if (rawMessage == null) {
+            return false;
+        }
+
+        return this.publishRaw(targetChannel, rawMessage.array());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * {@link MessageTransferObject}オブジェクトを公開するための内部メソッド。
+     *
+     * @param targetChannel         公開するチャンネル
+     * @param messageTransferObject 公開する{@link MessageTransferObject}オブジェクト
+     * @return 提供された{@link MessageTransferObject}が意味をなすかどうか
+     */
+    boolean executePublish(String targetChannel, MessageTransferObject messageTransferObject) {
+        if (this.state.get() == State.CLOSED) {
+            return false;
+        }
+
+        if (messageTransferObject == null) {
+            return false;
+        }
+
+        byte[] messageData = messageTransferObject.encode(this.redisSettings.getEnvelopeFormat());
+        if (messageData == null) {
+            return false;
+        }
+
+        return this.enqueue(targetChannel, messageData, messageTransferObject.getConflationKey());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * シリアル化されたメッセージをチャンネルの優先度の公開者のキューに追加します。
+     *
+     * @param targetChannel 公開するチャンネル
+     * @param messageData   公開するデータ
+     * @param conflationKey 統合のキー（nullの場合は統合しません）
+     * @return メッセージがキューに追加されたかどうか
+     */
+    private boolean enqueue(String targetChannel, byte[] messageData, String conflationKey) {
+        MessagePriority priority = this.redisSettings.getChannelPriority(targetChannel);
+        RedisPublisher publisher = this.publishers.get(priority);
+        if (publisher == null) {
+            return false;
+        }
+
+        boolean durable = this.isDurable(targetChannel);
+        if (publisher.enqueue(targetChannel, messageData, durable, conflationKey)) {
+            return true;
+        }
+
+        // ホットリロードで公開者が置き換えられた場合は、新しい公開者に追加する
+        RedisPublisher current = this.publishers.get(priority);
+        if (current != null && current != publisher && current.enqueue(targetChannel, messageData, durable, conflationKey)) {
+            return true;
+        }
+
+        this.metrics.recordSendFailures(1);
+        return false;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * トランスポートが受信したメッセージを、チャンネルの優先度とハッシュに対応するレーンに渡します。
+     * レーンが満杯の場合は、チャンネルの{@link OverflowPolicy}に従ってメッセージを破棄するか、空きができるまで待機します。
+     * 配信の確認が必要なメッセージ（永続チャンネルのエントリ）は破棄されず、常に空きができるまで待機します。
+     *
+     * @param channel     メッセージを受信したチャンネル
+     * @param message     受信したメッセージのデータ
+     * @param onCompleted メッセージが配信または破棄されたときに呼び出すコールバック（nullの場合は呼び出しません）
+     */
+    void routeMessage(String channel, byte[] message, Consumer<Boolean> onCompleted) {
+        InboundLane[] lanes = this.inboundLanes.get(this.redisSettings.getChannelPriority(channel));
+        InboundLane inboundLane = lanes != null ? lanes[Math.floorMod(channel.hashCode(), lanes.length)] : null;
+        OverflowPolicy policy = onCompleted != null ? OverflowPolicy.BLOCK : this.getOverflowPolicy(channel);
+        if (inboundLane != null && inboundLane.offer(channel, message, policy, onCompleted)) {
+            return;
+        }
+
+        // レーンが停止している場合は、トランスポートのスレッドで配信する。永続チャンネルのエントリは確認せずに再び読み取らせる
+        if (onCompleted != null) {
+            onCompleted.accept(false);
+            return;
+        }
+        this.receiveMessage(channel, message);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルの配信キューが満杯の場合の動作を返します。永続チャンネルと、リクエストのレスポンス、ロックの解放、
+     * 在席の通知などの内部のチャンネルのメッセージは破棄されないように、常に{@link OverflowPolicy#BLOCK}として扱われます。
+     *
+     * @param channel メッセージを受信したチャンネル
+     * @return チャンネルに適用される{@link OverflowPolicy}
+     */
+    public OverflowPolicy getOverflowPolicy(String channel) {
+        if (this.isDurable(channel)
+                || channel.startsWith(RedisRequestBroker.REPLY_CHANNEL_PREFIX)
+                || channel.equals(RedisLockService.NOTIFY_CHANNEL)
+                || channel.equals(RedisPresenceService.UPDATE_CHANNEL)) {
+            return OverflowPolicy.BLOCK;
+        }
+        return this.redisSettings.getOverflowPolicy(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージをデコードし、配信します。
+     *
+     * @param channel メッセージを受信したチャンネル
+     * @param message 受信したメッセージのデータ
+     */
+    private void receiveMessage(String channel, byte[] message) {
+        if (this.deliverRaw(channel, message)) {
+            return;
+        }
+        this.deliverMessage(channel, this.decodeMessage(channel, message));
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルにデコードせずにメッセージを受け取るハンドラーが登録されている場合、データをそのまま配信します。
+     * 配信中のエラーはログに記録されます。
+     *
+     * @param channel メッセージを受信したチャンネル
+     * @param message 受信したメッセージのデータ
+     * @return ハンドラーが登録されていた場合は 'true'（データはデコードされません）
+     */
+    boolean deliverRaw(String channel, byte[] message) {
+        IRawMessageHandler rawHandler = this.rawHandlers.get(channel);
+        if (rawHandler == null) {
+            return false;
+        }
+
+        this.metrics.recordReceived(channel, 0);
+        try {
+            rawHandler.handle(channel, new RawMessage(channel, message));
+        } catch (Exception ex) {
+            this.plugin.logger().warning("チャンネル '" + channel + "' のメッセージの配信中にエラーが発生しました: " + ex);
+        }
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * デコードされたメッセージを配信します。配信中のエラーはログに記録されます。
+     *
+     * @param channel               メッセージを受信したチャンネル
+     * @param messageTransferObject デコードされた{@link MessageTransferObject}（nullの場合は何もしません）
+     */
+    void deliverMessage(String channel, MessageTransferObject messageTransferObject) {
+        if (messageTransferObject == null) {
+            return;
+        }
+
+        try {
+            this.dispatchMessage(channel, messageTransferObject);
+        } catch (Exception ex) {
+            this.plugin.logger().warning("チャンネル '" + channel + "' のメッセージの配信中にエラーが発生しました: " + ex);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージをデコードし、かかった時間を統計に記録します。デコードできない場合は警告を記録します。
+     *
+     * @param channel メッセージを受信したチャンネル
+     * @param message 受信したメッセージのデータ
+     * @return デコードされた{@link MessageTransferObject}、デコードできない場合はnull
+     */
+    MessageTransferObject decodeMessage(String channel, byte[] message) {
+        long start = System.nanoTime();
+        MessageTransferObject messageTransferObject = MessageTransferObject.decode(message);
+        this.metrics.recordDecode(System.nanoTime() - start, messageTransferObject != null);
+        if (messageTransferObject == null) {
+            this.plugin.logger().warning("チャンネル '" + channel + "' に送信されたメッセージオブジェクトを取得できません！");
+        }
+        return messageTransferObject;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * Redis接続を閉じ、すべてのチャンネルの購読を解除します。
+     */
+    public void close() {
+        synchronized (this.reloadLock) {
+            this.closeLocked();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * {@link #close()}の処理を実行します。{@link #reloadLock}を保持した状態で呼び出す必要があります。
+     */
+    private void closeLocked() {
+        if (!this.state.compareAndSet(State.OPEN, State.CLOSING)) {
+            return;
+        }
+
+        // 保持しているロックを解放し、解放の通知を送信する（通知を送信するために送信を停止する前に行う）
+        if (this.lockService != null) {
+            this.lockService.close();
+            this.lockService = null;
+        }
+
+        // このサーバーがオフラインになったことを通知する
+        if (this.presenceService != null) {
+            this.presenceService.close();
+            this.presenceService = null;
+        }
+
+        this.state.set(State.CLOSED);
+        this.requestBroker.cancelAll();
+
+        // 未送信のメッセージを優先度の高い順に送信してからトランスポートを閉じる
+        for (RedisPublisher publisher : this.publishers.values()) {
+            publisher.close();
+        }
+        this.publishers = Map.of();
+
+        if (this.counters != null) {
+            this.counters.close();
+            this.counters = null;
+        }
+
+        if (this.keyValueStore != null) {
+            this.keyValueStore.close();
+            this.keyValueStore = null;
+        }
+
+        if (this.transport != null) {
+            this.transport.close();
+            this.transport = null;
+        }
+
+        this.closeInboundLanes();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信済みのメッセージを配信してから、すべてのレーンを停止します。
+     */
+    private void closeInboundLanes() {
+        this.closeInboundLanes(this.inboundLanes);
+        this.inboundLanes = Map.of();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたレーンの受信済みのメッセージを配信してから、レーンを停止します。
+     *
+     * @param inboundLanes 停止するレーン
+     */
+    private void closeInboundLanes(Map<MessagePriority, InboundLane[]> inboundLanes) {
+        // すべてのレーンの受け付けを先に停止し、並行して残りのメッセージを配信させる
+        for (InboundLane[] lanes : inboundLanes.values()) {
+            for (InboundLane inboundLane : lanes) {
+                inboundLane.stop();
+            }
+        }
+
+        // すべてのレーンで1つの期限を共有するため、合計の待機時間はレーンの数に関わらず一定
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(InboundLane.CLOSE_TIMEOUT_MILLIS);
+        for (Map.Entry<MessagePriority, InboundLane[]> entry : inboundLanes.entrySet()) {
+            int discarded = 0;
+            for (InboundLane inboundLane : entry.getValue()) {
+                discarded += inboundLane.close(deadline);
+            }
+            if (discarded > 0) {
+                this.plugin.logger().warning("優先度 " + entry.getKey() + " の未配信のメッセージ" + discarded + "件を破棄しました！");
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 仮想スレッドを開始するメソッドを検索します。プロジェクトはJava 17でコンパイルされるため、リフレクションを使用します。
+     *
+     * @return {@code Thread#startVirtualThread(Runnable)}、使用できない場合はnull
+     */
+    private static Method findVirtualThreadStarter() {
+        try {
+            return Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 現在のサーバー識別子を返します。イベントの送信者名として使用されます。
+     *
+     * @return サーバー識別子
+     */
+    public String getServerIdentifier() {
+        return serverIdentifier;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルが購読されているかどうかを返します。
+     *
+     * @param channel 確認するチャンネルの名前（大文字小文字を区別）。
+     * @return チャンネルが購読されているかどうか
+     */
+    public boolean isSubscribed(String channel) {
+        return channel != null && this.channels.contains(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * Redisサーバーへの接続をプールから取得します。使用後は必ず閉じてください。
+     *
+     * @return {@link Jedis}接続
+     * @throws IllegalStateException トランスポートがRedisサーバーに接続していない場合
+     */
+    public Jedis getJedis() {
+        if (!(this.transport instanceof JedisTransport jedisTransport)) {
+            throw new IllegalStateException("現在のトランスポートはRedisサーバーに接続していません！");
+        }
+        return jedisTransport.getJedis();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * Redisサーバーのキー/値を読み書きするためのストアを返します。リロードすると新しいストアが作成されます。
+     *
+     * @return 現在の{@link RedisKeyValueStore}
+     * @throws IllegalStateException トランスポートがRedisサーバーに接続していない場合
+     */
+    public RedisKeyValueStore getKeyValueStore() {
+        RedisKeyValueStore keyValueStore = this.keyValueStore;
+        if (keyValueStore == null) {
+            throw new IllegalStateException("現在のトランスポートはRedisサーバーに接続していません！");
+        }
+        return keyValueStore;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ネットワーク全体のカウンターを返します。リロードすると未送信の値が送信され、新しいカウンターが作成されます。
+     *
+     * @return 現在の{@link RedisCounters}
+     * @throws IllegalStateException トランスポートがRedisサーバーに接続していない場合
+     */
+    public RedisCounters getCounters() {
+        RedisCounters counters = this.counters;
+        if (counters == null) {
+            throw new IllegalStateException("現在のトランスポートはRedisサーバーに接続していません！");
+        }
+        return counters;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 分散ロックのサービスを返します。リロードすると保持しているロックが解放され、新しいサービスが作成されます。
+     *
+     * @return 現在の{@link RedisLockService}
+     * @throws IllegalStateException トランスポートがRedisサーバーに接続していない場合
+     */
+    public RedisLockService getLocks() {
+        RedisLockService lockService = this.lockService;
+        if (lockService == null) {
+            throw new IllegalStateException("現在のトランスポートはRedisサーバーに接続していません！");
+        }
+        return lockService;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * プレイヤーの在席のサービスを返します。リロードするとこのサーバーのプレイヤーは削除され、新しいサービスが作成されます。
+     *
+     * @return 現在の{@link RedisPresenceService}
+     * @throws IllegalStateException トランスポートがRedisサーバーに接続していない場合
+     */
+    public RedisPresenceService getPresence() {
+        RedisPresenceService presenceService = this.presenceService;
+        if (presenceService == null) {
+            throw new IllegalStateException("現在のトランスポートはRedisサーバーに接続していません！");
+        }
+        return presenceService;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージングに関する統計を返します。統計はリロード後も保持されます。
+     *
+     * @return 現在の{@link RedisMetrics}
+     */
+    public RedisMetrics getMetrics() {
+        return metrics;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信を待っているメッセージの数を返します。
+     *
+     * @return 送信キューのサイズ。接続が確立されていない場合は0
+     */
+    public int getPublishQueueSize() {
+        int size = 0;
+        for (RedisPublisher publisher : this.publishers.values()) {
+            size += publisher.size();
+        }
+        return size;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信を待っている受信メッセージの数を返します。
+     *
+     * @return すべての優先度の配信キューのサイズの合計。接続が確立されていない場合は0
+     */
+    public int getInboundQueueSize() {
+        int size = 0;
+        for (InboundLane[] lanes : this.inboundLanes.values()) {
+            for (InboundLane inboundLane : lanes) {
+                size += inboundLane.size();
+            }
+        }
+        return size;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * マネージャーの動作に関する設定を返します。
+     *
+     * @return 現在の{@link RedisSettings}
+     */
+    public RedisSettings getSettings() {
+        return redisSettings;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * マネージャーが関連付けられているプラグインを返します。
+     *
+     * @return 現在の{@link IForestRedisPlugin}の実装
+     */
+    IForestRedisPlugin getPlugin() {
+        return plugin;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * すべての購読されたチャンネルのリストを返します。
+     *
+     * @return 現時点で購読されているチャンネルの変更できないコピー（大文字小文字を区別）
+     */
+    public Set<String> getSubscribedChannels() {
+        return Set.copyOf(channels);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * {@link RedisManager}メインインスタンスを作成するための初期化メソッド。これにより、接続や購読は開始されません。
      *
      * @param plugin             インスタンスを取得しようとする元のプラグイン
      * @param serverIdentifier   サーバーの識別子（例： 'Bungee01'）。バグを防ぐために一意である必要があります
@@ -434,6 +1754,20 @@ public class RedisManager {
 
     /*----------------------------------------------------------------------------------------------------------*/
 
+    /**
+     * {@link RedisManager}メインインスタンスを作成するための初期化メソッド。これにより、接続や購読は開始されません。
+     *
+     * @param plugin             インスタンスを取得しようとする元のプラグイン
+     * @param serverIdentifier   サーバーの識別子（例： 'Bungee01'）。バグを防ぐために一意である必要があります
+     * @param redisConfiguration Redisサーバーの認証情報を含む{@link RedisConfiguration}オブジェクト
+     * @param redisSettings      マネージャーの動作に関する{@link RedisSettings}オブジェクト
+     */
+    public static void init(IForestRedisPlugin plugin, String serverIdentifier, RedisConfiguration redisConfiguration, RedisSettings redisSettings) {
+        api = new RedisManager(plugin, serverIdentifier, redisConfiguration, redisSettings);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
     /**
      * {@link RedisManager}オブジェクトのメインインスタンスを取得します。これがAPIメソッドにアクセスするための唯一の推奨アプローチです。
      *
@@ -444,4 +1778,27 @@ public class RedisManager {
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * マネージャーの状態
+     */
+    private enum State {
+
+        /**
+         * 購読と送信を受け付けている
+         */
+        OPEN,
+
+        /**
+         * 閉じる処理を実行中。購読は受け付けないが、ロックの解放などの最後のメッセージは送信できる
+         */
+        CLOSING,
+
+        /**
+         * 閉じられている
+         */
+        CLOSED
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
 }
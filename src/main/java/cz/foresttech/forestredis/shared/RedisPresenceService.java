@@ -0,0 +1,675 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.kv.RedisKeyValueStore;
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * ネットワーク全体のプレイヤーの在席を管理するためのクラス。{@link RedisManager#getPresence()}から取得します。
+ * <p>
+ * 各サーバーは自身のプレイヤーをRedisのハッシュに保存し、変更（参加/退出）を短い差分としてブロードキャストします。
+ * すべてのサーバーは差分からローカルのインデックスを維持するため、プレイヤーの所在の確認にRedisサーバーへの問い合わせは不要です。
+ * 別のサーバーへの参加は移動として扱われます。
+ * <p>
+ * 差分にはサーバーごとのシーケンス番号が含まれ、欠落が検出された場合や送信元が再起動した場合にのみ、
+ * そのサーバーのハッシュからスナップショットが取得されます。起動時にはすべてのサーバーのスナップショットが取得されます。
+ * <p>
+ * 各サーバーは有効期限付きのキーを定期的に更新します。クラッシュなどでキーが期限切れになったサーバーは、
+ * スナップショットの取得時と定期的な確認時にRedisとローカルのインデックスから削除されるため、プレイヤーが残り続けることはありません。
+ * <p>
+ * Redisサーバーとの通信はインデックスのロックの外で行われ、ロックはインデックスの更新の間だけ保持されます。
+ * 参加/退出とシーケンス番号は別のロックで保護されるため、メインスレッドからの呼び出しがスナップショットの取得を待つことはありません。
+ */
+public class RedisPresenceService implements Runnable {
+
+    /**
+     * 在席の差分が送信されるチャンネル
+     */
+    static final String UPDATE_CHANNEL = "forestredis:presence";
+
+    /**
+     * サーバーと最後のエポックとシーケンス番号を保存するハッシュのキー
+     */
+    private static final String SERVERS_KEY = "forestredis:presence:servers";
+
+    /**
+     * サーバーごとのプレイヤーを保存するハッシュのキーの接頭辞
+     */
+    private static final String PLAYERS_KEY_PREFIX = "forestredis:presence:players:";
+
+    /**
+     * サーバーが稼働していることを示す有効期限付きのキーの接頭辞
+     */
+    private static final String ALIVE_KEY_PREFIX = "forestredis:presence:alive:";
+
+    /**
+     * 稼働を示すキーを更新し、他のサーバーの稼働を確認する間隔（ミリ秒）
+     */
+    private static final long HEARTBEAT_MILLIS = 5000;
+
+    /**
+     * 稼働を示すキーの有効期間（ミリ秒）。更新されなくなったサーバーはこの時間の経過後に削除されます
+     */
+    private static final long ALIVE_TTL_MILLIS = 15000;
+
+    /**
+     * 稼働を示すキーが存在しない場合にのみ、サーバーのエントリとハッシュを削除するスクリプト
+     */
+    private static final String PRUNE_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+              redis.call('HDEL', KEYS[2], ARGV[1])
+              redis.call('DEL', KEYS[3])
+              return 1
+            end
+            return 0""";
+
+    /**
+     * 停止時に最後の書き込みを待機する最大時間（ミリ秒）
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * サービスが関連付けられているマネージャー
+     */
+    private final RedisManager redisManager;
+
+    /**
+     * 自身のハッシュを書き込むためのストア
+     */
+    private final RedisKeyValueStore keyValueStore;
+
+    /**
+     * スナップショットを読み取るためのRedisサーバーへの接続を提供するサプライヤー
+     */
+    private final Supplier<Jedis> connections;
+
+    /**
+     * このサーバーの識別子
+     */
+    private final String serverIdentifier;
+
+    /**
+     * このサービスが開始された時刻
+     */
+    private final long epoch;
+
+    /**
+     * 参加/退出の順番とシーケンス番号を保護するためのロック。インデックスのロック（{@code this}）より先に取得します
+     */
+    private final Object localLock;
+
+    /**
+     * 最後に送信した差分のシーケンス番号（{@link #localLock}で保護されます）
+     */
+    private long sequence;
+
+    /**
+     * プレイヤーと所在するサーバーのインデックス
+     */
+    private final Map<String, String> locations;
+
+    /**
+     * サーバーごとのプレイヤーのインデックス
+     */
+    private final Map<String, Set<String>> players;
+
+    /**
+     * 他のサーバーごとに最後に適用した差分の位置
+     */
+    private final Map<String, Position> positions;
+
+    /**
+     * ループの停止を要求するためのラッチ
+     */
+    private final CountDownLatch closing;
+
+    /**
+     * ループが終了したことを通知するためのラッチ
+     */
+    private final CountDownLatch stopped;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * サービスのインスタンスを構築します。インデックスは{@link #start()}が呼び出されるまで空です。
+     *
+     * @param redisManager  サービスが関連付けられているマネージャー
+     * @param keyValueStore 自身のハッシュを書き込むためのストア
+     * @param connections   Redisサーバーへの接続を提供するサプライヤー（接続は使用後に閉じられます）
+     */
+    RedisPresenceService(RedisManager redisManager, RedisKeyValueStore keyValueStore, Supplier<Jedis> connections) {
+        this.redisManager = redisManager;
+        this.keyValueStore = keyValueStore;
+        this.connections = connections;
+        this.serverIdentifier = redisManager.getServerIdentifier();
+        this.epoch = System.currentTimeMillis();
+        this.localLock = new Object();
+        this.locations = new ConcurrentHashMap<>();
+        this.players = new ConcurrentHashMap<>();
+        this.positions = new ConcurrentHashMap<>();
+        this.closing = new CountDownLatch(1);
+        this.stopped = new CountDownLatch(1);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 前回の起動で残った自身のハッシュを削除し、他のすべてのサーバーのスナップショットを取得します。
+     * 稼働を示すキーが期限切れになっているサーバーは削除されます。差分のチャンネルは呼び出し前に購読されている必要があります。
+     * 稼働を示すキーは{@link #run()}が呼び出されるまで更新されません。
+     */
+    void start() {
+        Map<String, String> servers;
+        try (Jedis jedis = this.connections.get()) {
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.del(playersKey(this.serverIdentifier));
+            pipeline.set(aliveKey(this.serverIdentifier), String.valueOf(this.epoch), SetParams.setParams().px(ALIVE_TTL_MILLIS));
+            pipeline.hset(SERVERS_KEY, this.serverIdentifier, this.epoch + ":0");
+            Response<Map<String, String>> response = pipeline.hgetAll(SERVERS_KEY);
+            pipeline.sync();
+            servers = response.get();
+        } catch (Exception e) {
+            this.redisManager.getPlugin().logger().warning("プレイヤーの在席を初期化できませんでした: " + e.getMessage());
+            return;
+        }
+
+        for (String server : servers.keySet()) {
+            if (!server.equals(this.serverIdentifier)) {
+                this.resync(server);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * このサーバーにプレイヤーが参加したことを記録し、他のサーバーに通知します。
+     *
+     * @param player プレイヤーの名前（大文字小文字を区別）
+     */
+    public void join(String player) {
+        if (player == null) {
+            return;
+        }
+
+        synchronized (this.localLock) {
+            synchronized (this) {
+                if (!this.addPlayer(this.serverIdentifier, player)) {
+                    return;
+                }
+            }
+
+            this.keyValueStore.hsetAsync(playersKey(this.serverIdentifier), player, String.valueOf(System.currentTimeMillis()));
+            this.broadcast(PresenceDelta.Type.JOIN, player);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * このサーバーからプレイヤーが退出したことを記録し、他のサーバーに通知します。
+     *
+     * @param player プレイヤーの名前（大文字小文字を区別）
+     */
+    public void leave(String player) {
+        if (player == null) {
+            return;
+        }
+
+        synchronized (this.localLock) {
+            synchronized (this) {
+                if (!this.removePlayer(this.serverIdentifier, player)) {
+                    return;
+                }
+            }
+
+            this.keyValueStore.hdelAsync(playersKey(this.serverIdentifier), player);
+            this.broadcast(PresenceDelta.Type.LEAVE, player);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * プレイヤーが所在するサーバーを返します。Redisサーバーには問い合わせません。
+     *
+     * @param player プレイヤーの名前（大文字小文字を区別）
+     * @return サーバーの識別子、オンラインでない場合はnull。複数のサーバーに所在する場合は最後に参加したサーバー
+     */
+    public String getServer(String player) {
+        return player != null ? this.locations.get(player) : null;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * プレイヤーがネットワークのいずれかのサーバーにオンラインかどうかを返します。
+     *
+     * @param player プレイヤーの名前（大文字小文字を区別）
+     * @return オンラインの場合は 'true'
+     */
+    public boolean isOnline(String player) {
+        return player != null && this.locations.containsKey(player);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * サーバーに所在するプレイヤーを返します。
+     *
+     * @param server サーバーの識別子
+     * @return 変更できないプレイヤーのセット（インデックスの更新が反映されます）
+     */
+    public Set<String> getPlayers(String server) {
+        Set<String> serverPlayers = this.players.get(server);
+        return serverPlayers != null ? Collections.unmodifiableSet(serverPlayers) : Collections.emptySet();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * プレイヤーが所在するサーバーを返します。
+     *
+     * @return 変更できないサーバーの識別子のセット
+     */
+    public Set<String> getServers() {
+        return Collections.unmodifiableSet(this.players.keySet());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ネットワーク全体のオンラインのプレイヤーの数を返します。
+     *
+     * @return プレイヤーの数
+     */
+    public int getOnlineCount() {
+        return this.locations.size();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージが在席の差分である場合、インデックスに適用します。
+     *
+     * @param channel               メッセージを受信したチャンネル
+     * @param messageTransferObject 受信した{@link MessageTransferObject}
+     * @return メッセージがサービスによって処理された場合は 'true'
+     */
+    boolean handle(String channel, MessageTransferObject messageTransferObject) {
+        if (!channel.equals(UPDATE_CHANNEL)) {
+            return false;
+        }
+
+        String sender = messageTransferObject.getSenderIdentifier();
+        if (sender == null || sender.equals(this.serverIdentifier)) {
+            return true;
+        }
+
+        PresenceDelta delta = PresenceDelta.decode(messageTransferObject.getMessage());
+        if (delta == null) {
+            this.redisManager.getPlugin().logger().warning("サーバー '" + sender + "' から無効な在席の差分を受信しました！");
+            return true;
+        }
+
+        this.apply(sender, delta);
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void run() {
+        try {
+            while (!this.closing.await(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS)) {
+                this.heartbeat();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.stopped.countDown();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 自身の稼働を示すキーを更新し、稼働を示すキーが期限切れになった他のサーバーを削除します。
+     */
+    private void heartbeat() {
+        List<String> servers;
+        List<Response<Boolean>> alive = new ArrayList<>();
+        try (Jedis jedis = this.connections.get()) {
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.set(aliveKey(this.serverIdentifier), String.valueOf(this.epoch), SetParams.setParams().px(ALIVE_TTL_MILLIS));
+            Response<Set<String>> serversResponse = pipeline.hkeys(SERVERS_KEY);
+            pipeline.sync();
+
+            servers = new ArrayList<>(serversResponse.get());
+            servers.remove(this.serverIdentifier);
+            for (String server : servers) {
+                alive.add(pipeline.exists(aliveKey(server)));
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            this.redisManager.getPlugin().logger().warning("プレイヤーの在席の稼働を更新できませんでした: " + e.getMessage());
+            return;
+        }
+
+        for (int i = 0; i < servers.size(); i++) {
+            if (!alive.get(i).get()) {
+                this.prune(servers.get(i));
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 稼働を示すキーが期限切れになったサーバーのエントリとハッシュを削除し、ローカルのインデックスからも削除します。
+     * 削除の直前にサーバーが再起動した場合は、Redisのデータは削除されず、次の差分でスナップショットが取得されます。
+     *
+     * @param server 削除するサーバー
+     */
+    private void prune(String server) {
+        try (Jedis jedis = this.connections.get()) {
+            Object pruned = jedis.eval(PRUNE_SCRIPT, List.of(aliveKey(server), SERVERS_KEY, playersKey(server)), List.of(server));
+            if (pruned instanceof Long removed && removed > 0) {
+                this.redisManager.getPlugin().logger().info("応答のないサーバー '" + server + "' を在席から削除しました！");
+            }
+        } catch (Exception e) {
+            this.redisManager.getPlugin().logger().warning("サーバー '" + server + "' の在席を削除できませんでした: " + e.getMessage());
+        }
+
+        synchronized (this) {
+            this.removeServer(server);
+            this.positions.remove(server);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 稼働を示すキーの更新を停止して自身のハッシュを削除し、他のサーバーにこのサーバーがオフラインになったことを通知します。
+     */
+    void close() {
+        this.closing.countDown();
+
+        try {
+            if (!this.stopped.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                this.redisManager.getPlugin().logger().warning("プレイヤーの在席の稼働の更新が時間内に停止しませんでした！");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.removeSelf();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 自身のハッシュと稼働を示すキーを削除し、オフラインの通知を送信します。
+     */
+    private void removeSelf() {
+        // 未送信の差分より後に送信されるように、ストアの操作の完了後に通知する
+        CompletableFuture<Void> removed;
+        synchronized (this.localLock) {
+            String message = new PresenceDelta(PresenceDelta.Type.OFFLINE, this.epoch, ++this.sequence, null).encode();
+            this.keyValueStore.delAsync(aliveKey(this.serverIdentifier));
+            this.keyValueStore.delAsync(playersKey(this.serverIdentifier));
+            removed = this.keyValueStore.hdelAsync(SERVERS_KEY, this.serverIdentifier)
+                    .handle((result, ex) -> null)
+                    .thenRun(() -> this.redisManager.publishMessage(UPDATE_CHANNEL, message));
+        }
+
+        try {
+            removed.get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            this.redisManager.getPlugin().logger().warning("プレイヤーの在席を削除できませんでした: " + e.getMessage());
+        }
+
+        synchronized (this) {
+            this.locations.clear();
+            this.players.clear();
+            this.positions.clear();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * このサーバーの差分を送信します。差分はハッシュの書き込みの後に送信されるため、
+     * 差分を受信したサーバーが取得するスナップショットには必ずその差分が含まれます。{@link #localLock}を保持した状態で呼び出す必要があります。
+     *
+     * @param type   変更の種類
+     * @param player プレイヤーの名前
+     */
+    private void broadcast(PresenceDelta.Type type, String player) {
+        long sequence = ++this.sequence;
+        String message = new PresenceDelta(type, this.epoch, sequence, player).encode();
+
+        // ストアの操作は順番に完了するため、差分もシーケンス番号の順に送信される
+        this.keyValueStore.hsetAsync(SERVERS_KEY, this.serverIdentifier, this.epoch + ":" + sequence).whenComplete((result, ex) -> {
+            if (ex != null) {
+                this.redisManager.getPlugin().logger().warning("プレイヤーの在席を保存できませんでした: " + ex.getMessage());
+            }
+            this.redisManager.publishMessage(UPDATE_CHANNEL, message);
+        });
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 他のサーバーの差分をインデックスに適用します。欠落が検出された場合はスナップショットを取得します。
+     *
+     * @param server 差分の送信元のサーバー
+     * @param delta  受信した差分
+     */
+    private void apply(String server, PresenceDelta delta) {
+        synchronized (this) {
+            if (delta.type() == PresenceDelta.Type.OFFLINE) {
+                this.removeServer(server);
+                this.positions.remove(server);
+                return;
+            }
+
+            Position position = this.positions.get(server);
+            if (position != null && position.epoch() == delta.epoch()) {
+                // 既に適用された差分
+                if (delta.sequence() <= position.sequence()) {
+                    return;
+                }
+
+                if (delta.sequence() == position.sequence() + 1) {
+                    if (delta.type() == PresenceDelta.Type.JOIN) {
+                        this.addPlayer(server, delta.player());
+                    } else {
+                        this.removePlayer(server, delta.player());
+                    }
+                    this.positions.put(server, new Position(delta.epoch(), delta.sequence()));
+                    return;
+                }
+            }
+        }
+
+        // 欠落、または送信元の再起動が検出された
+        this.resync(server);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * サーバーのハッシュのスナップショットを取得し、そのサーバーのインデックスを置き換えます。
+     * 取得中に新しい差分が適用されていた場合は、古いスナップショットで置き換えません。
+     *
+     * @param server スナップショットを取得するサーバー
+     */
+    private void resync(String server) {
+        String position;
+        Map<String, String> snapshot;
+        boolean alive;
+        try (Jedis jedis = this.connections.get()) {
+            Pipeline pipeline = jedis.pipelined();
+            Response<Boolean> aliveResponse = pipeline.exists(aliveKey(server));
+            Response<String> positionResponse = pipeline.hget(SERVERS_KEY, server);
+            Response<Map<String, String>> snapshotResponse = pipeline.hgetAll(playersKey(server));
+            pipeline.sync();
+            alive = aliveResponse.get();
+            position = positionResponse.get();
+            snapshot = snapshotResponse.get();
+        } catch (Exception e) {
+            // 次の差分で再試行する
+            synchronized (this) {
+                this.positions.remove(server);
+            }
+            this.redisManager.getPlugin().logger().warning("サーバー '" + server + "' の在席を取得できませんでした: " + e.getMessage());
+            return;
+        }
+
+        // 稼働を示すキーが期限切れになったサーバーのプレイヤーは追加しない
+        if (!alive) {
+            this.prune(server);
+            return;
+        }
+
+        Position parsed = Position.parse(position);
+        synchronized (this) {
+            Position current = this.positions.get(server);
+            if (parsed != null && current != null && current.epoch() == parsed.epoch() && current.sequence() >= parsed.sequence()) {
+                return;
+            }
+
+            this.removeServer(server);
+            if (parsed == null) {
+                this.positions.remove(server);
+                return;
+            }
+
+            for (String player : snapshot.keySet()) {
+                this.addPlayer(server, player);
+            }
+            this.positions.put(server, parsed);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    private boolean addPlayer(String server, String player) {
+        if (!this.players.computeIfAbsent(server, s -> ConcurrentHashMap.newKeySet()).add(player)) {
+            return false;
+        }
+
+        this.locations.put(player, server);
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    private boolean removePlayer(String server, String player) {
+        Set<String> serverPlayers = this.players.get(server);
+        if (serverPlayers == null || !serverPlayers.remove(player)) {
+            return false;
+        }
+
+        if (serverPlayers.isEmpty()) {
+            this.players.remove(server, serverPlayers);
+        }
+        this.relocate(player, server);
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    private void removeServer(String server) {
+        Set<String> serverPlayers = this.players.remove(server);
+        if (serverPlayers == null) {
+            return;
+        }
+
+        for (String player : serverPlayers) {
+            this.relocate(player, server);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * プレイヤーがサーバーから削除された後、他のサーバーに所在する場合はそのサーバーを、それ以外の場合はインデックスから削除します。
+     *
+     * @param player 削除されたプレイヤー
+     * @param server プレイヤーが削除されたサーバー
+     */
+    private void relocate(String player, String server) {
+        if (!server.equals(this.locations.get(player))) {
+            return;
+        }
+
+        for (Map.Entry<String, Set<String>> entry : this.players.entrySet()) {
+            if (entry.getValue().contains(player)) {
+                this.locations.put(player, entry.getKey());
+                return;
+            }
+        }
+        this.locations.remove(player);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    private static String playersKey(String server) {
+        return PLAYERS_KEY_PREFIX + server;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    private static String aliveKey(String server) {
+        return ALIVE_KEY_PREFIX + server;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 他のサーバーの差分の位置
+     *
+     * @param epoch    送信元のサービスが開始された時刻
+     * @param sequence 最後に適用した差分のシーケンス番号
+     */
+    private record Position(long epoch, long sequence) {
+
+        static Position parse(String value) {
+            if (value == null) {
+                return null;
+            }
+
+            int separator = value.indexOf(':');
+            if (separator < 0) {
+                return null;
+            }
+
+            try {
+                return new Position(Long.parseLong(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,277 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.transport.IRedisTransport;
+import cz.foresttech.forestredis.shared.transport.OutboundMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 送信メッセージをキューに溜め、単一のスレッドから{@link IRedisTransport}でまとめて公開するためのクラス。
+ * <p>
+ * バッチは最大サイズに達したとき、または最初のメッセージの最大待機時間が経過したときに送信されます。
+ * これにより、メッセージごとのタスク作成、プールからの接続取得、ネットワークの往復が不要になります。
+ * <p>
+ * 統合のキーを持つメッセージは、同じチャンネルとキーの未送信のメッセージがある場合、キューに追加されずにその内容を置き換えます。
+ * 置き換えられたメッセージは最初のメッセージのキューの位置で、最新の内容で送信されます。
+ */
+class RedisPublisher implements Runnable {
+
+    /**
+     * キューが空の場合にループが停止状態を確認する間隔（ミリ秒）
+     */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * 停止時に未送信のメッセージの送信を待機する最大時間（ミリ秒）
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 公開者が関連付けられているマネージャー
+     */
+    private final RedisManager redisManager;
+
+    /**
+     * メッセージを送信するトランスポート
+     */
+    private final IRedisTransport transport;
+
+    /**
+     * 送信待ちのメッセージのキュー
+     */
+    private final BlockingQueue<OutboundMessage> queue;
+
+    /**
+     * チャンネルと統合のキーごとの、まだ送信されていない最新のメッセージ
+     */
+    private final Map<String, OutboundMessage> conflated;
+
+    /**
+     * 1回のパイプラインで送信するメッセージの最大数
+     */
+    private final int batchSize;
+
+    /**
+     * 最初のメッセージを待機させる最大時間（ナノ秒）
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * ループが終了したことを通知するためのラッチ
+     */
+    private final CountDownLatch stopped;
+
+    /**
+     * 公開者が新しいメッセージを受け付けているかどうか
+     */
+    private volatile boolean running;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 公開者のインスタンスを構築します。ループは{@link #run()}が呼び出されるまで開始されません。
+     *
+     * @param redisManager   公開者が関連付けられているマネージャー
+     * @param transport      メッセージを送信するトランスポート
+     * @param batchSize      1回のパイプラインで送信するメッセージの最大数
+     * @param maxDelayMillis 最初のメッセージを待機させる最大時間（ミリ秒）
+     */
+    RedisPublisher(RedisManager redisManager, IRedisTransport transport, int batchSize, long maxDelayMillis) {
+        this.redisManager = redisManager;
+        this.transport = transport;
+        this.queue = new LinkedBlockingQueue<>();
+        this.conflated = new ConcurrentHashMap<>();
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.stopped = new CountDownLatch(1);
+        this.running = true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを送信キューに追加します。
+     *
+     * @param channel 公開するチャンネル
+     * @param message 公開するシリアル化されたメッセージ
+     * @param durable 永続チャンネルに送信するかどうか
+     * @return 公開者が停止している場合は 'false' を返します
+     */
+    boolean enqueue(String channel, byte[] message, boolean durable) {
+        return this.enqueue(channel, message, durable, null);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを送信キューに追加します。同じチャンネルと統合のキーの未送信のメッセージがある場合は、その内容を置き換えます。
+     *
+     * @param channel       公開するチャンネル
+     * @param message       公開するシリアル化されたメッセージ
+     * @param durable       永続チャンネルに送信するかどうか
+     * @param conflationKey 統合のキー（nullの場合は置き換えません）
+     * @return 公開者が停止している場合は 'false' を返します
+     */
+    boolean enqueue(String channel, byte[] message, boolean durable, String conflationKey) {
+        if (!this.running) {
+            return false;
+        }
+
+        OutboundMessage outboundMessage = new OutboundMessage(channel, message, durable, System.nanoTime(), conflationKey);
+        if (conflationKey == null) {
+            return this.queue.offer(outboundMessage);
+        }
+
+        // 未送信のメッセージがある場合は、そのキューの位置で最新の内容が送信される
+        if (this.conflated.put(pendingKey(channel, conflationKey), outboundMessage) != null) {
+            this.redisManager.getMetrics().recordConflated(1);
+            return true;
+        }
+        return this.queue.offer(outboundMessage);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void run() {
+        List<OutboundMessage> batch = new ArrayList<>(this.batchSize);
+
+        try {
+            while (this.running || !this.queue.isEmpty()) {
+                OutboundMessage first = this.queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                this.queue.drainTo(batch, this.batchSize - batch.size());
+
+                // バッチが満たされていない場合、最大待機時間まで追加のメッセージを待つ
+                if (this.maxDelayNanos > 0) {
+                    long deadline = System.nanoTime() + this.maxDelayNanos;
+                    while (batch.size() < this.batchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+
+                        OutboundMessage next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+
+                        batch.add(next);
+                        this.queue.drainTo(batch, this.batchSize - batch.size());
+                    }
+                }
+
+                this.flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 停止時に残っているメッセージをすべて送信する
+            this.queue.drainTo(batch);
+            this.flush(batch);
+            this.stopped.countDown();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたメッセージをまとめて送信します。
+     *
+     * @param batch 送信するメッセージのリスト
+     */
+    private void flush(List<OutboundMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // 統合されるメッセージを最新の内容に置き換える。以降の同じキーのメッセージは再びキューに追加される
+        for (int i = 0; i < batch.size(); i++) {
+            OutboundMessage outboundMessage = batch.get(i);
+            if (outboundMessage.conflationKey() == null) {
+                continue;
+            }
+
+            OutboundMessage latest = this.conflated.remove(pendingKey(outboundMessage.channel(), outboundMessage.conflationKey()));
+            if (latest != null) {
+                batch.set(i, latest);
+            }
+        }
+
+        try {
+            this.transport.publish(batch);
+        } catch (Exception e) {
+            this.redisManager.getMetrics().recordSendFailures(batch.size());
+            this.redisManager.getPlugin().logger().warning("Redisサーバーに" + batch.size() + "件のメッセージを送信できませんでした！");
+            return;
+        }
+
+        long sentAt = System.nanoTime();
+        for (OutboundMessage outboundMessage : batch) {
+            this.redisManager.getMetrics().recordPublished(sentAt - outboundMessage.enqueuedAt());
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 新しいメッセージの受け付けを停止し、キューに残っているメッセージが送信されるまで待機します。
+     */
+    void close() {
+        this.running = false;
+
+        try {
+            if (!this.stopped.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                this.redisManager.getMetrics().recordSendFailures(this.queue.size());
+                this.redisManager.getPlugin().logger().warning("未送信のメッセージ" + this.queue.size() + "件を破棄しました！");
+                return;
+            }
+
+            // ループの終了と同時に追加されたメッセージを送信する
+            List<OutboundMessage> leftovers = new ArrayList<>();
+            this.queue.drainTo(leftovers);
+            this.flush(leftovers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルと統合のキーから、未送信のメッセージのマップのキーを作成します。
+     *
+     * @param channel       公開するチャンネル
+     * @param conflationKey 統合のキー
+     * @return マップのキー
+     */
+    private static String pendingKey(String channel, String conflationKey) {
+        return channel + '\0' + conflationKey;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信を待っているメッセージの数を返します。
+     *
+     * @return キューのサイズ
+     */
+    int size() {
+        return this.queue.size();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,229 @@
+package cz.foresttech.forestredis.shared;
+
+import cz.foresttech.forestredis.shared.handler.IMessageResponder;
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redisを介したリクエスト/レスポンスを処理するためのクラス。
+ * <p>
+ * リクエストには相関識別子とレスポンスのチャンネルが付与され、レスポンスはサーバーごとのレスポンスチャンネルで受信されます。
+ * タイムアウトは{@link CompletableFuture#orTimeout(long, TimeUnit)}の共有タイマーで処理されるため、
+ * 未完了のリクエストごとにスレッドが使用されることはありません。
+ */
+class RedisRequestBroker {
+
+    /**
+     * サーバーごとのレスポンスチャンネルの接頭辞
+     */
+    static final String REPLY_CHANNEL_PREFIX = "forestredis:reply:";
+
+    /**
+     * ブローカーが関連付けられているマネージャー
+     */
+    private final RedisManager redisManager;
+
+    /**
+     * 相関識別子ごとの未完了のリクエスト
+     */
+    private final Map<String, PendingRequest<?>> pendingRequests;
+
+    /**
+     * チャンネルごとに登録されたレスポンダー
+     */
+    private final Map<String, RegisteredResponder<?>> responders;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ブローカーのインスタンスを構築します
+     *
+     * @param redisManager ブローカーが関連付けられているマネージャー
+     */
+    RedisRequestBroker(RedisManager redisManager) {
+        this.redisManager = redisManager;
+        this.pendingRequests = new ConcurrentHashMap<>();
+        this.responders = new ConcurrentHashMap<>();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * リクエストを送信し、レスポンスを待つ{@link CompletableFuture}を返します。
+     *
+     * @param channel       リクエストを送信するチャンネル
+     * @param payload       送信するオブジェクト
+     * @param responseType  レスポンスを解析するオブジェクトのクラス
+     * @param timeoutMillis レスポンスを待機する最大時間（ミリ秒）
+     * @param <T>           レスポンスの型
+     * @return レスポンスで完了する{@link CompletableFuture}
+     */
+    <T> CompletableFuture<T> request(String channel, Object payload, Class<T> responseType, long timeoutMillis) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        String correlationId = UUID.randomUUID().toString();
+
+        MessageTransferObject messageTransferObject = MessageTransferObject.wrap(this.redisManager.getServerIdentifier(), payload, System.currentTimeMillis());
+        messageTransferObject.setCorrelationId(correlationId);
+        messageTransferObject.setReplyTo(this.replyChannel());
+
+        this.pendingRequests.put(correlationId, new PendingRequest<>(responseType, future));
+        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((response, throwable) -> this.pendingRequests.remove(correlationId));
+
+        if (!this.redisManager.executePublish(channel, messageTransferObject)) {
+            future.completeExceptionally(new IllegalStateException("リクエストをチャンネル '" + channel + "' に送信できませんでした"));
+        }
+
+        return future;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルにレスポンダーを登録します。既に登録されているレスポンダーは置き換えられます。
+     *
+     * @param channel   チャンネルの名前
+     * @param type      リクエストを解析するオブジェクトのクラス
+     * @param responder 登録するレスポンダー
+     * @param <T>       リクエストの型
+     */
+    <T> void registerResponder(String channel, Class<T> type, IMessageResponder<T> responder) {
+        this.responders.put(channel, new RegisteredResponder<>(type, responder));
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルのレスポンダーを登録解除します。
+     *
+     * @param channel チャンネルの名前
+     */
+    void unregisterResponder(String channel) {
+        this.responders.remove(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージを処理します。
+     *
+     * @param channel               メッセージを受信したチャンネル
+     * @param messageTransferObject 受信した{@link MessageTransferObject}
+     * @return メッセージがレスポンスまたはリクエストとして処理された場合は 'true'
+     */
+    boolean handle(String channel, MessageTransferObject messageTransferObject) {
+        if (channel.equals(this.replyChannel())) {
+            this.handleReply(messageTransferObject);
+            return true;
+        }
+
+        if (messageTransferObject.getReplyTo() == null) {
+            return false;
+        }
+
+        RegisteredResponder<?> registeredResponder = this.responders.get(channel);
+        if (registeredResponder == null) {
+            return false;
+        }
+
+        Object response;
+        try {
+            response = registeredResponder.respond(channel, messageTransferObject);
+        } catch (Exception ex) {
+            this.redisManager.getPlugin().logger().warning("チャンネル '" + channel + "' のレスポンダーでエラーが発生しました: " + ex);
+            return true;
+        }
+
+        if (response == null) {
+            return true;
+        }
+
+        MessageTransferObject reply = MessageTransferObject.wrap(this.redisManager.getServerIdentifier(), response, System.currentTimeMillis());
+        reply.setCorrelationId(messageTransferObject.getCorrelationId());
+        this.redisManager.executePublish(messageTransferObject.getReplyTo(), reply);
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したレスポンスを対応するリクエストに渡します。
+     *
+     * @param messageTransferObject 受信したレスポンス
+     */
+    private void handleReply(MessageTransferObject messageTransferObject) {
+        String correlationId = messageTransferObject.getCorrelationId();
+        if (correlationId == null) {
+            return;
+        }
+
+        PendingRequest<?> pendingRequest = this.pendingRequests.remove(correlationId);
+        if (pendingRequest == null) {
+            return;
+        }
+
+        pendingRequest.complete(messageTransferObject);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * すべての未完了のリクエストを例外で完了させます。
+     */
+    void cancelAll() {
+        for (PendingRequest<?> pendingRequest : this.pendingRequests.values()) {
+            pendingRequest.future().completeExceptionally(new IllegalStateException("RedisManagerが閉じられました"));
+        }
+        this.pendingRequests.clear();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 現在のサーバーのレスポンスチャンネルを返します。
+     *
+     * @return レスポンスチャンネルの名前
+     */
+    String replyChannel() {
+        return REPLY_CHANNEL_PREFIX + this.redisManager.getServerIdentifier();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * レスポンスを待っているリクエスト
+     *
+     * @param responseType レスポンスを解析するオブジェクトのクラス
+     * @param future       レスポンスで完了する{@link CompletableFuture}
+     * @param <T>          レスポンスの型
+     */
+    private record PendingRequest<T>(Class<T> responseType, CompletableFuture<T> future) {
+
+        private void complete(MessageTransferObject messageTransferObject) {
+            this.future.complete(messageTransferObject.parseMessageObject(this.responseType));
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 解析するクラスと共に登録されたレスポンダー
+     *
+     * @param type      リクエストを解析するオブジェクトのクラス
+     * @param responder 登録されたレスポンダー
+     * @param <T>       リクエストの型
+     */
+    private record RegisteredResponder<T>(Class<T> type, IMessageResponder<T> responder) {
+
+        private Object respond(String channel, MessageTransferObject messageTransferObject) {
+            return this.responder.respond(channel, messageTransferObject, messageTransferObject.parseMessageObject(this.type));
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,188 @@
+package cz.foresttech.forestredis.shared;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ホットリロードでトランスポートを切り替える間、新旧のトランスポートが受信したpubsubのメッセージを引き継ぐためのクラス。
+ * <p>
+ * 切り替えまでは古いトランスポートのメッセージが配信され、新しいトランスポートのメッセージは保持されます。
+ * 切り替え時に保持していたメッセージが順番に配信され、それ以降は新しいトランスポートのメッセージのみが配信されます。
+ * <p>
+ * pubsubのメッセージには重複を判定できる識別子がないため、切り替え中の配信は少なくとも1回（at-least-once）です。
+ * 新しいトランスポートの購読が確認されてから切り替えまでの間に送信されたメッセージは、両方のトランスポートから配信される可能性があります。
+ * 保持されるメッセージの数は{@link #limit}件に制限され、超えた場合は古いものから破棄されて{@link cz.foresttech.forestredis.shared.metrics.RedisMetrics}に記録されます。
+ * <p>
+ * 配信のレーンへの受け渡しはロックの外で行われるため、満杯のレーンで待機している間も他のトランスポートの受信や切り替えは停止しません。
+ */
+class TransportHandoff {
+
+    /**
+     * 引き継ぎが関連付けられているマネージャー
+     */
+    private final RedisManager redisManager;
+
+    /**
+     * 古いトランスポートの世代
+     */
+    private final int previousGeneration;
+
+    /**
+     * 新しいトランスポートの世代
+     */
+    private final int nextGeneration;
+
+    /**
+     * 保持するメッセージの最大数
+     */
+    private final int limit;
+
+    /**
+     * 切り替えまで保持される新しいトランスポートのメッセージ
+     */
+    private final Deque<Map.Entry<String, byte[]>> buffered;
+
+    /**
+     * 切り替えが開始され、古いトランスポートのメッセージが破棄されるかどうか
+     */
+    private boolean switching;
+
+    /**
+     * 保持していたメッセージの配信が完了し、新しいトランスポートのメッセージが直接配信されるかどうか
+     */
+    private boolean switched;
+
+    /**
+     * 保持できずに破棄されたメッセージがあるかどうか（警告を1回だけ出力するために使用されます）
+     */
+    private boolean overflowed;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 引き継ぎのインスタンスを構築します。
+     *
+     * @param redisManager       引き継ぎが関連付けられているマネージャー
+     * @param previousGeneration 古いトランスポートの世代
+     * @param nextGeneration     新しいトランスポートの世代
+     * @param limit              保持するメッセージの最大数
+     */
+    TransportHandoff(RedisManager redisManager, int previousGeneration, int nextGeneration, int limit) {
+        this.redisManager = redisManager;
+        this.previousGeneration = previousGeneration;
+        this.nextGeneration = nextGeneration;
+        this.limit = Math.max(1, limit);
+        this.buffered = new ArrayDeque<>();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * トランスポートが受信したpubsubのメッセージを処理します。
+     *
+     * @param generation メッセージを受信したトランスポートの世代
+     * @param channel    メッセージを受信したチャンネル
+     * @param message    受信したメッセージのデータ
+     * @return 引き継ぎの対象のトランスポートの場合は 'true'
+     */
+    boolean receive(int generation, String channel, byte[] message) {
+        if (generation == this.previousGeneration) {
+            // 切り替えの開始後は新しいトランスポートが配信する
+            synchronized (this) {
+                if (this.switching) {
+                    return true;
+                }
+            }
+            this.redisManager.routeMessage(channel, message, null);
+            return true;
+        }
+
+        if (generation != this.nextGeneration) {
+            return false;
+        }
+
+        Map.Entry<String, byte[]> evicted = null;
+        synchronized (this) {
+            if (!this.switched) {
+                this.buffered.addLast(Map.entry(channel, message));
+                if (this.buffered.size() > this.limit) {
+                    evicted = this.buffered.pollFirst();
+                }
+            }
+        }
+
+        if (evicted != null) {
+            this.recordOverflow(evicted.getKey());
+            return true;
+        }
+        if (this.isSwitched()) {
+            this.redisManager.routeMessage(channel, message, null);
+        }
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 新しいトランスポートに切り替え、保持していたメッセージを順番に配信します。配信中に受信したメッセージも保持され、
+     * すべて配信された後に新しいトランスポートのメッセージが直接配信されるようになります。
+     */
+    void switchOver() {
+        synchronized (this) {
+            this.switching = true;
+        }
+
+        while (true) {
+            List<Map.Entry<String, byte[]>> batch;
+            synchronized (this) {
+                if (this.buffered.isEmpty()) {
+                    this.switched = true;
+                    return;
+                }
+                batch = new ArrayList<>(this.buffered);
+                this.buffered.clear();
+            }
+
+            for (Map.Entry<String, byte[]> entry : batch) {
+                this.redisManager.routeMessage(entry.getKey(), entry.getValue(), null);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 保持していたメッセージの配信が完了したかどうかを返します。
+     *
+     * @return 新しいトランスポートのメッセージが直接配信される場合は 'true'
+     */
+    private synchronized boolean isSwitched() {
+        return this.switched;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 保持できずに破棄されたメッセージを記録し、最初の1回だけ警告を出力します。
+     *
+     * @param channel 破棄されたメッセージのチャンネル
+     */
+    private void recordOverflow(String channel) {
+        this.redisManager.getMetrics().recordDropped(channel);
+
+        boolean first;
+        synchronized (this) {
+            first = !this.overflowed;
+            this.overflowed = true;
+        }
+        if (first) {
+            this.redisManager.getPlugin().logger().warning("接続の切り替え中に保持できるメッセージの上限（" + this.limit + "件）を超えたため、古いメッセージを破棄しました！");
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
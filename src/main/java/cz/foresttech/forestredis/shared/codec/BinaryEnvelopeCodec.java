@@ -0,0 +1,190 @@
+package cz.foresttech.forestredis.shared.codec;
+
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link MessageTransferObject}のバイナリ形式を処理するクラス。
+ * <p>
+ * 形式は次のとおりです（数値はすべてビッグエンディアン）：
+ * <pre>
+ * byte   マジックバイト (0xFE)
+ * byte   形式のバージョン
+ * int    送信者識別子の長さ（nullの場合は -1）
+ * byte[] 送信者識別子 (UTF-8)
+ * long   タイムスタンプ
+ * int    ペイロードの長さ（nullの場合は -1）
+ * byte[] ペイロード (UTF-8)
+ * --- バージョン2のみ ---
+ * int    相関識別子の長さ（nullの場合は -1）
+ * byte[] 相関識別子 (UTF-8)
+ * int    レスポンスのチャンネルの長さ（nullの場合は -1）
+ * byte[] レスポンスのチャンネル (UTF-8)
+ * --- バージョン3のみ ---
+ * int    統合のキーの長さ（nullの場合は -1）
+ * byte[] 統合のキー (UTF-8)
+ * </pre>
+ * バージョン2はリクエスト/レスポンスのメッセージに、バージョン3は統合されるメッセージにのみ使用されるため、
+ * 通常のメッセージは古い受信側でも解析できます。
+ * マジックバイトはUTF-8の文字列の先頭に現れないため、JSON形式と確実に区別できます。
+ */
+public final class BinaryEnvelopeCodec {
+
+    /**
+     * バイナリ形式の先頭に置かれるマジックバイト
+     */
+    public static final byte MAGIC = (byte) 0xFE;
+
+    /**
+     * 通常のメッセージの形式のバージョン
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * 相関識別子とレスポンスのチャンネルを含む形式のバージョン
+     */
+    public static final byte VERSION_REQUEST = 2;
+
+    /**
+     * 統合のキーを含む形式のバージョン
+     */
+    public static final byte VERSION_CONFLATED = 3;
+
+    private BinaryEnvelopeCodec() {
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたデータがバイナリ形式であるかどうかを確認します。
+     *
+     * @param data 受信したデータ
+     * @return バイナリ形式の場合は 'true'
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * {@link MessageTransferObject}をバイナリ形式に変換します。
+     *
+     * @param messageTransferObject 変換するオブジェクト
+     * @return バイナリ形式のデータ
+     */
+    public static byte[] encode(MessageTransferObject messageTransferObject) {
+        byte[] sender = toBytes(messageTransferObject.getSenderIdentifier());
+        byte[] payload = messageTransferObject.getMessageData();
+        byte[] correlationId = toBytes(messageTransferObject.getCorrelationId());
+        byte[] replyTo = toBytes(messageTransferObject.getReplyTo());
+        byte[] conflationKey = toBytes(messageTransferObject.getConflationKey());
+        byte version = conflationKey != null ? VERSION_CONFLATED : (correlationId != null || replyTo != null ? VERSION_REQUEST : VERSION);
+
+        int size = 2 + 4 + length(sender) + 8 + 4 + length(payload);
+        if (version >= VERSION_REQUEST) {
+            size += 4 + length(correlationId) + 4 + length(replyTo);
+        }
+        if (version >= VERSION_CONFLATED) {
+            size += 4 + length(conflationKey);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC);
+        buffer.put(version);
+        putBytes(buffer, sender);
+        buffer.putLong(messageTransferObject.getTimestamp());
+        putBytes(buffer, payload);
+        if (version >= VERSION_REQUEST) {
+            putBytes(buffer, correlationId);
+            putBytes(buffer, replyTo);
+        }
+        if (version >= VERSION_CONFLATED) {
+            putBytes(buffer, conflationKey);
+        }
+        return buffer.array();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * バイナリ形式のデータから{@link MessageTransferObject}を取得します。
+     * ヘッダーのみが解析され、ペイロードは必要になったときに文字列に変換されます。
+     *
+     * @param data バイナリ形式のデータ
+     * @return デシリアライズされた{@link MessageTransferObject}、データが無効な場合はnull
+     */
+    public static MessageTransferObject decode(byte[] data) {
+        if (!isBinary(data)) {
+            return null;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            buffer.get(); // マジックバイト
+            byte version = buffer.get();
+            if (version > VERSION_CONFLATED) {
+                return null;
+            }
+
+            String sender = getString(buffer);
+            long timestamp = buffer.getLong();
+            byte[] payload = getBytes(buffer);
+            MessageTransferObject messageTransferObject = MessageTransferObject.ofMessageData(sender, payload, timestamp);
+            if (version >= VERSION_REQUEST) {
+                messageTransferObject.setCorrelationId(getString(buffer));
+                messageTransferObject.setReplyTo(getString(buffer));
+            }
+            if (version >= VERSION_CONFLATED) {
+                messageTransferObject.setConflationKey(getString(buffer));
+            }
+            return messageTransferObject;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,46 @@
+package cz.foresttech.forestredis.shared.codec;
+
+/**
+ * {@link cz.foresttech.forestredis.shared.models.MessageTransferObject}をネットワークに送信する際の形式。
+ * <p>
+ * 受信側は形式を自動的に検出するため、異なる形式を使用するサーバーが混在していても通信できます。
+ */
+public enum EnvelopeFormat {
+
+    /**
+     * エンベロープ全体をJSON文字列として送信します（従来の形式）
+     */
+    JSON,
+
+    /**
+     * バージョン付きのバイナリヘッダーの後にペイロードのバイトをそのまま送信します
+     *
+     * @see BinaryEnvelopeCodec
+     */
+    BINARY;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 名前から形式を取得します（大文字小文字を区別しません）。
+     *
+     * @param name 形式の名前
+     * @param def  名前が無効な場合のデフォルト値
+     * @return 対応する{@link EnvelopeFormat}、見つからない場合は "def"
+     */
+    public static EnvelopeFormat fromName(String name, EnvelopeFormat def) {
+        if (name == null) {
+            return def;
+        }
+
+        for (EnvelopeFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        return def;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
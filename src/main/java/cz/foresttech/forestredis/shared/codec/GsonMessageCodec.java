@@ -0,0 +1,56 @@
+package cz.foresttech.forestredis.shared.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+
+/**
+ * {@link Gson}を使用する{@link IMessageCodec}の実装。
+ * 変換は{@link Gson#toJson(Object, java.lang.reflect.Type)}と{@link Gson#fromJson(String, java.lang.reflect.Type)}を経由するため、
+ * nullの扱い、HTMLのエスケープ、寛容な解析などのGsonの設定がそのまま適用されます。
+ * 型のアダプターはGsonの内部で一度だけ作成され、その後のすべての変換で再利用されます。
+ *
+ * @param <T> コーデックが処理するオブジェクトの型
+ */
+public class GsonMessageCodec<T> implements IMessageCodec<T> {
+
+    private final Gson gson;
+
+    private final Class<T> type;
+
+    /**
+     * コーデックのインスタンスを構築します
+     *
+     * @param gson 使用する{@link Gson}インスタンス
+     * @param type コーデックが処理する型
+     */
+    public GsonMessageCodec(Gson gson, Class<T> type) {
+        this.gson = gson;
+        this.type = type;
+    }
+
+    /**
+     * 指定された{@link TypeAdapter}を登録したGsonインスタンスを使用するコーデックを構築します
+     *
+     * @param type        コーデックが処理する型
+     * @param typeAdapter 使用する{@link TypeAdapter}
+     */
+    public GsonMessageCodec(Class<T> type, TypeAdapter<T> typeAdapter) {
+        this(new GsonBuilder().registerTypeAdapter(type, typeAdapter).create(), type);
+    }
+
+    @Override
+    public String encode(T object) {
+        return this.gson.toJson(object, this.type);
+    }
+
+    @Override
+    public T decode(String data) {
+        try {
+            return this.gson.fromJson(data, this.type);
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("JSONを解析できません", ex);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package cz.foresttech.forestredis.shared.codec;
+
+/**
+ * 特定の型のオブジェクトとメッセージ文字列の間の変換を処理するコーデックインターフェース。
+ * <p>
+ * コーデックは{@link MessageCodecRegistry}に型ごとに一度だけ登録され、そのインスタンスはすべてのメッセージで再利用されます。
+ * そのため、実装はスレッドセーフである必要があります。
+ *
+ * @param <T> コーデックが処理するオブジェクトの型
+ */
+public interface IMessageCodec<T> {
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * オブジェクトをメッセージ文字列にシリアル化します。
+     *
+     * @param object シリアル化するオブジェクト
+     * @return シリアル化された文字列
+     */
+    String encode(T object);
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージ文字列からオブジェクトをデシリアライズします。
+     *
+     * @param data シリアル化された文字列
+     * @return デシリアライズされたオブジェクト
+     */
+    T decode(String data);
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
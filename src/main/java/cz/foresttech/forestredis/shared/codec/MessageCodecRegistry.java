@@ -0,0 +1,123 @@
+package cz.foresttech.forestredis.shared.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ペイロードの型ごとに{@link IMessageCodec}を保持するレジストリ。
+ * <p>
+ * 登録されていない型には、共有の{@link Gson}インスタンスを使用する{@link GsonMessageCodec}が
+ * 自動的に作成され、キャッシュされます。エンベロープとペイロードのすべてのシリアル化はこのレジストリを経由します。
+ */
+public final class MessageCodecRegistry {
+
+    /**
+     * デフォルトのコーデックを作成するために使用される共有のGsonインスタンス
+     */
+    private static volatile Gson gson = new GsonBuilder().create();
+
+    /**
+     * 明示的に登録された型ごとのコーデック
+     */
+    private static final Map<Class<?>, IMessageCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    /**
+     * 自動的に作成されたデフォルトのコーデックのキャッシュ
+     */
+    private static final Map<Class<?>, IMessageCodec<?>> DEFAULT_CODECS = new ConcurrentHashMap<>();
+
+    private MessageCodecRegistry() {
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定された型のコーデックを登録します。既に登録されているコーデックは置き換えられます。
+     *
+     * @param type  コーデックが処理する型
+     * @param codec 登録するコーデック
+     * @param <T>   オブジェクトの型
+     */
+    public static <T> void register(Class<T> type, IMessageCodec<T> codec) {
+        CODECS.put(type, codec);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定された型のコーデックを登録解除します。次回の使用時にデフォルトのコーデックが作成されます。
+     *
+     * @param type 登録解除する型
+     */
+    public static void unregister(Class<?> type) {
+        CODECS.remove(type);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定された型のコーデックを取得します。登録されていない場合は、デフォルトのコーデックが作成されキャッシュされます。
+     *
+     * @param type コーデックを取得する型
+     * @param <T>  オブジェクトの型
+     * @return 指定された型の{@link IMessageCodec}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> IMessageCodec<T> get(Class<T> type) {
+        IMessageCodec<?> codec = CODECS.get(type);
+        if (codec == null) {
+            codec = DEFAULT_CODECS.computeIfAbsent(type, key -> new GsonMessageCodec<>(gson, key));
+        }
+        return (IMessageCodec<T>) codec;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * オブジェクトの実行時の型に対応するコーデックを使用して、オブジェクトをシリアル化します。
+     *
+     * @param object シリアル化するオブジェクト（nullも可能）
+     * @param <T>    オブジェクトの型
+     * @return シリアル化された文字列
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> String encode(T object) {
+        if (object == null) {
+            return gson.toJson(null);
+        }
+        return get((Class<T>) object.getClass()).encode(object);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定された型のコーデックを使用して、文字列をデシリアライズします。
+     *
+     * @param data シリアル化された文字列
+     * @param type オブジェクトのクラス
+     * @param <T>  オブジェクトの型
+     * @return デシリアライズされたオブジェクト
+     */
+    public static <T> T decode(String data, Class<T> type) {
+        return get(type).decode(data);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * デフォルトのコーデックを作成するために使用される{@link Gson}インスタンスを変更します。
+     * 明示的に登録されていないすべてのコーデックは再作成されます。
+     *
+     * @param newGson 新しい{@link Gson}インスタンス
+     */
+    public static void setGson(Gson newGson) {
+        gson = newGson;
+        DEFAULT_CODECS.clear();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
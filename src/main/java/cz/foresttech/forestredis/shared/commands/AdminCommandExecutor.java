@@ -0,0 +1,79 @@
+package cz.foresttech.forestredis.shared.commands;
+
+import cz.foresttech.forestredis.shared.RedisManager;
+
+import java.util.List;
+
+/**
+ * すべてのプラットフォームで共通の管理コマンドの処理を行うクラス。
+ * プラットフォームごとのコマンドは引数を渡し、返された行を送信者に表示するだけです。
+ */
+public final class AdminCommandExecutor {
+
+    /**
+     * 管理コマンドの名前
+     */
+    public static final String COMMAND_NAME = "forestredis";
+
+    /**
+     * 管理コマンドの使用に必要な権限
+     */
+    public static final String PERMISSION = "forestredis.admin";
+
+    /**
+     * タブ補完で提案されるサブコマンド
+     */
+    private static final List<String> SUBCOMMANDS = List.of("stats", "resetstats");
+
+    private AdminCommandExecutor() {
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 管理コマンドを実行します。
+     *
+     * @param args コマンドの引数
+     * @return 送信者に表示する行のリスト
+     */
+    public static List<String> execute(String[] args) {
+        RedisManager redisManager = RedisManager.getAPI();
+        if (redisManager == null) {
+            return List.of("RedisManagerが初期化されていません！");
+        }
+
+        if (args.length == 0) {
+            return List.of("使用方法: /" + COMMAND_NAME + " <" + String.join("|", SUBCOMMANDS) + ">");
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "stats":
+                return redisManager.getMetrics().describe(redisManager.getPublishQueueSize(), redisManager.getInboundQueueSize());
+            case "resetstats":
+                redisManager.getMetrics().reset();
+                return List.of("統計がリセットされました！");
+            default:
+                return List.of("不明なサブコマンド: '" + args[0] + "'");
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 管理コマンドのタブ補完の候補を返します。
+     *
+     * @param args コマンドの引数
+     * @return 候補のリスト
+     */
+    public static List<String> complete(String[] args) {
+        if (args.length != 1) {
+            return List.of();
+        }
+
+        String prefix = args[0].toLowerCase();
+        return SUBCOMMANDS.stream().filter(subcommand -> subcommand.startsWith(prefix)).toList();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
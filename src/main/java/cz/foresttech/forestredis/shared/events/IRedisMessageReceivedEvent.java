@@ -45,6 +45,7 @@ public interface IRedisMessageReceivedEvent {
 
     /**
      * 受信したメッセージから指定された型のオブジェクトを取得します。
+     * 解析結果はメッセージごとにキャッシュされ、同じ型で呼び出すすべてのリスナーで共有されます。
      *
      * @param objectClass オブジェクトのクラス
      * @param <T> オブジェクトの型
@@ -0,0 +1,28 @@
+package cz.foresttech.forestredis.shared.handler;
+
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+
+/**
+ * 特定のチャンネルに直接登録されるメッセージハンドラー。プラットフォームのイベントバスを経由せずに呼び出されます。
+ * <p>
+ * ハンドラーはメッセージを受信したスレッド（メインスレッドではありません）から呼び出されます。
+ *
+ * @param <T> ハンドラーが受け取るオブジェクトの型
+ */
+@FunctionalInterface
+public interface IMessageHandler<T> {
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 登録されたチャンネルでメッセージが受信されたときに呼び出されます。
+     *
+     * @param channel               メッセージを受信したチャンネル
+     * @param messageTransferObject 受信した{@link MessageTransferObject}
+     * @param object                解析されたオブジェクト（解析できない場合はnull）
+     */
+    void handle(String channel, MessageTransferObject messageTransferObject, T object);
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,30 @@
+package cz.foresttech.forestredis.shared.handler;
+
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+
+/**
+ * 特定のチャンネルに送信されたリクエストに応答するためのインターフェース。
+ * <p>
+ * レスポンダーはメッセージを受信したスレッド（メインスレッドではありません）から呼び出されます。
+ *
+ * @param <T> レスポンダーが受け取るリクエストの型
+ * @see cz.foresttech.forestredis.shared.RedisManager#registerResponder(String, Class, IMessageResponder)
+ */
+@FunctionalInterface
+public interface IMessageResponder<T> {
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * リクエストが受信されたときに呼び出されます。
+     *
+     * @param channel               リクエストを受信したチャンネル
+     * @param messageTransferObject 受信した{@link MessageTransferObject}
+     * @param request               解析されたリクエスト（解析できない場合はnull）
+     * @return リクエスト元に送信するレスポンス。nullの場合、レスポンスは送信されません
+     */
+    Object respond(String channel, MessageTransferObject messageTransferObject, T request);
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
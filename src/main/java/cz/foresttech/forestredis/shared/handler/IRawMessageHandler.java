@@ -0,0 +1,26 @@
+package cz.foresttech.forestredis.shared.handler;
+
+import cz.foresttech.forestredis.shared.RawMessage;
+
+/**
+ * 特定のチャンネルに直接登録され、受信したデータをデコードせずに受け取るハンドラー。
+ * メッセージを別のチャンネルやネットワークにそのまま転送するリレーで使用されます。
+ * <p>
+ * ハンドラーはメッセージを受信したスレッド（メインスレッドではありません）から呼び出されます。
+ */
+@FunctionalInterface
+public interface IRawMessageHandler {
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 登録されたチャンネルでメッセージが受信されたときに呼び出されます。
+     *
+     * @param channel    メッセージを受信したチャンネル
+     * @param rawMessage デコードされていない{@link RawMessage}
+     */
+    void handle(String channel, RawMessage rawMessage);
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,143 @@
+package cz.foresttech.forestredis.shared.handler;
+
+import cz.foresttech.forestredis.shared.adapter.ILoggerAdapter;
+import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * チャンネルごとに{@link IMessageHandler}を保持するレジストリ。
+ * 受信したメッセージは、そのチャンネルに登録されたハンドラーにのみ配信されます。
+ */
+public class MessageHandlerRegistry {
+
+    /**
+     * チャンネルごとに登録されたハンドラーのマップ
+     */
+    private final Map<String, List<RegisteredHandler<?>>> handlers;
+
+    /**
+     * レジストリのインスタンスを構築します
+     */
+    public MessageHandlerRegistry() {
+        this.handlers = new ConcurrentHashMap<>();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルにハンドラーを登録します。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     * @param type    メッセージを解析するオブジェクトのクラス
+     * @param handler 登録するハンドラー
+     * @param <T>     オブジェクトの型
+     */
+    public <T> void register(String channel, Class<T> type, IMessageHandler<T> handler) {
+        this.handlers.compute(channel, (key, list) -> {
+            List<RegisteredHandler<?>> channelHandlers = list != null ? list : new CopyOnWriteArrayList<>();
+            channelHandlers.add(new RegisteredHandler<>(type, handler));
+            return channelHandlers;
+        });
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルからハンドラーを登録解除します。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     * @param handler 登録解除するハンドラー
+     */
+    public void unregister(String channel, IMessageHandler<?> handler) {
+        this.handlers.computeIfPresent(channel, (key, list) -> {
+            list.removeIf(registeredHandler -> registeredHandler.handler() == handler);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルのすべてのハンドラーを登録解除します。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     */
+    public void unregisterAll(String channel) {
+        this.handlers.remove(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたチャンネルにハンドラーが登録されているかどうかを返します。
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     * @return 少なくとも1つのハンドラーが登録されているかどうか
+     */
+    public boolean hasHandlers(String channel) {
+        return this.handlers.containsKey(channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを指定されたチャンネルに登録されたハンドラーに配信します。
+     *
+     * @param channel               メッセージを受信したチャンネル
+     * @param messageTransferObject 受信した{@link MessageTransferObject}
+     * @param logger                ハンドラーのエラーを記録するためのロガー
+     * @return 少なくとも1つのハンドラーにメッセージが配信されたかどうか
+     */
+    public boolean dispatch(String channel, MessageTransferObject messageTransferObject, ILoggerAdapter logger) {
+        List<RegisteredHandler<?>> channelHandlers = this.handlers.get(channel);
+        if (channelHandlers == null || channelHandlers.isEmpty()) {
+            return false;
+        }
+
+        for (RegisteredHandler<?> registeredHandler : channelHandlers) {
+            try {
+                registeredHandler.invoke(channel, messageTransferObject);
+            } catch (Exception ex) {
+                logger.warning("チャンネル '" + channel + "' のハンドラーでエラーが発生しました: " + ex);
+            }
+        }
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 解析するクラスと共に登録されたハンドラー
+     *
+     * @param type    メッセージを解析するオブジェクトのクラス
+     * @param handler 登録されたハンドラー
+     * @param <T>     オブジェクトの型
+     */
+    private record RegisteredHandler<T>(Class<T> type, IMessageHandler<T> handler) {
+
+        /**
+         * メッセージを解析し、ハンドラーを呼び出します。{@link String}と{@link MessageTransferObject}は解析されずにそのまま渡されます。
+         *
+         * @param channel               メッセージを受信したチャンネル
+         * @param messageTransferObject 受信した{@link MessageTransferObject}
+         */
+        private void invoke(String channel, MessageTransferObject messageTransferObject) {
+            Object object;
+            if (this.type == String.class) {
+                object = messageTransferObject.getMessage();
+            } else if (this.type == MessageTransferObject.class) {
+                object = messageTransferObject;
+            } else {
+                object = messageTransferObject.parseMessageObject(this.type);
+            }
+            this.handler.handle(channel, messageTransferObject, this.type.cast(object));
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,152 @@
+package cz.foresttech.forestredis.shared.kv;
+
+import cz.foresttech.forestredis.shared.IForestRedisPlugin;
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * サーバー支援のクライアントサイドキャッシュの無効化を受信するためのサブスクリプションクラス。
+ * <p>
+ * 接続は購読の前に自分自身へのリダイレクトと{@code BCAST}モードで{@code CLIENT TRACKING}を有効にするため、
+ * RESP2でRedis 6以降のサーバーで動作します。キャッシュは購読が確立されている間のみ使用され、
+ * 接続が切断された場合はすべてのエントリが破棄されます。
+ */
+class InvalidationSubscription extends BinaryJedisPubSub implements Runnable {
+
+    /**
+     * 無効化メッセージが送信されるチャンネル
+     */
+    private static final byte[] INVALIDATE_CHANNEL = SafeEncoder.encode("__redis__:invalidate");
+
+    /**
+     * サブスクリプションが関連付けられているプラグイン
+     */
+    private final IForestRedisPlugin plugin;
+
+    /**
+     * Redisサーバーへの接続を提供するサプライヤー
+     */
+    private final Supplier<Jedis> connections;
+
+    /**
+     * 無効化されるキャッシュ
+     */
+    private final NearCache cache;
+
+    /**
+     * 追跡するキーの接頭辞
+     */
+    private final List<String> prefixes;
+
+    /**
+     * 無効化を受信していて、キャッシュを使用できるかどうか
+     */
+    private volatile boolean tracking;
+
+    /**
+     * サブスクリプションがまだ使用されているかどうか
+     */
+    private volatile boolean active;
+
+    InvalidationSubscription(IForestRedisPlugin plugin, Supplier<Jedis> connections, NearCache cache, List<String> prefixes) {
+        this.plugin = plugin;
+        this.connections = connections;
+        this.cache = cache;
+        this.prefixes = prefixes;
+        this.active = true;
+    }
+
+    /**
+     * 無効化を受信していて、キャッシュを使用できるかどうかを返します。
+     *
+     * @return キャッシュを使用できる場合は 'true'
+     */
+    boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * 購読を解除し、ループを終了させます。
+     */
+    synchronized void shutdown() {
+        this.active = false;
+        this.tracking = false;
+        try {
+            if (this.isSubscribed()) {
+                this.unsubscribe();
+            }
+        } catch (Exception ignored) {
+            // 接続が既に切断されている
+        }
+        this.cache.clear();
+    }
+
+    @Override
+    public void run() {
+        while (this.active && !Thread.interrupted()) {
+            try (Jedis jedis = this.connections.get()) {
+                List<String> arguments = new ArrayList<>(List.of("TRACKING", "ON", "REDIRECT", String.valueOf(jedis.clientId()), "BCAST"));
+                for (String prefix : this.prefixes) {
+                    arguments.add("PREFIX");
+                    arguments.add(prefix);
+                }
+                jedis.sendCommand(Protocol.Command.CLIENT, arguments.toArray(new String[0]));
+
+                jedis.subscribe(this, INVALIDATE_CHANNEL); // ブロッキング呼び出し
+            } catch (Exception e) {
+                if (!this.active) {
+                    return;
+                }
+
+                this.plugin.logger().warning("キャッシュの無効化の接続が切断されました。接続を再開しようとしています！");
+            } finally {
+                // 無効化を受信できない間はキャッシュを使用しない
+                this.tracking = false;
+                this.cache.clear();
+            }
+
+            if (!this.active) {
+                return;
+            }
+
+            // コンソールの大量のスパムを防ぐために5秒間スリープする
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribe(byte[] channel, int subscribedChannels) {
+        synchronized (this) {
+            if (!this.active) {
+                this.unsubscribe();
+                return;
+            }
+        }
+
+        // 購読の確立前にキャッシュされた値は無効化されていない可能性がある
+        this.cache.clear();
+        this.tracking = true;
+        this.plugin.logger().info("キャッシュの無効化の接続が確立されました！");
+    }
+
+    @Override
+    public void onMessage(byte[] channel, byte[] key) {
+        // nullの場合はFLUSHALLなどですべてのキーが無効化された
+        if (key == null) {
+            this.cache.clear();
+            return;
+        }
+
+        this.cache.invalidate(SafeEncoder.encode(key));
+    }
+}
@@ -0,0 +1,327 @@
+package cz.foresttech.forestredis.shared.kv;
+
+import cz.foresttech.forestredis.shared.IForestRedisPlugin;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 非同期のキー/値の操作をキューに溜め、単一のスレッドからまとめて実行するためのクラス。
+ * <p>
+ * バッチ内の{@code GET}は重複を除いて1回の{@code MGET}に、その他の操作は同じパイプラインにまとめられるため、
+ * 同時に発行された多数の読み取りも数回のネットワークの往復で完了します。同じキーへの書き込みより前に発行された
+ * 読み取りは書き込みより前に実行されるため、キーごとの操作の順序は保たれます。
+ * <p>
+ * フューチャーはバッチのスレッドで完了するため、重い処理は別のスレッドで行ってください。
+ */
+class KeyValueBatcher implements Runnable {
+
+    /**
+     * キューが空の場合にループが停止状態を確認する間隔（ミリ秒）
+     */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * 停止時に未実行の操作の完了を待機する最大時間（ミリ秒）
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * バッチが関連付けられているプラグイン
+     */
+    private final IForestRedisPlugin plugin;
+
+    /**
+     * Redisサーバーへの接続を提供するサプライヤー
+     */
+    private final Supplier<Jedis> connections;
+
+    /**
+     * 実行待ちの操作のキュー
+     */
+    private final BlockingQueue<KeyValueOperation> queue;
+
+    /**
+     * 1回のパイプラインで実行する操作の最大数
+     */
+    private final int batchSize;
+
+    /**
+     * 最初の操作を待機させる最大時間（ナノ秒）
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * ループが終了したことを通知するためのラッチ
+     */
+    private final CountDownLatch stopped;
+
+    /**
+     * 新しい操作を受け付けているかどうか
+     */
+    private volatile boolean running;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * バッチのインスタンスを構築します。ループは{@link #run()}が呼び出されるまで開始されません。
+     *
+     * @param plugin         バッチが関連付けられているプラグイン
+     * @param connections    Redisサーバーへの接続を提供するサプライヤー（接続は使用後に閉じられます）
+     * @param batchSize      1回のパイプラインで実行する操作の最大数
+     * @param maxDelayMillis 最初の操作を待機させる最大時間（ミリ秒）
+     */
+    KeyValueBatcher(IForestRedisPlugin plugin, Supplier<Jedis> connections, int batchSize, long maxDelayMillis) {
+        this.plugin = plugin;
+        this.connections = connections;
+        this.queue = new LinkedBlockingQueue<>();
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.stopped = new CountDownLatch(1);
+        this.running = true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 操作を実行キューに追加します。追加できなかった場合、操作のフューチャーは例外で完了します。
+     *
+     * @param operation 実行する操作
+     * @return 操作のフューチャー
+     */
+    CompletableFuture<Object> submit(KeyValueOperation operation) {
+        if (!this.running || !this.queue.offer(operation)) {
+            operation.future().completeExceptionally(new IllegalStateException("キー/値のストアは停止しています！"));
+        }
+        return operation.future();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void run() {
+        List<KeyValueOperation> batch = new ArrayList<>(this.batchSize);
+
+        try {
+            while (this.running || !this.queue.isEmpty()) {
+                KeyValueOperation first = this.queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                this.queue.drainTo(batch, this.batchSize - batch.size());
+
+                // バッチが満たされていない場合、最大待機時間まで追加の操作を待つ
+                if (this.maxDelayNanos > 0) {
+                    long deadline = System.nanoTime() + this.maxDelayNanos;
+                    while (batch.size() < this.batchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+
+                        KeyValueOperation next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+
+                        batch.add(next);
+                        this.queue.drainTo(batch, this.batchSize - batch.size());
+                    }
+                }
+
+                this.execute(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 停止時に残っている操作をすべて実行する
+            this.queue.drainTo(batch);
+            this.execute(batch);
+            this.stopped.countDown();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供された操作を1回のパイプラインで実行し、フューチャーを完了します。
+     *
+     * @param batch 実行する操作のリスト
+     */
+    private void execute(List<KeyValueOperation> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Runnable> completions = new ArrayList<>();
+        try (Jedis jedis = this.connections.get()) {
+            Pipeline pipeline = jedis.pipelined();
+            ReadSegment reads = new ReadSegment();
+
+            for (KeyValueOperation operation : batch) {
+                if (operation.isRead()) {
+                    reads.add(operation);
+                    continue;
+                }
+
+                // 同じキーの読み取りが書き込みの結果を参照しないように、先に読み取りを送信する
+                if (reads.touches(operation.key())) {
+                    reads.flush(pipeline, completions);
+                }
+
+                Response<?> response = switch (operation.type()) {
+                    case SET -> operation.ttlMillis() > 0
+                            ? pipeline.set(operation.key(), operation.value(), SetParams.setParams().px(operation.ttlMillis()))
+                            : pipeline.set(operation.key(), operation.value());
+                    case HSET -> pipeline.hset(operation.key(), operation.field(), operation.value());
+                    case HDEL -> pipeline.hdel(operation.key(), operation.field());
+                    default -> pipeline.del(operation.key());
+                };
+                completions.add(() -> complete(List.of(operation.future()), response));
+            }
+
+            reads.flush(pipeline, completions);
+            pipeline.sync();
+        } catch (Exception e) {
+            for (KeyValueOperation operation : batch) {
+                operation.future().completeExceptionally(e);
+            }
+            this.plugin.logger().warning("Redisサーバーで" + batch.size() + "件のキー/値の操作を実行できませんでした！");
+            return;
+        }
+
+        completions.forEach(Runnable::run);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 新しい操作の受け付けを停止し、キューに残っている操作が実行されるまで待機します。
+     * 時間内に実行されなかった操作のフューチャーは例外で完了します。
+     */
+    void close() {
+        this.running = false;
+
+        try {
+            if (!this.stopped.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                List<KeyValueOperation> remaining = new ArrayList<>();
+                this.queue.drainTo(remaining);
+                for (KeyValueOperation operation : remaining) {
+                    operation.future().completeExceptionally(new IllegalStateException("キー/値のストアは停止しています！"));
+                }
+                this.plugin.logger().warning("未実行のキー/値の操作" + remaining.size() + "件を破棄しました！");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * パイプラインのレスポンスでフューチャーを完了します。
+     *
+     * @param futures  完了するフューチャーのリスト
+     * @param response パイプラインのレスポンス
+     */
+    private static void complete(List<CompletableFuture<Object>> futures, Response<?> response) {
+        Object value;
+        try {
+            value = response.get();
+        } catch (Exception e) {
+            futures.forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+        futures.forEach(future -> future.complete(value));
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * まだパイプラインに送信されていない、重複を除いた読み取りのセット。
+     */
+    private static final class ReadSegment {
+
+        /**
+         * {@code GET}のキーと、その値を待っているフューチャー
+         */
+        private final Map<String, List<CompletableFuture<Object>>> gets = new LinkedHashMap<>();
+
+        /**
+         * {@code HGET}のキーとフィールドと、その値を待っているフューチャー
+         */
+        private final Map<String, Map<String, List<CompletableFuture<Object>>>> hgets = new LinkedHashMap<>();
+
+        void add(KeyValueOperation operation) {
+            if (operation.type() == KeyValueOperation.Type.GET) {
+                this.gets.computeIfAbsent(operation.key(), key -> new ArrayList<>()).add(operation.future());
+                return;
+            }
+
+            this.hgets.computeIfAbsent(operation.key(), key -> new LinkedHashMap<>())
+                    .computeIfAbsent(operation.field(), field -> new ArrayList<>())
+                    .add(operation.future());
+        }
+
+        boolean touches(String key) {
+            return this.gets.containsKey(key) || this.hgets.containsKey(key);
+        }
+
+        /**
+         * 溜まっている読み取りをパイプラインに送信し、完了処理を追加します。{@code GET}は1回の{@code MGET}にまとめられます。
+         *
+         * @param pipeline    読み取りを送信するパイプライン
+         * @param completions 同期後に実行する完了処理のリスト
+         */
+        void flush(Pipeline pipeline, List<Runnable> completions) {
+            if (!this.gets.isEmpty()) {
+                String[] keys = this.gets.keySet().toArray(new String[0]);
+                List<List<CompletableFuture<Object>>> futures = new ArrayList<>(this.gets.values());
+                Response<List<String>> response = pipeline.mget(keys);
+
+                completions.add(() -> {
+                    List<String> values;
+                    try {
+                        values = response.get();
+                    } catch (Exception e) {
+                        futures.forEach(list -> list.forEach(future -> future.completeExceptionally(e)));
+                        return;
+                    }
+
+                    for (int i = 0; i < futures.size(); i++) {
+                        String value = values.get(i);
+                        futures.get(i).forEach(future -> future.complete(value));
+                    }
+                });
+            }
+
+            for (Map.Entry<String, Map<String, List<CompletableFuture<Object>>>> hash : this.hgets.entrySet()) {
+                for (Map.Entry<String, List<CompletableFuture<Object>>> field : hash.getValue().entrySet()) {
+                    Response<String> response = pipeline.hget(hash.getKey(), field.getKey());
+                    completions.add(() -> complete(field.getValue(), response));
+                }
+            }
+
+            this.gets.clear();
+            this.hgets.clear();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
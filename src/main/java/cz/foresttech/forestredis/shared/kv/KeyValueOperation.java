@@ -0,0 +1,78 @@
+package cz.foresttech.forestredis.shared.kv;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link KeyValueBatcher}で実行を待っているキー/値の操作を表すレコード。
+ *
+ * @param type      操作の種類
+ * @param key       Redisのキー
+ * @param field     ハッシュのフィールド（{@link Type#HGET}、{@link Type#HSET}、{@link Type#HDEL}の場合のみ）
+ * @param value     設定する値（{@link Type#SET}、{@link Type#HSET}の場合のみ）
+ * @param ttlMillis キーの有効期間（ミリ秒、{@link Type#SET}で0以下の場合は有効期限なし）
+ * @param future    操作の結果で完了するフューチャー
+ */
+record KeyValueOperation(Type type, String key, String field, String value, long ttlMillis, CompletableFuture<Object> future) {
+
+    /**
+     * 操作の種類
+     */
+    enum Type {
+        GET,
+        HGET,
+        SET,
+        DEL,
+        HSET,
+        HDEL
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    static KeyValueOperation get(String key) {
+        return new KeyValueOperation(Type.GET, key, null, null, 0, new CompletableFuture<>());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    static KeyValueOperation hget(String key, String field) {
+        return new KeyValueOperation(Type.HGET, key, field, null, 0, new CompletableFuture<>());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    static KeyValueOperation set(String key, String value, long ttlMillis) {
+        return new KeyValueOperation(Type.SET, key, null, value, ttlMillis, new CompletableFuture<>());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    static KeyValueOperation del(String key) {
+        return new KeyValueOperation(Type.DEL, key, null, null, 0, new CompletableFuture<>());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    static KeyValueOperation hset(String key, String field, String value) {
+        return new KeyValueOperation(Type.HSET, key, field, value, 0, new CompletableFuture<>());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    static KeyValueOperation hdel(String key, String field) {
+        return new KeyValueOperation(Type.HDEL, key, field, null, 0, new CompletableFuture<>());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 操作が読み取りかどうかを返します。
+     *
+     * @return {@link Type#GET}または{@link Type#HGET}の場合は 'true'
+     */
+    boolean isRead() {
+        return this.type == Type.GET || this.type == Type.HGET;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
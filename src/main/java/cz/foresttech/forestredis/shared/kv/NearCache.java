@@ -0,0 +1,197 @@
+package cz.foresttech.forestredis.shared.kv;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * サイズの上限と有効期限を持つLRUのローカルキャッシュ。
+ * <p>
+ * 読み取り中に無効化が発生した場合に古い値を保存しないように、各読み取りは開始時にキーごとのトークンを登録し、
+ * 無効化によってトークンが削除された場合は値を保存しません。
+ */
+class NearCache {
+
+    /**
+     * キーが存在しないことを表す値
+     */
+    static final Object ABSENT = new Object();
+
+    /**
+     * エントリの最大数
+     */
+    private final int maxSize;
+
+    /**
+     * エントリの有効期間（ナノ秒、0以下の場合は無期限）
+     */
+    private final long ttlNanos;
+
+    /**
+     * アクセス順に並んだエントリ
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * 読み取り中のキーとトークンのマップ
+     */
+    private final Map<String, Long> loading;
+
+    /**
+     * 最後に発行されたトークン
+     */
+    private long lastToken;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder invalidations;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キャッシュのインスタンスを構築します
+     *
+     * @param maxSize  エントリの最大数
+     * @param ttlNanos エントリの有効期間（ナノ秒、0以下の場合は無期限）
+     */
+    NearCache(int maxSize, long ttlNanos) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttlNanos;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+        this.loading = new HashMap<>();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= NearCache.this.maxSize) {
+                    return false;
+                }
+                NearCache.this.evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キャッシュされた値を取得します。見つからない場合はミスとして記録されます。
+     *
+     * @param key Redisのキー
+     * @return キャッシュされた値（キーが存在しない場合は{@link #ABSENT}）、キャッシュされていない場合はnull
+     */
+    synchronized Object get(String key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && this.ttlNanos > 0 && System.nanoTime() - entry.storedAt() > this.ttlNanos) {
+            this.entries.remove(key);
+            this.evictions.increment();
+            entry = null;
+        }
+
+        if (entry == null) {
+            this.misses.increment();
+            return null;
+        }
+
+        this.hits.increment();
+        return entry.value();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * Redisサーバーからの読み取りを開始する前にトークンを登録します。
+     *
+     * @param key Redisのキー
+     * @return 読み取りのトークン
+     */
+    synchronized long beginLoad(String key) {
+        long token = ++this.lastToken;
+        this.loading.put(key, token);
+        return token;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 失敗した読み取りのトークンを削除します。
+     *
+     * @param key   Redisのキー
+     * @param token 読み取りのトークン
+     */
+    synchronized void cancelLoad(String key, long token) {
+        this.loading.remove(key, token);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 読み取りの開始後にキーが無効化されていない場合にのみ値を保存します。
+     *
+     * @param key   Redisのキー
+     * @param value 保存する値（キーが存在しない場合は{@link #ABSENT}）
+     * @param token 読み取りのトークン
+     */
+    synchronized void putIfCurrent(String key, Object value, long token) {
+        if (!this.loading.remove(key, token)) {
+            return;
+        }
+        this.entries.put(key, new Entry(value, System.nanoTime()));
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたキーのエントリを削除します。
+     *
+     * @param key Redisのキー
+     */
+    synchronized void invalidate(String key) {
+        this.invalidations.increment();
+        this.loading.remove(key);
+        this.entries.remove(key);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * すべてのエントリを削除します。
+     */
+    synchronized void clear() {
+        this.loading.clear();
+        this.entries.clear();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キャッシュの統計を返します。
+     *
+     * @return 統計のスナップショット
+     */
+    NearCacheStats stats() {
+        int size;
+        synchronized (this) {
+            size = this.entries.size();
+        }
+        return new NearCacheStats(this.hits.sum(), this.misses.sum(), this.evictions.sum(), this.invalidations.sum(), size);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キャッシュされた値
+     *
+     * @param value    値
+     * @param storedAt 保存された時刻（{@link System#nanoTime()}）
+     */
+    private record Entry(Object value, long storedAt) {
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,24 @@
+package cz.foresttech.forestredis.shared.kv;
+
+/**
+ * ローカルキャッシュの統計のスナップショット
+ *
+ * @param hits          キャッシュから返された読み取りの数
+ * @param misses        Redisサーバーから読み取られた、キャッシュ可能なキーの読み取りの数
+ * @param evictions     サイズまたは有効期限によって削除されたエントリの数
+ * @param invalidations 書き込みまたはRedisサーバーからの通知によって無効化されたキーの数
+ * @param size          現在のエントリの数
+ */
+public record NearCacheStats(long hits, long misses, long evictions, long invalidations, int size) {
+
+    /**
+     * キャッシュのヒット率を返します
+     *
+     * @return ヒット率（0〜1）。読み取りがない場合は0
+     */
+    public double hitRate() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0 : (double) this.hits / total;
+    }
+
+}
@@ -0,0 +1,307 @@
+package cz.foresttech.forestredis.shared.kv;
+
+import cz.foresttech.forestredis.shared.IForestRedisPlugin;
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * ネットワーク全体のカウンターとユニーク数（HyperLogLog）を記録するためのクラス。{@link cz.foresttech.forestredis.shared.RedisManager#getCounters()}から取得します。
+ * <p>
+ * 記録された値はまずローカルで集計され、一定の間隔で1回のパイプラインにまとめてRedisサーバーに送信されます。
+ * カウンターの差分は{@link LongAdder}に、ユニーク数の要素は重複を除いたセットに溜められるため、
+ * イベントごとに{@code INCRBY}や{@code PFADD}を送信する場合と比べて書き込みの数が大幅に減ります。
+ * ネットワーク全体の値の読み取りは短時間キャッシュされます。
+ */
+public class RedisCounters implements Runnable {
+
+    /**
+     * 停止時に最後の送信を待機する最大時間（ミリ秒）
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * カウンターが関連付けられているプラグイン
+     */
+    private final IForestRedisPlugin plugin;
+
+    /**
+     * Redisサーバーへの接続を提供するサプライヤー
+     */
+    private final Supplier<Jedis> connections;
+
+    /**
+     * 送信の間隔（ミリ秒）
+     */
+    private final long flushIntervalMillis;
+
+    /**
+     * 読み取った値をキャッシュする時間（ナノ秒）
+     */
+    private final long cacheNanos;
+
+    /**
+     * キーごとの未送信のカウンターの差分
+     */
+    private final Map<String, LongAdder> pendingCounts;
+
+    /**
+     * キーごとの未送信のユニーク数の要素
+     */
+    private final Map<String, Set<String>> pendingUniques;
+
+    /**
+     * キーごとにキャッシュされたネットワーク全体の値
+     */
+    private final Map<String, CachedValue> cachedValues;
+
+    /**
+     * ループの停止を要求するためのラッチ
+     */
+    private final CountDownLatch closing;
+
+    /**
+     * ループが終了したことを通知するためのラッチ
+     */
+    private final CountDownLatch stopped;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * カウンターのインスタンスを構築します。値は{@link #run()}が呼び出されるまで送信されません。
+     *
+     * @param plugin        カウンターが関連付けられているプラグイン
+     * @param connections   Redisサーバーへの接続を提供するサプライヤー（接続は使用後に閉じられます）
+     * @param redisSettings 送信の間隔とキャッシュの時間を含む{@link RedisSettings}オブジェクト
+     */
+    public RedisCounters(IForestRedisPlugin plugin, Supplier<Jedis> connections, RedisSettings redisSettings) {
+        this.plugin = plugin;
+        this.connections = connections;
+        this.flushIntervalMillis = redisSettings.getCounterFlushMillis();
+        this.cacheNanos = TimeUnit.MILLISECONDS.toNanos(redisSettings.getCounterCacheMillis());
+        this.pendingCounts = new ConcurrentHashMap<>();
+        this.pendingUniques = new ConcurrentHashMap<>();
+        this.cachedValues = new ConcurrentHashMap<>();
+        this.closing = new CountDownLatch(1);
+        this.stopped = new CountDownLatch(1);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * カウンターを1増やします。
+     *
+     * @param key Redisのキー
+     */
+    public void increment(String key) {
+        this.add(key, 1);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * カウンターに値を加算します。値は次の送信でRedisサーバーに反映されます。
+     *
+     * @param key   Redisのキー
+     * @param delta 加算する値（負の値も可能）
+     */
+    public void add(String key, long delta) {
+        if (delta == 0) {
+            return;
+        }
+
+        this.pendingCounts.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ユニーク数に要素を追加します。同じ送信間隔内の重複する要素はローカルで除かれます。
+     *
+     * @param key     RedisのHyperLogLogのキー
+     * @param element 追加する要素
+     */
+    public void addUnique(String key, String element) {
+        this.pendingUniques.compute(key, (k, elements) -> {
+            if (elements == null) {
+                elements = ConcurrentHashMap.newKeySet();
+            }
+            elements.add(element);
+            return elements;
+        });
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * カウンターのネットワーク全体の値を取得します。値は短時間キャッシュされ、まだ送信されていないこのサーバーの差分が加算されます。
+     * キャッシュされていない場合はRedisサーバーに問い合わせるため、メインスレッドからの呼び出しは避けてください。
+     *
+     * @param key Redisのキー
+     * @return カウンターの値
+     */
+    public long get(String key) {
+        long value = this.readCached(key, jedis -> {
+            String stored = jedis.get(key);
+            return stored != null ? Long.parseLong(stored) : 0;
+        });
+
+        LongAdder pending = this.pendingCounts.get(key);
+        return pending != null ? value + pending.sum() : value;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ユニーク数のネットワーク全体の推定値を取得します。値は短時間キャッシュされ、まだ送信されていない要素は含まれません。
+     * キャッシュされていない場合はRedisサーバーに問い合わせるため、メインスレッドからの呼び出しは避けてください。
+     *
+     * @param key RedisのHyperLogLogのキー
+     * @return ユニーク数の推定値
+     */
+    public long countUnique(String key) {
+        return this.readCached(key, jedis -> jedis.pfcount(key));
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void run() {
+        try {
+            while (!this.closing.await(this.flushIntervalMillis, TimeUnit.MILLISECONDS)) {
+                this.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 停止時に残っている値をすべて送信する
+            this.flush();
+            this.stopped.countDown();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 溜まっている差分と要素を1回のパイプラインでRedisサーバーに送信します。送信に失敗した場合、値は次の送信まで保持されます。
+     */
+    public synchronized void flush() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : this.pendingCounts.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta != 0) {
+                counts.put(entry.getKey(), delta);
+            }
+        }
+
+        Map<String, Set<String>> uniques = new HashMap<>();
+        for (String key : new ArrayList<>(this.pendingUniques.keySet())) {
+            Set<String> elements = this.pendingUniques.remove(key);
+            if (elements != null && !elements.isEmpty()) {
+                uniques.put(key, elements);
+            }
+        }
+
+        if (counts.isEmpty() && uniques.isEmpty()) {
+            return;
+        }
+
+        Map<String, Response<Long>> totals = new HashMap<>();
+        try (Jedis jedis = this.connections.get()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                totals.put(entry.getKey(), pipeline.incrBy(entry.getKey(), entry.getValue()));
+            }
+            for (Map.Entry<String, Set<String>> entry : uniques.entrySet()) {
+                pipeline.pfadd(entry.getKey(), entry.getValue().toArray(new String[0]));
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            // 送信できなかった値を戻し、次の送信で再試行する
+            counts.forEach(this::add);
+            uniques.forEach((key, elements) -> elements.forEach(element -> this.addUnique(key, element)));
+            this.plugin.logger().warning("Redisサーバーに" + (counts.size() + uniques.size()) + "件のカウンターを送信できませんでした！");
+            return;
+        }
+
+        // INCRBYの結果でキャッシュを更新し、ユニーク数は次の読み取りで再取得する
+        long now = System.nanoTime();
+        for (Map.Entry<String, Response<Long>> entry : totals.entrySet()) {
+            try {
+                this.cachedValues.put(entry.getKey(), new CachedValue(entry.getValue().get(), now));
+            } catch (Exception e) {
+                this.cachedValues.remove(entry.getKey());
+                this.plugin.logger().warning("カウンター'" + entry.getKey() + "'を更新できませんでした: " + e.getMessage());
+            }
+        }
+        uniques.keySet().forEach(this.cachedValues::remove);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信のループを停止し、残っている値を送信します。
+     */
+    public void close() {
+        this.closing.countDown();
+
+        try {
+            if (!this.stopped.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                this.plugin.logger().warning("カウンターの最後の送信が時間内に完了しませんでした！");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.cachedValues.clear();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キャッシュされた値を返し、キャッシュされていないか期限切れの場合はRedisサーバーから読み取ります。
+     *
+     * @param key    Redisのキー
+     * @param reader Redisサーバーから値を読み取る関数
+     * @return 値
+     */
+    private long readCached(String key, ToLongFunction<Jedis> reader) {
+        CachedValue cached = this.cachedValues.get(key);
+        long now = System.nanoTime();
+        if (cached != null && now - cached.readAt() < this.cacheNanos) {
+            return cached.value();
+        }
+
+        long value;
+        try (Jedis jedis = this.connections.get()) {
+            value = reader.applyAsLong(jedis);
+        }
+        this.cachedValues.put(key, new CachedValue(value, now));
+        return value;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キャッシュされたネットワーク全体の値
+     *
+     * @param value  値
+     * @param readAt 値を読み取った時刻（{@link System#nanoTime()}）
+     */
+    private record CachedValue(long value, long readAt) {
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,492 @@
+package cz.foresttech.forestredis.shared.kv;
+
+import cz.foresttech.forestredis.shared.IForestRedisPlugin;
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Redisサーバーのキー/値を読み書きするためのクラス。{@link cz.foresttech.forestredis.shared.RedisManager#getKeyValueStore()}から取得します。
+ * <p>
+ * 設定された接頭辞に一致するキーの読み取りは、オプトインのローカルキャッシュに保存されます。キャッシュはRedisサーバーの
+ * {@code CLIENT TRACKING}による無効化で一貫性が保たれ、他のサーバーがキーを変更すると自動的に破棄されます。
+ * キャッシュはサイズの上限を超えると最も古く使用されたエントリから削除され、有効期間を過ぎたエントリは使用されません。
+ * <p>
+ * {@code Async}で終わるメソッドは操作をキューに追加し、同時に発行された操作を1回の{@code MGET}とパイプラインにまとめて実行します。
+ * 多数のキーを個別に取得する場合でも、プールからの接続の取得とネットワークの往復は数回で済みます。
+ */
+public class RedisKeyValueStore {
+
+    /**
+     * ストアが関連付けられているプラグイン
+     */
+    private final IForestRedisPlugin plugin;
+
+    /**
+     * Redisサーバーへの接続を提供するサプライヤー
+     */
+    private final Supplier<Jedis> connections;
+
+    /**
+     * キャッシュするキーの接頭辞（空の場合はキャッシュを使用しない）
+     */
+    private final List<String> cachePrefixes;
+
+    /**
+     * ローカルキャッシュ
+     */
+    private final NearCache cache;
+
+    /**
+     * 非同期の操作をまとめて実行するためのバッチ
+     */
+    private final KeyValueBatcher batcher;
+
+    /**
+     * キャッシュの無効化を受信するサブスクリプション
+     */
+    private volatile InvalidationSubscription invalidationSubscription;
+
+    /**
+     * ストアが開始されたかどうか
+     */
+    private boolean started;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ストアのインスタンスを構築します。キャッシュと非同期の操作は{@link #start()}が呼び出されるまで使用されません。
+     *
+     * @param plugin        ストアが関連付けられているプラグイン
+     * @param connections   Redisサーバーへの接続を提供するサプライヤー（接続は使用後に閉じられます）
+     * @param redisSettings キャッシュの設定を含む{@link RedisSettings}オブジェクト
+     */
+    public RedisKeyValueStore(IForestRedisPlugin plugin, Supplier<Jedis> connections, RedisSettings redisSettings) {
+        this.plugin = plugin;
+        this.connections = connections;
+        this.cachePrefixes = List.copyOf(redisSettings.getCachePrefixes());
+        this.cache = new NearCache(redisSettings.getCacheMaxSize(), TimeUnit.MILLISECONDS.toNanos(redisSettings.getCacheTtlMillis()));
+        this.batcher = new KeyValueBatcher(plugin, connections, redisSettings.getKeyValueBatchSize(), redisSettings.getKeyValueMaxDelayMillis());
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 非同期の操作のバッチを開始し、キャッシュが有効な場合は無効化の受信を開始します。
+     */
+    public void start() {
+        if (this.started) {
+            return;
+        }
+
+        this.started = true;
+        this.plugin.runAsync(this.batcher);
+        if (this.cachePrefixes.isEmpty()) {
+            return;
+        }
+
+        this.invalidationSubscription = new InvalidationSubscription(this.plugin, this.connections, this.cache, this.cachePrefixes);
+        this.plugin.runAsync(this.invalidationSubscription);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 文字列の値を取得します。
+     *
+     * @param key Redisのキー
+     * @return 値、キーが存在しない場合はnull
+     */
+    public String get(String key) {
+        Object value = this.load(key, jedis -> jedis.get(key));
+        return value instanceof String string ? string : null;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ハッシュのすべてのフィールドと値を取得します。
+     *
+     * @param key Redisのキー
+     * @return 変更できないフィールドと値のマップ、キーが存在しない場合は空のマップ
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> hgetAll(String key) {
+        Object value = this.load(key, jedis -> {
+            Map<String, String> hash = jedis.hgetAll(key);
+            return hash == null || hash.isEmpty() ? null : Collections.unmodifiableMap(hash);
+        });
+        return value instanceof Map<?, ?> hash ? (Map<String, String>) hash : Collections.emptyMap();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 文字列の値を設定します。
+     *
+     * @param key   Redisのキー
+     * @param value 設定する値
+     */
+    public void set(String key, String value) {
+        try (Jedis jedis = this.connections.get()) {
+            jedis.set(key, value);
+        }
+        this.invalidateLocal(key);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 有効期限付きで文字列の値を設定します。
+     *
+     * @param key       Redisのキー
+     * @param value     設定する値
+     * @param ttlMillis キーの有効期間（ミリ秒）
+     */
+    public void set(String key, String value, long ttlMillis) {
+        try (Jedis jedis = this.connections.get()) {
+            jedis.set(key, value, SetParams.setParams().px(ttlMillis));
+        }
+        this.invalidateLocal(key);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ハッシュのフィールドの値を設定します。
+     *
+     * @param key   Redisのキー
+     * @param field フィールドの名前
+     * @param value 設定する値
+     */
+    public void hset(String key, String field, String value) {
+        try (Jedis jedis = this.connections.get()) {
+            jedis.hset(key, field, value);
+        }
+        this.invalidateLocal(key);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ハッシュの複数のフィールドの値を設定します。
+     *
+     * @param key    Redisのキー
+     * @param values フィールドと値のマップ
+     */
+    public void hset(String key, Map<String, String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+
+        try (Jedis jedis = this.connections.get()) {
+            jedis.hset(key, values);
+        }
+        this.invalidateLocal(key);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたキーを削除します。
+     *
+     * @param keys 削除するRedisのキー
+     * @return 削除されたキーの数
+     */
+    public long del(String... keys) {
+        if (keys == null || keys.length == 0) {
+            return 0;
+        }
+
+        long deleted;
+        try (Jedis jedis = this.connections.get()) {
+            deleted = jedis.del(keys);
+        }
+        for (String key : keys) {
+            this.invalidateLocal(key);
+        }
+        return deleted;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 文字列の値を非同期で取得します。同時に発行された取得は1回の{@code MGET}にまとめられます。
+     *
+     * @param key Redisのキー
+     * @return 値、キーが存在しない場合はnullで完了するフューチャー
+     */
+    public CompletableFuture<String> getAsync(String key) {
+        boolean cacheable = this.isCacheActive() && this.isCacheable(key);
+        if (cacheable) {
+            Object cached = this.cache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached instanceof String string ? string : null);
+            }
+        }
+
+        long token = cacheable ? this.cache.beginLoad(key) : 0;
+        return this.batcher.submit(KeyValueOperation.get(key)).handle((value, ex) -> {
+            if (cacheable) {
+                if (ex != null) {
+                    this.cache.cancelLoad(key, token);
+                } else {
+                    this.cache.putIfCurrent(key, value != null ? value : NearCache.ABSENT, token);
+                }
+            }
+            if (ex != null) {
+                throw new CompletionException(ex);
+            }
+            return (String) value;
+        });
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ハッシュのフィールドの値を非同期で取得します。ハッシュ全体がキャッシュされている場合はキャッシュから返されます。
+     *
+     * @param key   Redisのキー
+     * @param field フィールドの名前
+     * @return 値、キーまたはフィールドが存在しない場合はnullで完了するフューチャー
+     */
+    public CompletableFuture<String> hgetAsync(String key, String field) {
+        if (this.isCacheActive() && this.isCacheable(key)) {
+            Object cached = this.cache.get(key);
+            if (cached == NearCache.ABSENT) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (cached instanceof Map<?, ?> hash) {
+                return CompletableFuture.completedFuture((String) hash.get(field));
+            }
+        }
+
+        return this.batcher.submit(KeyValueOperation.hget(key, field)).thenApply(String.class::cast);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 文字列の値を非同期で設定します。
+     *
+     * @param key   Redisのキー
+     * @param value 設定する値
+     * @return 値が設定されたときに完了するフューチャー
+     */
+    public CompletableFuture<Void> setAsync(String key, String value) {
+        return this.setAsync(key, value, 0);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 有効期限付きで文字列の値を非同期で設定します。
+     *
+     * @param key       Redisのキー
+     * @param value     設定する値
+     * @param ttlMillis キーの有効期間（ミリ秒、0以下の場合は有効期限なし）
+     * @return 値が設定されたときに完了するフューチャー
+     */
+    public CompletableFuture<Void> setAsync(String key, String value, long ttlMillis) {
+        return this.batcher.submit(KeyValueOperation.set(key, value, ttlMillis))
+                .whenComplete((result, ex) -> this.invalidateLocal(key))
+                .thenApply(result -> null);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ハッシュのフィールドの値を非同期で設定します。
+     *
+     * @param key   Redisのキー
+     * @param field フィールドの名前
+     * @param value 設定する値
+     * @return 値が設定されたときに完了するフューチャー
+     */
+    public CompletableFuture<Void> hsetAsync(String key, String field, String value) {
+        return this.batcher.submit(KeyValueOperation.hset(key, field, value))
+                .whenComplete((result, ex) -> this.invalidateLocal(key))
+                .thenApply(result -> null);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ハッシュのフィールドを非同期で削除します。
+     *
+     * @param key   Redisのキー
+     * @param field 削除するフィールドの名前
+     * @return フィールドが削除された場合は 'true' で完了するフューチャー
+     */
+    public CompletableFuture<Boolean> hdelAsync(String key, String field) {
+        return this.batcher.submit(KeyValueOperation.hdel(key, field))
+                .whenComplete((result, ex) -> this.invalidateLocal(key))
+                .thenApply(result -> result instanceof Long deleted && deleted > 0);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたキーを非同期で削除します。
+     *
+     * @param keys 削除するRedisのキー
+     * @return 削除されたキーの数で完了するフューチャー
+     */
+    public CompletableFuture<Long> delAsync(String... keys) {
+        if (keys == null || keys.length == 0) {
+            return CompletableFuture.completedFuture(0L);
+        }
+
+        List<CompletableFuture<Object>> futures = new ArrayList<>(keys.length);
+        for (String key : keys) {
+            futures.add(this.batcher.submit(KeyValueOperation.del(key)).whenComplete((result, ex) -> this.invalidateLocal(key)));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            long deleted = 0;
+            for (CompletableFuture<Object> future : futures) {
+                deleted += (Long) future.join();
+            }
+            return deleted;
+        });
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ローカルキャッシュの統計を返します。
+     *
+     * @return 統計のスナップショット
+     */
+    public NearCacheStats getCacheStats() {
+        return this.cache.stats();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キーがキャッシュの対象かどうかを返します。
+     *
+     * @param key Redisのキー
+     * @return キーが設定された接頭辞のいずれかに一致するかどうか
+     */
+    public boolean isCacheable(String key) {
+        if (key == null) {
+            return false;
+        }
+
+        for (String prefix : this.cachePrefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 無効化の受信を新しい接続で再開します。接続先が変更された場合に、新しいサーバーの無効化を受信するために使用されます。
+     * 再開されるまでの間、キャッシュは使用されません。
+     */
+    public void reconnect() {
+        InvalidationSubscription previous = this.invalidationSubscription;
+        if (previous == null) {
+            return;
+        }
+
+        previous.shutdown();
+        this.invalidationSubscription = new InvalidationSubscription(this.plugin, this.connections, this.cache, this.cachePrefixes);
+        this.plugin.runAsync(this.invalidationSubscription);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 未実行の非同期の操作を実行し、無効化の受信を停止してキャッシュを破棄します。
+     */
+    public void close() {
+        this.batcher.close();
+        if (this.invalidationSubscription != null) {
+            this.invalidationSubscription.shutdown();
+            this.invalidationSubscription = null;
+        }
+        this.cache.clear();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キャッシュを使用できる場合はキャッシュから、それ以外の場合はRedisサーバーから値を読み取ります。
+     *
+     * @param key    Redisのキー
+     * @param reader Redisサーバーから値を読み取る関数（キーが存在しない場合はnullを返します）
+     * @return 読み取った値、キーが存在しない場合は{@link NearCache#ABSENT}
+     */
+    private Object load(String key, Function<Jedis, Object> reader) {
+        boolean cacheable = this.isCacheActive() && this.isCacheable(key);
+        if (cacheable) {
+            Object cached = this.cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long token = cacheable ? this.cache.beginLoad(key) : 0;
+        Object value;
+        try (Jedis jedis = this.connections.get()) {
+            value = reader.apply(jedis);
+        } catch (RuntimeException ex) {
+            if (cacheable) {
+                this.cache.cancelLoad(key, token);
+            }
+            throw ex;
+        }
+
+        if (value == null) {
+            value = NearCache.ABSENT;
+        }
+        if (cacheable) {
+            this.cache.putIfCurrent(key, value, token);
+        }
+        return value;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 書き込んだキーのエントリをローカルで削除します。他のサーバーにはRedisサーバーから無効化が送信されます。
+     *
+     * @param key Redisのキー
+     */
+    private void invalidateLocal(String key) {
+        if (this.isCacheable(key)) {
+            this.cache.invalidate(key);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 無効化を受信していて、キャッシュを使用できるかどうかを返します。
+     *
+     * @return キャッシュを使用できる場合は 'true'
+     */
+    private boolean isCacheActive() {
+        InvalidationSubscription subscription = this.invalidationSubscription;
+        return subscription != null && subscription.isTracking();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,196 @@
+package cz.foresttech.forestredis.shared.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ロックを使用せずに値を記録する、HDRヒストグラムと同様の対数線形バケットを持つヒストグラム。
+ * <p>
+ * 値は2のべき乗ごとの範囲に分けられ、各範囲はさらに{@link #SUB_BUCKET_COUNT}個の線形バケットに分割されます。
+ * これにより、メモリ使用量を一定に保ちながら、すべての範囲で約6%の相対精度が得られます。
+ * 記録は複数のスレッドから同時に行うことができます。
+ */
+public class LatencyHistogram {
+
+    /**
+     * 1つの範囲を分割する線形バケットのビット数
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * 1つの範囲を分割する線形バケットの数
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * バケットの合計数（正のlong値をすべて表現できる数）
+     */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    /**
+     * バケットごとの記録数
+     */
+    private final AtomicLongArray buckets;
+
+    /**
+     * 記録された値の数
+     */
+    private final LongAdder count;
+
+    /**
+     * 記録された値の合計
+     */
+    private final LongAdder sum;
+
+    /**
+     * 記録された最大値
+     */
+    private final AtomicLong max;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 空のヒストグラムを構築します
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 値を記録します。負の値は0として記録されます。
+     *
+     * @param value 記録する値
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        this.buckets.incrementAndGet(bucketIndex(value));
+        this.count.increment();
+        this.sum.add(value);
+
+        long currentMax = this.max.get();
+        while (value > currentMax && !this.max.compareAndSet(currentMax, value)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 記録された値の数を取得します
+     *
+     * @return 記録数
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 記録された値の平均を取得します
+     *
+     * @return 平均値。値が記録されていない場合は0
+     */
+    public double getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : (double) this.sum.sum() / count;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 記録された最大値を取得します
+     *
+     * @return 最大値。値が記録されていない場合は0
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 指定されたパーセンタイルの値を取得します。値はバケットの上限で返されるため、実際の値より最大で約6%大きくなります。
+     *
+     * @param percentile パーセンタイル（0〜100）
+     * @return パーセンタイルの値。値が記録されていない場合は0
+     */
+    public long getPercentile(double percentile) {
+        long count = this.count.sum();
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 記録されたすべての値を破棄します。記録と同時に呼び出された場合、その値は破棄されない可能性があります。
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 値が記録されるバケットのインデックスを返します。
+     *
+     * @param value 正の値
+     * @return バケットのインデックス
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * バケットに含まれる最大の値を返します。
+     *
+     * @param index バケットのインデックス
+     * @return バケットの上限
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lower = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,408 @@
+package cz.foresttech.forestredis.shared.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link cz.foresttech.forestredis.shared.RedisManager}のメッセージングに関する統計を保存するためのクラス。
+ * <p>
+ * すべてのカウンターとヒストグラムはロックを使用せずに更新されるため、公開や受信のスレッドから直接記録できます。
+ * レイテンシはナノ秒で記録されます。
+ */
+public class RedisMetrics {
+
+    /**
+     * キューへの追加からRedisサーバーへの送信までの時間（ナノ秒）
+     */
+    private final LatencyHistogram publishLatency;
+
+    /**
+     * 受信したメッセージのデコードにかかった時間（ナノ秒）
+     */
+    private final LatencyHistogram decodeTime;
+
+    /**
+     * メッセージのタイムスタンプから受信までの時間（ナノ秒、ミリ秒の精度）
+     */
+    private final LatencyHistogram endToEndLatency;
+
+    /**
+     * Redisサーバーに送信されたメッセージの数
+     */
+    private final LongAdder published;
+
+    /**
+     * 送信に失敗した、または送信キューに追加できなかったメッセージの数
+     */
+    private final LongAdder sendFailures;
+
+    /**
+     * 送信前に同じキーの新しいメッセージで置き換えられた送信メッセージの数
+     */
+    private final LongAdder conflated;
+
+    /**
+     * 配信前に同じキーの新しいメッセージで置き換えられた受信メッセージの数
+     */
+    private final LongAdder coalesced;
+
+    /**
+     * デコードに失敗した受信メッセージの数
+     */
+    private final LongAdder decodeFailures;
+
+    /**
+     * チャンネルごとの受信したメッセージの数
+     */
+    private final Map<String, LongAdder> receivedPerChannel;
+
+    /**
+     * チャンネルごとの配信キューが満杯のため破棄された受信メッセージの数
+     */
+    private final Map<String, LongAdder> droppedPerChannel;
+
+    /**
+     * 統計の記録が開始された時刻（ミリ秒）
+     */
+    private volatile long startedAt;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 空の統計を構築します
+     */
+    public RedisMetrics() {
+        this.publishLatency = new LatencyHistogram();
+        this.decodeTime = new LatencyHistogram();
+        this.endToEndLatency = new LatencyHistogram();
+        this.published = new LongAdder();
+        this.sendFailures = new LongAdder();
+        this.conflated = new LongAdder();
+        this.coalesced = new LongAdder();
+        this.decodeFailures = new LongAdder();
+        this.receivedPerChannel = new ConcurrentHashMap<>();
+        this.droppedPerChannel = new ConcurrentHashMap<>();
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージがRedisサーバーに送信されたことを記録します
+     *
+     * @param latencyNanos キューへの追加から送信までの時間（ナノ秒）
+     */
+    public void recordPublished(long latencyNanos) {
+        this.published.increment();
+        this.publishLatency.record(latencyNanos);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージの送信に失敗したことを記録します
+     *
+     * @param messages 失敗したメッセージの数
+     */
+    public void recordSendFailures(int messages) {
+        this.sendFailures.add(messages);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信前に同じキーの新しいメッセージで置き換えられたことを記録します
+     *
+     * @param messages 置き換えられたメッセージの数
+     */
+    public void recordConflated(int messages) {
+        this.conflated.add(messages);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信メッセージが配信前に同じキーの新しいメッセージで置き換えられたことを記録します
+     *
+     * @param messages 置き換えられたメッセージの数
+     */
+    public void recordCoalesced(int messages) {
+        this.coalesced.add(messages);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージのデコードにかかった時間を記録します
+     *
+     * @param nanos デコードにかかった時間（ナノ秒）
+     * @param success デコードが成功したかどうか
+     */
+    public void recordDecode(long nanos, boolean success) {
+        this.decodeTime.record(nanos);
+        if (!success) {
+            this.decodeFailures.increment();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを受信したことを記録します
+     *
+     * @param channel   メッセージを受信したチャンネル
+     * @param timestamp メッセージのタイムスタンプ（ミリ秒、0以下の場合はレイテンシを記録しません）
+     */
+    public void recordReceived(String channel, long timestamp) {
+        this.receivedPerChannel.computeIfAbsent(channel, c -> new LongAdder()).increment();
+        if (timestamp > 0) {
+            this.endToEndLatency.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - timestamp));
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信キューが満杯のため受信メッセージを破棄したことを記録します
+     *
+     * @param channel 破棄されたメッセージのチャンネル
+     */
+    public void recordDropped(String channel) {
+        this.droppedPerChannel.computeIfAbsent(channel, c -> new LongAdder()).increment();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キューへの追加から送信までの時間のヒストグラムを取得します
+     *
+     * @return ナノ秒のヒストグラム
+     */
+    public LatencyHistogram getPublishLatency() {
+        return publishLatency;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージのデコードにかかった時間のヒストグラムを取得します
+     *
+     * @return ナノ秒のヒストグラム
+     */
+    public LatencyHistogram getDecodeTime() {
+        return decodeTime;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージのタイムスタンプから受信までの時間のヒストグラムを取得します。サーバー間の時計のずれの影響を受けます
+     *
+     * @return ナノ秒のヒストグラム（ミリ秒の精度）
+     */
+    public LatencyHistogram getEndToEndLatency() {
+        return endToEndLatency;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * Redisサーバーに送信されたメッセージの数を取得します
+     *
+     * @return 送信されたメッセージの数
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信に失敗したメッセージの数を取得します
+     *
+     * @return 失敗したメッセージの数
+     */
+    public long getSendFailures() {
+        return sendFailures.sum();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信前に同じキーの新しいメッセージで置き換えられた送信メッセージの数を取得します
+     *
+     * @return 置き換えられたメッセージの数
+     */
+    public long getConflated() {
+        return conflated.sum();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信前に同じキーの新しいメッセージで置き換えられた受信メッセージの数を取得します
+     *
+     * @return 置き換えられたメッセージの数
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * デコードに失敗した受信メッセージの数を取得します
+     *
+     * @return 失敗したメッセージの数
+     */
+    public long getDecodeFailures() {
+        return decodeFailures.sum();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルごとの受信したメッセージの数を取得します
+     *
+     * @return チャンネル名と受信数のマップ（チャンネル名の順）
+     */
+    public Map<String, Long> getReceivedPerChannel() {
+        Map<String, Long> received = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : this.receivedPerChannel.entrySet()) {
+            received.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(received);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * すべてのチャンネルで受信したメッセージの合計数を取得します
+     *
+     * @return 受信したメッセージの数
+     */
+    public long getReceived() {
+        long received = 0;
+        for (LongAdder adder : this.receivedPerChannel.values()) {
+            received += adder.sum();
+        }
+        return received;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルごとの配信キューが満杯のため破棄された受信メッセージの数を取得します
+     *
+     * @return チャンネル名と破棄数のマップ（チャンネル名の順）
+     */
+    public Map<String, Long> getDroppedPerChannel() {
+        Map<String, Long> dropped = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : this.droppedPerChannel.entrySet()) {
+            dropped.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(dropped);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信キューが満杯のため破棄された受信メッセージの合計数を取得します
+     *
+     * @return 破棄されたメッセージの数
+     */
+    public long getDropped() {
+        long dropped = 0;
+        for (LongAdder adder : this.droppedPerChannel.values()) {
+            dropped += adder.sum();
+        }
+        return dropped;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 統計の記録が開始された時刻を取得します
+     *
+     * @return 開始時刻（ミリ秒）
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * すべての統計を破棄し、記録を再開します
+     */
+    public void reset() {
+        this.publishLatency.reset();
+        this.decodeTime.reset();
+        this.endToEndLatency.reset();
+        this.published.reset();
+        this.sendFailures.reset();
+        this.conflated.reset();
+        this.coalesced.reset();
+        this.decodeFailures.reset();
+        this.receivedPerChannel.clear();
+        this.droppedPerChannel.clear();
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 管理コマンドで表示するための統計の説明を作成します
+     *
+     * @param publishQueueSize 現在の送信キューのサイズ
+     * @param inboundQueueSize 現在の受信メッセージの配信キューのサイズ
+     * @return 表示する行のリスト
+     */
+    public List<String> describe(int publishQueueSize, int inboundQueueSize) {
+        List<String> lines = new ArrayList<>();
+        long uptimeSeconds = Math.max(0, (System.currentTimeMillis() - this.startedAt) / 1000);
+
+        lines.add("ForestRedisAPI 統計（" + uptimeSeconds + "秒間）");
+        lines.add(" 送信: " + this.getPublished() + "件, 失敗: " + this.getSendFailures() + "件, 統合: " + this.getConflated() + "件, キュー: " + publishQueueSize + "件");
+        lines.add(" 送信レイテンシ: " + describe(this.publishLatency));
+        lines.add(" 受信: " + this.getReceived() + "件, デコード失敗: " + this.getDecodeFailures() + "件, 破棄: " + this.getDropped() + "件, 統合: " + this.getCoalesced() + "件, キュー: " + inboundQueueSize + "件");
+        lines.add(" デコード時間: " + describe(this.decodeTime));
+        lines.add(" エンドツーエンド: " + describe(this.endToEndLatency));
+
+        Map<String, Long> droppedPerChannel = this.getDroppedPerChannel();
+        for (Map.Entry<String, Long> entry : this.getReceivedPerChannel().entrySet()) {
+            long dropped = droppedPerChannel.getOrDefault(entry.getKey(), 0L);
+            lines.add("  - " + entry.getKey() + ": " + entry.getValue() + "件" + (dropped > 0 ? "（破棄: " + dropped + "件）" : ""));
+        }
+        return lines;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ヒストグラムの要約を作成します。
+     *
+     * @param histogram 要約するヒストグラム
+     * @return 平均、パーセンタイル、最大値（ミリ秒）
+     */
+    private static String describe(LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return "-";
+        }
+
+        return String.format("平均 %.3fms, p50 %.3fms, p99 %.3fms, 最大 %.3fms",
+                histogram.getMean() / 1_000_000.0,
+                histogram.getPercentile(50) / 1_000_000.0,
+                histogram.getPercentile(99) / 1_000_000.0,
+                histogram.getMax() / 1_000_000.0);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
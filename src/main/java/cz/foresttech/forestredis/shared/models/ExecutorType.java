@@ -0,0 +1,42 @@
+package cz.foresttech.forestredis.shared.models;
+
+/**
+ * 受信メッセージを配信するスレッドの種類。
+ */
+public enum ExecutorType {
+
+    /**
+     * プラットフォームのスケジューラーの非同期スレッドを使用します
+     */
+    PLATFORM,
+
+    /**
+     * 仮想スレッドを使用します（Java 21以降）。使用できない場合は{@link #PLATFORM}として扱われます
+     */
+    VIRTUAL;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 名前から種類を取得します（大文字小文字を区別しません）。
+     *
+     * @param name 種類の名前
+     * @param def  名前が無効な場合のデフォルト値
+     * @return 対応する{@link ExecutorType}、見つからない場合は "def"
+     */
+    public static ExecutorType fromName(String name, ExecutorType def) {
+        if (name == null) {
+            return def;
+        }
+
+        for (ExecutorType type : values()) {
+            if (type.name().equalsIgnoreCase(name.trim())) {
+                return type;
+            }
+        }
+        return def;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
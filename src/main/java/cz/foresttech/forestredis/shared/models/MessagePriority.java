@@ -0,0 +1,48 @@
+package cz.foresttech.forestredis.shared.models;
+
+/**
+ * チャンネルの優先度。優先度ごとに送信キューと受信の配信スレッドが分かれるため、
+ * 大量のメッセージが送信されるチャンネルが他の優先度のメッセージを遅延させることはありません。
+ */
+public enum MessagePriority {
+
+    /**
+     * テレポートやチャットなど、遅延が許されない小さなメッセージ
+     */
+    HIGH,
+
+    /**
+     * 優先度が指定されていないチャンネル
+     */
+    NORMAL,
+
+    /**
+     * データの同期など、大量または大きなメッセージ
+     */
+    BULK;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 名前から優先度を取得します（大文字小文字を区別しません）。
+     *
+     * @param name 優先度の名前
+     * @param def  名前が無効な場合のデフォルト値
+     * @return 対応する{@link MessagePriority}、見つからない場合は "def"
+     */
+    public static MessagePriority fromName(String name, MessagePriority def) {
+        if (name == null) {
+            return def;
+        }
+
+        for (MessagePriority priority : values()) {
+            if (priority.name().equalsIgnoreCase(name.trim())) {
+                return priority;
+            }
+        }
+        return def;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -1,11 +1,23 @@
 package cz.foresttech.forestredis.shared.models;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import cz.foresttech.forestredis.shared.codec.BinaryEnvelopeCodec;
+import cz.foresttech.forestredis.shared.codec.EnvelopeFormat;
+import cz.foresttech.forestredis.shared.codec.IMessageCodec;
+import cz.foresttech.forestredis.shared.codec.MessageCodecRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ネットワーク全体でデータを送信するために使用されるDTOオブジェクト。
  * {@link Gson}を使用したカスタムオブジェクトのシリアル化をサポートします。
+ * <p>
+ * すべてのシリアル化は{@link MessageCodecRegistry}に登録された{@link IMessageCodec}を経由します。
+ * <p>
+ * バイナリ形式で受信したメッセージの内容は、最初に必要になったときにのみ文字列に変換されます。
+ * また、{@link #parseMessageObject(Class)}で解析されたオブジェクトはクラスごとにキャッシュされます。
  */
 public class MessageTransferObject {
 
@@ -13,6 +25,31 @@ public class MessageTransferObject {
     private String message;
     private long timestamp;
 
+    /**
+     * リクエストとレスポンスを対応付けるための識別子（リクエスト/レスポンス以外の場合はnull）
+     */
+    private String correlationId;
+
+    /**
+     * レスポンスを送信するチャンネル（リクエスト以外の場合はnull）
+     */
+    private String replyTo;
+
+    /**
+     * 同じチャンネルの同じキーの古いメッセージを置き換えるためのキー（統合しない場合はnull）
+     */
+    private String conflationKey;
+
+    /**
+     * まだ文字列に変換されていないメッセージの内容（UTF-8）
+     */
+    private transient volatile byte[] messageData;
+
+    /**
+     * クラスごとに解析されたオブジェクトのキャッシュ
+     */
+    private transient volatile Map<Class<?>, Object> parsedObjects;
+
     /**
      * データを後で追加するためにセッターを使用する場合の空のコンストラクタ
      */
@@ -36,6 +73,22 @@ public class MessageTransferObject {
 
     /*----------------------------------------------------------------------------------------------------------*/
 
+    /**
+     * 提供されたパラメータでインスタンスを構築します。メッセージの内容は必要になったときに文字列に変換されます。
+     *
+     * @param senderIdentifier 送信サーバーの識別子
+     * @param messageData      UTF-8でエンコードされたメッセージの内容
+     * @param timestamp        メッセージのタイムスタンプ
+     * @return 構築された{@link MessageTransferObject}
+     */
+    public static MessageTransferObject ofMessageData(String senderIdentifier, byte[] messageData, long timestamp) {
+        MessageTransferObject messageTransferObject = new MessageTransferObject(senderIdentifier, null, timestamp);
+        messageTransferObject.messageData = messageData;
+        return messageTransferObject;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
     /**
      * 現在のデータを{@link Gson}を使用してJSONに変換します
      *
@@ -43,8 +96,9 @@ public class MessageTransferObject {
      */
     public String toJson() {
         try {
-            Gson gson = new GsonBuilder().create();
-            return gson.toJson(this);
+            // Gsonはフィールドを直接読み取るため、メッセージの内容を先に変換する
+            this.getMessage();
+            return MessageCodecRegistry.get(MessageTransferObject.class).encode(this);
         } catch (Exception ex) {
             return null;
         }
@@ -60,8 +114,7 @@ public class MessageTransferObject {
      */
     public static MessageTransferObject fromJson(String json) {
         try {
-            Gson gson = new GsonBuilder().create();
-            return gson.fromJson(json, MessageTransferObject.class);
+            return MessageCodecRegistry.get(MessageTransferObject.class).decode(json);
         } catch (Exception ex) {
             return null;
         }
@@ -69,6 +122,49 @@ public class MessageTransferObject {
 
     /*----------------------------------------------------------------------------------------------------------*/
 
+    /**
+     * 現在のデータを指定された形式のバイト配列に変換します
+     *
+     * @param format 使用する{@link EnvelopeFormat}
+     * @return シリアル化されたオブジェクト、変換できない場合はnull
+     */
+    public byte[] encode(EnvelopeFormat format) {
+        if (format == EnvelopeFormat.BINARY) {
+            try {
+                return BinaryEnvelopeCodec.encode(this);
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+
+        String json = this.toJson();
+        if (json == null) {
+            return null;
+        }
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたバイト配列から{@link MessageTransferObject}を取得します。形式は自動的に検出されます。
+     *
+     * @param data JSON形式またはバイナリ形式でシリアル化された{@link MessageTransferObject}
+     * @return デシリアライズされた{@link MessageTransferObject}、データが無効な場合はnull
+     */
+    public static MessageTransferObject decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        if (BinaryEnvelopeCodec.isBinary(data)) {
+            return BinaryEnvelopeCodec.decode(data);
+        }
+        return fromJson(new String(data, StandardCharsets.UTF_8));
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
     /**
      * 指定されたオブジェクトを{@link MessageTransferObject}オブジェクトにラップします。
      *
@@ -78,8 +174,7 @@ public class MessageTransferObject {
      * @return 入力からシリアル化されたオブジェクトを含む{@link MessageTransferObject}のインスタンス
      */
     public static MessageTransferObject wrap(String senderIdentifier, Object objectToWrap, long timestamp) {
-        Gson gson = new GsonBuilder().create();
-        String message = gson.toJson(objectToWrap);
+        String message = MessageCodecRegistry.encode(objectToWrap);
 
         return new MessageTransferObject(senderIdentifier, message, timestamp);
     }
@@ -88,18 +183,60 @@ public class MessageTransferObject {
 
     /**
      * メッセージ文字列を指定されたオブジェクトタイプに解析します。
+     * <p>
+     * 解析されたオブジェクトはキャッシュされ、同じクラスでの以降の呼び出しでは同じインスタンスが返されます。
+     * 複数のリスナー間で共有されるため、返されたオブジェクトを変更しないでください。
      *
      * @param objectType オブジェクトのクラス
      * @param <T>        オブジェクトのタイプ
      * @return 解析されたオブジェクト、またはオブジェクトを解析できない場合はnull
      */
     public <T> T parseMessageObject(Class<T> objectType) {
+        Map<Class<?>, Object> cache = this.parsedObjects;
+        if (cache != null) {
+            Object cached = cache.get(objectType);
+            if (cached != null) {
+                return objectType.cast(cached);
+            }
+        }
+
+        T parsed;
         try {
-            Gson gson = new GsonBuilder().create();
-            return gson.fromJson(this.message, objectType);
+            parsed = MessageCodecRegistry.decode(this.getMessage(), objectType);
         } catch (Exception ex) {
             return null;
         }
+
+        if (parsed == null) {
+            return null;
+        }
+
+        if (cache == null) {
+            synchronized (this) {
+                if (this.parsedObjects == null) {
+                    this.parsedObjects = new ConcurrentHashMap<>(4);
+                }
+                cache = this.parsedObjects;
+            }
+        }
+
+        Object existing = cache.putIfAbsent(objectType, parsed);
+        return existing != null ? objectType.cast(existing) : parsed;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 転送されたメッセージの内容をUTF-8のバイト配列として取得します。受信したデータがある場合、文字列への変換は行われません。
+     *
+     * @return メッセージの内容のバイト配列、内容がない場合はnull
+     */
+    public byte[] getMessageData() {
+        byte[] data = this.messageData;
+        if (data != null) {
+            return data;
+        }
+        return this.message == null ? null : this.message.getBytes(StandardCharsets.UTF_8);
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
@@ -143,7 +280,11 @@ public class MessageTransferObject {
      * @return メッセージの内容
      */
     public String getMessage() {
-        return message;
+        byte[] data = this.messageData;
+        if (this.message == null && data != null) {
+            this.message = new String(data, StandardCharsets.UTF_8);
+        }
+        return this.message;
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
@@ -166,6 +307,74 @@ public class MessageTransferObject {
      */
     public void setMessage(String message) {
         this.message = message;
+        this.messageData = null;
+        this.parsedObjects = null;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * リクエストとレスポンスを対応付けるための識別子を取得します
+     *
+     * @return 相関識別子、リクエスト/レスポンス以外のメッセージの場合はnull
+     */
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * リクエストとレスポンスを対応付けるための識別子を変更します
+     *
+     * @param correlationId 新しい相関識別子
+     */
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * レスポンスを送信するチャンネルを取得します
+     *
+     * @return レスポンスのチャンネル、リクエスト以外のメッセージの場合はnull
+     */
+    public String getReplyTo() {
+        return replyTo;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * レスポンスを送信するチャンネルを変更します
+     *
+     * @param replyTo 新しいレスポンスのチャンネル
+     */
+    public void setReplyTo(String replyTo) {
+        this.replyTo = replyTo;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 同じチャンネルの同じキーの古いメッセージを置き換えるためのキーを取得します
+     *
+     * @return 統合のキー、統合されないメッセージの場合はnull
+     */
+    public String getConflationKey() {
+        return conflationKey;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 同じチャンネルの同じキーの古いメッセージを置き換えるためのキーを変更します
+     *
+     * @param conflationKey 新しい統合のキー
+     */
+    public void setConflationKey(String conflationKey) {
+        this.conflationKey = conflationKey;
     }
 
     /*----------------------------------------------------------------------------------------------------------*/
@@ -0,0 +1,52 @@
+package cz.foresttech.forestredis.shared.models;
+
+/**
+ * 受信メッセージの配信キューが満杯の場合の動作。
+ * <p>
+ * 購読接続からの読み取りは配信キューにメッセージを渡すだけなので、{@link #BLOCK}以外のポリシーでは
+ * リスナーの処理が遅れても読み取りが停止することはなく、Redisサーバーの出力バッファが溢れて切断されることもありません。
+ */
+public enum OverflowPolicy {
+
+    /**
+     * キューに空きができるまで購読接続からの読み取りを停止します。メッセージは失われませんが、
+     * 長時間停止するとRedisサーバーの{@code client-output-buffer-limit}により切断される可能性があります
+     */
+    BLOCK,
+
+    /**
+     * キューの最も古いメッセージを破棄して、新しいメッセージを追加します
+     */
+    DROP_OLDEST,
+
+    /**
+     * 新しいメッセージを破棄します
+     */
+    DROP_NEWEST;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 名前からポリシーを取得します（大文字小文字、ハイフンとアンダースコアを区別しません）。
+     *
+     * @param name ポリシーの名前
+     * @param def  名前が無効な場合のデフォルト値
+     * @return 対応する{@link OverflowPolicy}、見つからない場合は "def"
+     */
+    public static OverflowPolicy fromName(String name, OverflowPolicy def) {
+        if (name == null) {
+            return def;
+        }
+
+        String normalized = name.trim().replace("-", "").replace("_", "");
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().replace("_", "").equalsIgnoreCase(normalized)) {
+                return policy;
+            }
+        }
+        return def;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
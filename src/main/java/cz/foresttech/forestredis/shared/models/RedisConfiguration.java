@@ -1,8 +1,16 @@
 package cz.foresttech.forestredis.shared.models;
 
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.Protocol;
+import redis.clients.jedis.providers.ClusterConnectionProvider;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * RedisConfigurationオブジェクトは、Redisサーバーの認証情報を保存します。JedisPoolインスタンスを作成するために使用できます。
@@ -59,4 +67,69 @@ public class RedisConfiguration {
 
     /*----------------------------------------------------------------------------------------------------------*/
 
+    /**
+     * 保存された値を使用してRedis Clusterへの{@link ClusterConnectionProvider}を作成します。
+     * 認証情報はすべてのノードで共通である必要があります。
+     *
+     * @param clusterNodes 最初に接続するノードのリスト（'host:port'の形式）。空の場合はホスト名とポートが使用されます
+     * @return このオブジェクト内の値を使用して取得された{@link ClusterConnectionProvider}オブジェクト、接続できない場合はnull
+     */
+    public ClusterConnectionProvider buildCluster(Collection<String> clusterNodes) {
+        Set<HostAndPort> seeds = new HashSet<>();
+        if (clusterNodes != null) {
+            for (String node : clusterNodes) {
+                try {
+                    seeds.add(HostAndPort.from(node.trim()));
+                } catch (Exception ignored) {
+                    // 無効なノードは無視する
+                }
+            }
+        }
+
+        if (seeds.isEmpty()) {
+            // ホスト名は必須です！
+            if (hostName == null) {
+                return null;
+            }
+            seeds.add(new HostAndPort(this.hostName, this.port));
+        }
+
+        try {
+            DefaultJedisClientConfig clientConfig = DefaultJedisClientConfig.builder()
+                    .timeoutMillis(Protocol.DEFAULT_TIMEOUT)
+                    .user(this.username)
+                    .password(this.password)
+                    .ssl(this.ssl)
+                    .build();
+            return new ClusterConnectionProvider(seeds, clientConfig);
+        } catch (Exception exception) {
+            return null;
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RedisConfiguration that)) {
+            return false;
+        }
+        return this.port == that.port && this.ssl == that.ssl
+                && Objects.equals(this.hostName, that.hostName)
+                && Objects.equals(this.username, that.username)
+                && Objects.equals(this.password, that.password);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.hostName, this.port, this.username, this.password, this.ssl);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
 }
@@ -0,0 +1,769 @@
+package cz.foresttech.forestredis.shared.models;
+
+import cz.foresttech.forestredis.shared.codec.EnvelopeFormat;
+import cz.foresttech.forestredis.shared.transport.TransportType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RedisSettingsオブジェクトは、{@link cz.foresttech.forestredis.shared.RedisManager}の動作に関する設定を保存します。
+ * 認証情報は{@link RedisConfiguration}に保存され、このオブジェクトには含まれません。
+ */
+public class RedisSettings {
+
+    /**
+     * メッセージを送受信するトランスポートの種類
+     */
+    private TransportType transportType;
+
+    /**
+     * Redis Clusterに最初に接続するノードのリスト（'host:port'の形式）
+     */
+    private List<String> clusterNodes;
+
+    /**
+     * 1回のパイプラインで送信するメッセージの最大数
+     */
+    private int publishBatchSize;
+
+    /**
+     * バッチが満たされるまで最初のメッセージを待機させる最大時間（ミリ秒）
+     */
+    private long publishMaxDelayMillis;
+
+    /**
+     * 送信するメッセージのエンベロープの形式
+     */
+    private EnvelopeFormat envelopeFormat;
+
+    /**
+     * ハンドラーが登録されているチャンネルでもプラットフォームのイベントを発生させるかどうか
+     */
+    private boolean alwaysFireEvents;
+
+    /**
+     * Redis Streamsを使用する永続チャンネルのセット
+     */
+    private final Set<String> durableChannels;
+
+    /**
+     * チャンネルごとの優先度（指定されていないチャンネルは{@link MessagePriority#NORMAL}）
+     */
+    private final Map<String, MessagePriority> channelPriorities;
+
+    /**
+     * 受信時に同じキーの未配信のメッセージを統合するチャンネルのセット
+     */
+    private final Set<String> conflatedChannels;
+
+    /**
+     * 優先度ごとの受信メッセージの配信キューの最大サイズ
+     */
+    private int inboundQueueSize;
+
+    /**
+     * 優先度ごとの受信メッセージを並行して配信するストライプの数
+     */
+    private int inboundStripes;
+
+    /**
+     * 受信メッセージを配信するスレッドの種類
+     */
+    private ExecutorType inboundExecutorType;
+
+    /**
+     * 配信キューが満杯の場合のデフォルトの動作
+     */
+    private OverflowPolicy overflowPolicy;
+
+    /**
+     * チャンネルごとの配信キューが満杯の場合の動作（指定されていないチャンネルはデフォルトの動作）
+     */
+    private final Map<String, OverflowPolicy> channelOverflowPolicies;
+
+    /**
+     * 永続チャンネルのストリームに保持されるエントリのおおよその最大数
+     */
+    private long streamMaxLength;
+
+    /**
+     * 1回の読み取りで取得するストリームエントリの最大数
+     */
+    private int streamReadCount;
+
+    /**
+     * 新しいストリームエントリを待機する最大時間（ミリ秒）
+     */
+    private int streamBlockMillis;
+
+    /**
+     * キー/値の非同期の操作を1回のパイプラインで実行する最大数
+     */
+    private int keyValueBatchSize;
+
+    /**
+     * キー/値の非同期の操作のバッチが満たされるまで最初の操作を待機させる最大時間（ミリ秒）
+     */
+    private long keyValueMaxDelayMillis;
+
+    /**
+     * カウンターをRedisサーバーに送信する間隔（ミリ秒）
+     */
+    private long counterFlushMillis;
+
+    /**
+     * カウンターのネットワーク全体の値をキャッシュする時間（ミリ秒）
+     */
+    private long counterCacheMillis;
+
+    /**
+     * 分散ロックのリースの期間（ミリ秒）
+     */
+    private long lockLeaseMillis;
+
+    /**
+     * ローカルキャッシュに保存するキーの接頭辞のリスト
+     */
+    private List<String> cachePrefixes;
+
+    /**
+     * ローカルキャッシュに保存するエントリの最大数
+     */
+    private int cacheMaxSize;
+
+    /**
+     * ローカルキャッシュのエントリの有効期間（ミリ秒）
+     */
+    private long cacheTtlMillis;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * デフォルト値でインスタンスを構築します
+     */
+    public RedisSettings() {
+        this.transportType = TransportType.REDIS;
+        this.clusterNodes = new ArrayList<>();
+        this.publishBatchSize = 128;
+        this.publishMaxDelayMillis = 0;
+        this.envelopeFormat = EnvelopeFormat.JSON;
+        this.alwaysFireEvents = false;
+        this.durableChannels = ConcurrentHashMap.newKeySet();
+        this.channelPriorities = new ConcurrentHashMap<>();
+        this.conflatedChannels = ConcurrentHashMap.newKeySet();
+        this.inboundQueueSize = 10000;
+        this.inboundStripes = 4;
+        this.inboundExecutorType = ExecutorType.PLATFORM;
+        this.overflowPolicy = OverflowPolicy.BLOCK;
+        this.channelOverflowPolicies = new ConcurrentHashMap<>();
+        this.streamMaxLength = 10000;
+        this.streamReadCount = 64;
+        this.streamBlockMillis = 1000;
+        this.keyValueBatchSize = 256;
+        this.keyValueMaxDelayMillis = 0;
+        this.counterFlushMillis = 1000;
+        this.counterCacheMillis = 1000;
+        this.lockLeaseMillis = 30000;
+        this.cachePrefixes = new ArrayList<>();
+        this.cacheMaxSize = 10000;
+        this.cacheTtlMillis = 60000;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを送受信するトランスポートの種類を取得します
+     *
+     * @return 現在の{@link TransportType}
+     */
+    public TransportType getTransportType() {
+        return transportType;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを送受信するトランスポートの種類を変更します。次の{@link cz.foresttech.forestredis.shared.RedisManager#setup(String...)}から反映されます
+     *
+     * @param transportType 新しい{@link TransportType}（nullの場合はREDISが使用されます）
+     */
+    public void setTransportType(TransportType transportType) {
+        this.transportType = transportType != null ? transportType : TransportType.REDIS;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * Redis Clusterに最初に接続するノードのリストを取得します
+     *
+     * @return ノードのリスト（'host:port'の形式）。空の場合は{@link RedisConfiguration}のホスト名とポートが使用されます
+     */
+    public List<String> getClusterNodes() {
+        return clusterNodes;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * Redis Clusterに最初に接続するノードのリストを変更します。すべてのノードを指定する必要はありません
+     *
+     * @param clusterNodes 新しいノードのリスト（'host:port'の形式、nullの場合は空のリストが使用されます）
+     */
+    public void setClusterNodes(List<String> clusterNodes) {
+        this.clusterNodes = clusterNodes != null ? new ArrayList<>(clusterNodes) : new ArrayList<>();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 1回のパイプラインで送信するメッセージの最大数を取得します
+     *
+     * @return バッチの最大サイズ
+     */
+    public int getPublishBatchSize() {
+        return publishBatchSize;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 1回のパイプラインで送信するメッセージの最大数を変更します
+     *
+     * @param publishBatchSize 新しいバッチの最大サイズ（1未満の場合は1が使用されます）
+     */
+    public void setPublishBatchSize(int publishBatchSize) {
+        this.publishBatchSize = Math.max(1, publishBatchSize);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * バッチが満たされるまで最初のメッセージを待機させる最大時間を取得します
+     *
+     * @return 最大待機時間（ミリ秒）。0の場合、キューに溜まっているメッセージのみが即座に送信されます
+     */
+    public long getPublishMaxDelayMillis() {
+        return publishMaxDelayMillis;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * バッチが満たされるまで最初のメッセージを待機させる最大時間を変更します
+     *
+     * @param publishMaxDelayMillis 新しい最大待機時間（ミリ秒、負の値の場合は0が使用されます）
+     */
+    public void setPublishMaxDelayMillis(long publishMaxDelayMillis) {
+        this.publishMaxDelayMillis = Math.max(0, publishMaxDelayMillis);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信するメッセージのエンベロープの形式を取得します
+     *
+     * @return 現在の{@link EnvelopeFormat}
+     */
+    public EnvelopeFormat getEnvelopeFormat() {
+        return envelopeFormat;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 送信するメッセージのエンベロープの形式を変更します。受信側は形式を自動的に検出します。
+     *
+     * @param envelopeFormat 新しい{@link EnvelopeFormat}（nullの場合はJSONが使用されます）
+     */
+    public void setEnvelopeFormat(EnvelopeFormat envelopeFormat) {
+        this.envelopeFormat = envelopeFormat != null ? envelopeFormat : EnvelopeFormat.JSON;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ハンドラーが登録されているチャンネルでもプラットフォームのイベントを発生させるかどうかを取得します
+     *
+     * @return 常にイベントを発生させる場合は 'true'。'false'の場合、イベントはハンドラーのないチャンネルでのみ発生します
+     */
+    public boolean isAlwaysFireEvents() {
+        return alwaysFireEvents;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ハンドラーが登録されているチャンネルでもプラットフォームのイベントを発生させるかどうかを変更します
+     *
+     * @param alwaysFireEvents 常にイベントを発生させるかどうか
+     */
+    public void setAlwaysFireEvents(boolean alwaysFireEvents) {
+        this.alwaysFireEvents = alwaysFireEvents;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * Redis Streamsを使用する永続チャンネルのセットを取得します。返されたセットを変更すると設定に反映されます
+     *
+     * @return 永続チャンネルのセット（大文字小文字を区別）
+     */
+    public Set<String> getDurableChannels() {
+        return durableChannels;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルを永続チャンネルとして追加します
+     *
+     * @param channels 追加するチャンネル（大文字小文字を区別）
+     */
+    public void addDurableChannels(Collection<String> channels) {
+        this.durableChannels.addAll(channels);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルの優先度を取得します
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     * @return チャンネルの{@link MessagePriority}、指定されていない場合は{@link MessagePriority#NORMAL}
+     */
+    public MessagePriority getChannelPriority(String channel) {
+        return this.channelPriorities.getOrDefault(channel, MessagePriority.NORMAL);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 優先度が指定されているチャンネルを取得します
+     *
+     * @return 変更できないチャンネルと優先度のマップ
+     */
+    public Map<String, MessagePriority> getChannelPriorities() {
+        return Collections.unmodifiableMap(channelPriorities);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルの優先度を変更します。送信と受信の両方に即座に反映されます
+     *
+     * @param channels 優先度を変更するチャンネル（大文字小文字を区別）
+     * @param priority 新しい{@link MessagePriority}（nullまたはNORMALの場合は指定が削除されます）
+     */
+    public void setChannelPriority(Collection<String> channels, MessagePriority priority) {
+        for (String channel : channels) {
+            if (priority == null || priority == MessagePriority.NORMAL) {
+                this.channelPriorities.remove(channel);
+                continue;
+            }
+            this.channelPriorities.put(channel, priority);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信時に同じキーの未配信のメッセージを統合するチャンネルのセットを取得します。返されたセットを変更すると設定に反映されます
+     *
+     * @return 統合するチャンネルのセット（大文字小文字を区別）
+     */
+    public Set<String> getConflatedChannels() {
+        return conflatedChannels;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルを受信時に統合するチャンネルとして追加します
+     *
+     * @param channels 追加するチャンネル（大文字小文字を区別）
+     */
+    public void addConflatedChannels(Collection<String> channels) {
+        this.conflatedChannels.addAll(channels);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 優先度ごとの受信メッセージの配信キューの最大サイズを取得します（ストライプに均等に分割されます）
+     *
+     * @return キューの最大サイズ
+     */
+    public int getInboundQueueSize() {
+        return inboundQueueSize;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 優先度ごとの受信メッセージの配信キューの最大サイズを設定します。次回の接続時に反映されます
+     *
+     * @param inboundQueueSize キューの最大サイズ
+     */
+    public void setInboundQueueSize(int inboundQueueSize) {
+        this.inboundQueueSize = inboundQueueSize;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 優先度ごとの受信メッセージを並行して配信するストライプの数を取得します。
+     * 同じチャンネルのメッセージは常に同じストライプで受信した順に配信されます
+     *
+     * @return ストライプの数
+     */
+    public int getInboundStripes() {
+        return inboundStripes;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 優先度ごとの受信メッセージを並行して配信するストライプの数を設定します。次回の接続時に反映されます
+     *
+     * @param inboundStripes ストライプの数
+     */
+    public void setInboundStripes(int inboundStripes) {
+        this.inboundStripes = inboundStripes;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信メッセージを配信するスレッドの種類を取得します
+     *
+     * @return スレッドの{@link ExecutorType}
+     */
+    public ExecutorType getInboundExecutorType() {
+        return inboundExecutorType;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信メッセージを配信するスレッドの種類を設定します。次回の接続時に反映されます
+     *
+     * @param inboundExecutorType スレッドの{@link ExecutorType}
+     */
+    public void setInboundExecutorType(ExecutorType inboundExecutorType) {
+        this.inboundExecutorType = inboundExecutorType;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信キューが満杯の場合のデフォルトの動作を取得します
+     *
+     * @return デフォルトの{@link OverflowPolicy}
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信キューが満杯の場合のデフォルトの動作を設定します
+     *
+     * @param overflowPolicy デフォルトの{@link OverflowPolicy}（nullの場合はBLOCKが使用されます）
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.BLOCK;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルのメッセージを受信したときに配信キューが満杯の場合の動作を取得します
+     *
+     * @param channel チャンネルの名前（大文字小文字を区別）
+     * @return チャンネルの{@link OverflowPolicy}、指定されていない場合はデフォルトの動作
+     */
+    public OverflowPolicy getOverflowPolicy(String channel) {
+        return this.channelOverflowPolicies.getOrDefault(channel, this.overflowPolicy);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 動作が指定されているチャンネルを取得します
+     *
+     * @return 変更できないチャンネルと動作のマップ
+     */
+    public Map<String, OverflowPolicy> getChannelOverflowPolicies() {
+        return Collections.unmodifiableMap(channelOverflowPolicies);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルの配信キューが満杯の場合の動作を変更します。即座に反映されます
+     *
+     * @param channels 動作を変更するチャンネル（大文字小文字を区別）
+     * @param policy   新しい{@link OverflowPolicy}（nullの場合は指定が削除されます）
+     */
+    public void setOverflowPolicy(Collection<String> channels, OverflowPolicy policy) {
+        for (String channel : channels) {
+            if (policy == null) {
+                this.channelOverflowPolicies.remove(channel);
+                continue;
+            }
+            this.channelOverflowPolicies.put(channel, policy);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 永続チャンネルのストリームに保持されるエントリのおおよその最大数を取得します
+     *
+     * @return エントリの最大数
+     */
+    public long getStreamMaxLength() {
+        return streamMaxLength;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 永続チャンネルのストリームに保持されるエントリのおおよその最大数を変更します
+     *
+     * @param streamMaxLength 新しいエントリの最大数（1未満の場合は1が使用されます）
+     */
+    public void setStreamMaxLength(long streamMaxLength) {
+        this.streamMaxLength = Math.max(1, streamMaxLength);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 1回の読み取りで取得するストリームエントリの最大数を取得します
+     *
+     * @return エントリの最大数
+     */
+    public int getStreamReadCount() {
+        return streamReadCount;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 1回の読み取りで取得するストリームエントリの最大数を変更します
+     *
+     * @param streamReadCount 新しいエントリの最大数（1未満の場合は1が使用されます）
+     */
+    public void setStreamReadCount(int streamReadCount) {
+        this.streamReadCount = Math.max(1, streamReadCount);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 新しいストリームエントリを待機する最大時間を取得します
+     *
+     * @return 最大待機時間（ミリ秒）
+     */
+    public int getStreamBlockMillis() {
+        return streamBlockMillis;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 新しいストリームエントリを待機する最大時間を変更します。停止時の待機時間にも影響します
+     *
+     * @param streamBlockMillis 新しい最大待機時間（ミリ秒、1未満の場合は1が使用されます）
+     */
+    public void setStreamBlockMillis(int streamBlockMillis) {
+        this.streamBlockMillis = Math.max(1, streamBlockMillis);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キー/値の非同期の操作を1回のパイプラインで実行する最大数を取得します
+     *
+     * @return 操作の最大数
+     */
+    public int getKeyValueBatchSize() {
+        return keyValueBatchSize;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キー/値の非同期の操作を1回のパイプラインで実行する最大数を変更します。次の{@link cz.foresttech.forestredis.shared.RedisManager#setup(String...)}から反映されます
+     *
+     * @param keyValueBatchSize 新しい操作の最大数（1未満の場合は1が使用されます）
+     */
+    public void setKeyValueBatchSize(int keyValueBatchSize) {
+        this.keyValueBatchSize = Math.max(1, keyValueBatchSize);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キー/値の非同期の操作のバッチが満たされるまで最初の操作を待機させる最大時間を取得します
+     *
+     * @return 最大待機時間（ミリ秒）
+     */
+    public long getKeyValueMaxDelayMillis() {
+        return keyValueMaxDelayMillis;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * キー/値の非同期の操作のバッチが満たされるまで最初の操作を待機させる最大時間を変更します。次の{@link cz.foresttech.forestredis.shared.RedisManager#setup(String...)}から反映されます
+     *
+     * @param keyValueMaxDelayMillis 新しい最大待機時間（ミリ秒、0の場合は溜まっている操作のみを即座に実行します）
+     */
+    public void setKeyValueMaxDelayMillis(long keyValueMaxDelayMillis) {
+        this.keyValueMaxDelayMillis = Math.max(0, keyValueMaxDelayMillis);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * カウンターをRedisサーバーに送信する間隔を取得します
+     *
+     * @return 送信の間隔（ミリ秒）
+     */
+    public long getCounterFlushMillis() {
+        return counterFlushMillis;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * カウンターをRedisサーバーに送信する間隔を変更します。次の{@link cz.foresttech.forestredis.shared.RedisManager#setup(String...)}から反映されます
+     *
+     * @param counterFlushMillis 新しい送信の間隔（ミリ秒、1未満の場合は1が使用されます）
+     */
+    public void setCounterFlushMillis(long counterFlushMillis) {
+        this.counterFlushMillis = Math.max(1, counterFlushMillis);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * カウンターのネットワーク全体の値をキャッシュする時間を取得します
+     *
+     * @return キャッシュの時間（ミリ秒）
+     */
+    public long getCounterCacheMillis() {
+        return counterCacheMillis;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * カウンターのネットワーク全体の値をキャッシュする時間を変更します。次の{@link cz.foresttech.forestredis.shared.RedisManager#setup(String...)}から反映されます
+     *
+     * @param counterCacheMillis 新しいキャッシュの時間（ミリ秒、0の場合はキャッシュしません）
+     */
+    public void setCounterCacheMillis(long counterCacheMillis) {
+        this.counterCacheMillis = Math.max(0, counterCacheMillis);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 分散ロックのリースの期間を取得します
+     *
+     * @return リースの期間（ミリ秒）
+     */
+    public long getLockLeaseMillis() {
+        return lockLeaseMillis;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 分散ロックのリースの期間を変更します。リースは期間の3分の1ごとに更新されます。次の{@link cz.foresttech.forestredis.shared.RedisManager#setup(String...)}から反映されます
+     *
+     * @param lockLeaseMillis 新しいリースの期間（ミリ秒、100未満の場合は100が使用されます）
+     */
+    public void setLockLeaseMillis(long lockLeaseMillis) {
+        this.lockLeaseMillis = Math.max(100, lockLeaseMillis);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ローカルキャッシュに保存するキーの接頭辞のリストを取得します
+     *
+     * @return 接頭辞のリスト。空の場合はキャッシュを使用しません
+     */
+    public List<String> getCachePrefixes() {
+        return cachePrefixes;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ローカルキャッシュに保存するキーの接頭辞のリストを変更します。次の{@link cz.foresttech.forestredis.shared.RedisManager#setup(String...)}から反映されます
+     *
+     * @param cachePrefixes 新しい接頭辞のリスト（nullの場合は空のリストが使用されます）
+     */
+    public void setCachePrefixes(List<String> cachePrefixes) {
+        this.cachePrefixes = cachePrefixes != null ? new ArrayList<>(cachePrefixes) : new ArrayList<>();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ローカルキャッシュに保存するエントリの最大数を取得します
+     *
+     * @return エントリの最大数
+     */
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ローカルキャッシュに保存するエントリの最大数を変更します
+     *
+     * @param cacheMaxSize 新しいエントリの最大数（1未満の場合は1が使用されます）
+     */
+    public void setCacheMaxSize(int cacheMaxSize) {
+        this.cacheMaxSize = Math.max(1, cacheMaxSize);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ローカルキャッシュのエントリの有効期間を取得します
+     *
+     * @return 有効期間（ミリ秒）
+     */
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ローカルキャッシュのエントリの有効期間を変更します
+     *
+     * @param cacheTtlMillis 新しい有効期間（ミリ秒、1未満の場合は1が使用されます）
+     */
+    public void setCacheTtlMillis(long cacheTtlMillis) {
+        this.cacheTtlMillis = Math.max(1, cacheTtlMillis);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,229 @@
+package cz.foresttech.forestredis.shared.transport;
+
+import redis.clients.jedis.BinaryJedisShardedPubSub;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Redis Clusterの1つのノードでシャードされたpubsub接続を処理するためのサブスクリプションクラス。
+ * <p>
+ * ノードが所有するスロットのすべてのチャンネルは1つの接続で多重化されます。SSUBSCRIBEコマンドは同じスロットの
+ * チャンネルのみを受け付けるため、チャンネルはスロットごとにまとめて購読されます。
+ */
+class ClusterShardSubscription extends BinaryJedisShardedPubSub implements Runnable {
+
+    /**
+     * サブスクリプションが関連付けられているトランスポート
+     */
+    private final ClusterTransport transport;
+
+    /**
+     * 接続するノード
+     */
+    private final HostAndPort node;
+
+    /**
+     * 購読されるべきチャンネルのセット
+     */
+    private final Set<String> channels;
+
+    /**
+     * 現在の接続でSSUBSCRIBEコマンドが送信されたチャンネルのセット
+     */
+    private final Set<String> requestedChannels;
+
+    /**
+     * サブスクリプションがまだ使用されているかどうか
+     */
+    private volatile boolean active;
+
+    ClusterShardSubscription(ClusterTransport transport, HostAndPort node) {
+        this.transport = transport;
+        this.node = node;
+        this.channels = new HashSet<>();
+        this.requestedChannels = new HashSet<>();
+        this.active = true;
+    }
+
+    /**
+     * 提供されたチャンネルを接続に追加します。接続が確立されていない場合、接続時に購読されます。
+     *
+     * @param channelsToAdd 追加するチャンネル
+     */
+    synchronized void addChannels(Collection<String> channelsToAdd) {
+        this.channels.addAll(channelsToAdd);
+        this.synchronizeChannels();
+        this.notifyAll();
+    }
+
+    /**
+     * 提供されたチャンネルを接続から削除します。
+     *
+     * @param channelsToRemove 削除するチャンネル
+     */
+    synchronized void removeChannels(Collection<String> channelsToRemove) {
+        this.channels.removeAll(channelsToRemove);
+        this.synchronizeChannels();
+    }
+
+    /**
+     * すべてのチャンネルの購読を解除し、ループを終了させます。
+     */
+    synchronized void shutdown() {
+        this.active = false;
+        this.channels.clear();
+        this.synchronizeChannels();
+        this.notifyAll();
+    }
+
+    /**
+     * 購読されるべきチャンネルのコピーを返します。
+     *
+     * @return チャンネルのリスト
+     */
+    synchronized List<String> getChannels() {
+        return new ArrayList<>(this.channels);
+    }
+
+    /**
+     * 接続するノードを返します。
+     *
+     * @return ノード
+     */
+    HostAndPort getNode() {
+        return node;
+    }
+
+    /**
+     * 購読されるべきチャンネルと現在の接続で購読されているチャンネルの差分をスロットごとに送信します。
+     */
+    private synchronized void synchronizeChannels() {
+        if (!this.isSubscribed()) {
+            return;
+        }
+
+        Set<String> toSubscribe = new HashSet<>(this.channels);
+        toSubscribe.removeAll(this.requestedChannels);
+
+        Set<String> toUnsubscribe = new HashSet<>(this.requestedChannels);
+        toUnsubscribe.removeAll(this.channels);
+
+        try {
+            for (List<String> slotChannels : bySlot(toSubscribe).values()) {
+                this.ssubscribe(SafeEncoder.encodeMany(slotChannels.toArray(new String[0])));
+                this.requestedChannels.addAll(slotChannels);
+            }
+            for (List<String> slotChannels : bySlot(toUnsubscribe).values()) {
+                this.sunsubscribe(SafeEncoder.encodeMany(slotChannels.toArray(new String[0])));
+                slotChannels.forEach(this.requestedChannels::remove);
+            }
+        } catch (Exception ignored) {
+            // 接続が切断されている場合、再接続時にすべてのチャンネルが購読されます
+        }
+    }
+
+    @Override
+    public void run() {
+        while (this.active && !Thread.interrupted()) {
+            byte[][] channelsToSubscribe;
+
+            // 購読するチャンネルが提供されるまで待機する
+            synchronized (this) {
+                while (this.channels.isEmpty() && this.active) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if (!this.active) {
+                    return;
+                }
+
+                // 最初のSSUBSCRIBEは1つのスロットのみ。残りのスロットは購読の確認後に送信される
+                List<String> firstSlot = bySlot(this.channels).values().iterator().next();
+                channelsToSubscribe = SafeEncoder.encodeMany(firstSlot.toArray(new String[0]));
+                this.requestedChannels.clear();
+                this.requestedChannels.addAll(firstSlot);
+            }
+
+            try (Connection connection = this.transport.getConnection(this.node)) {
+                this.transport.getPlugin().logger().info("ノード " + this.node + " へのシャードされたpubsub接続が確立されました！");
+                this.proceed(connection, channelsToSubscribe); // ブロッキング呼び出し
+            } catch (Exception e) {
+                if (!this.active) {
+                    return;
+                }
+
+                this.transport.getPlugin().logger().warning("ノード " + this.node + " へのシャードされたpubsub接続が切断されました。接続を再開しようとしています！");
+
+                // フェイルオーバーの場合、チャンネルを新しいノードに移動する
+                this.transport.relocate(this);
+
+                // コンソールの大量のスパムを防ぐために5秒間スリープする
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onSSubscribe(byte[] channel, int subscribedChannels) {
+        // 接続中に追加または削除されたチャンネルを反映する
+        this.synchronizeChannels();
+    }
+
+    @Override
+    public void onSUnsubscribe(byte[] channelData, int subscribedChannels) {
+        String channel = SafeEncoder.encode(channelData);
+
+        synchronized (this) {
+            this.requestedChannels.remove(channel);
+
+            // 要求していない購読解除はスロットの移行によるもの
+            if (!this.channels.contains(channel)) {
+                return;
+            }
+        }
+
+        this.transport.relocate(this);
+    }
+
+    @Override
+    public void onSMessage(byte[] channelData, byte[] message) {
+        if (channelData == null || message == null) {
+            return;
+        }
+
+        this.transport.getListener().onMessage(SafeEncoder.encode(channelData), message);
+    }
+
+    /**
+     * チャンネルをスロットごとにまとめます。
+     *
+     * @param channels まとめるチャンネル
+     * @return スロットとチャンネルのリストのマップ
+     */
+    private static Map<Integer, List<String>> bySlot(Collection<String> channels) {
+        Map<Integer, List<String>> channelsBySlot = new TreeMap<>();
+        for (String channel : channels) {
+            channelsBySlot.computeIfAbsent(JedisClusterCRC16.getSlot(channel), slot -> new ArrayList<>()).add(channel);
+        }
+        return channelsBySlot;
+    }
+}
@@ -0,0 +1,331 @@
+package cz.foresttech.forestredis.shared.transport;
+
+import cz.foresttech.forestredis.shared.IForestRedisPlugin;
+import cz.foresttech.forestredis.shared.models.RedisConfiguration;
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+import redis.clients.jedis.ClusterPipeline;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisClusterOperationException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.jedis.providers.ClusterConnectionProvider;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Redis 7以降のシャードされたpubsub（SPUBLISH/SSUBSCRIBE）を使用してRedis Clusterに接続するトランスポート。
+ * <p>
+ * 通常のpubsubではメッセージがクラスタ内のすべてのノードにブロードキャストされますが、シャードされたpubsubでは
+ * チャンネルのスロットを所有するシャードにのみ送信されます。購読はチャンネルを所有するノードごとに1つの接続で行われ、
+ * 送信メッセージはチャンネルのスロットに応じてルーティングされます。
+ * <p>
+ * Redis Streamsはクラスタではサポートされていないため、永続チャンネルは通常のチャンネルとして扱われます。
+ */
+public class ClusterTransport implements IRedisTransport {
+
+    /**
+     * スロットの移行で別のノードにリダイレクトされたメッセージを再送信する最大回数
+     */
+    private static final int MAX_PUBLISH_REDIRECTS = 3;
+
+    /**
+     * トランスポートが関連付けられているプラグイン
+     */
+    private final IForestRedisPlugin plugin;
+
+    /**
+     * 認証情報を保存するための構成オブジェクト
+     */
+    private final RedisConfiguration redisConfiguration;
+
+    /**
+     * マネージャーの動作に関する設定オブジェクト
+     */
+    private final RedisSettings redisSettings;
+
+    /**
+     * 受信したメッセージを受け取るリスナー
+     */
+    private final ITransportListener listener;
+
+    /**
+     * 購読されるべきチャンネルのセット
+     */
+    private final Set<String> channels;
+
+    /**
+     * ノードごとのサブスクリプション
+     */
+    private final Map<HostAndPort, ClusterShardSubscription> subscriptions;
+
+    /**
+     * クラスタのノードとスロットを管理するプロバイダー
+     */
+    private ClusterConnectionProvider provider;
+
+    /**
+     * トランスポートがまだ使用されているかどうか
+     */
+    private volatile boolean active;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * トランスポートのインスタンスを構築します。接続は{@link #start()}が呼び出されるまで確立されません。
+     *
+     * @param plugin             トランスポートが関連付けられているプラグイン
+     * @param redisConfiguration Redisサーバーの認証情報を含む{@link RedisConfiguration}オブジェクト
+     * @param redisSettings      マネージャーの動作に関する{@link RedisSettings}オブジェクト
+     * @param listener           受信したメッセージを受け取るリスナー
+     */
+    public ClusterTransport(IForestRedisPlugin plugin, RedisConfiguration redisConfiguration, RedisSettings redisSettings, ITransportListener listener) {
+        this.plugin = plugin;
+        this.redisConfiguration = redisConfiguration;
+        this.redisSettings = redisSettings;
+        this.listener = listener;
+        this.channels = new HashSet<>();
+        this.subscriptions = new HashMap<>();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public boolean start() {
+        // RedisConfigurationの存在を確認する
+        if (this.redisConfiguration == null) {
+            this.plugin.logger().warning("Redis Clusterに接続できません！構成がnullであってはなりません！");
+            return false;
+        }
+
+        this.provider = this.redisConfiguration.buildCluster(this.redisSettings.getClusterNodes());
+        if (this.provider == null) {
+            this.plugin.logger().warning("提供された構成からRedis Clusterに接続できません！");
+            return false;
+        }
+
+        this.active = true;
+        this.plugin.logger().info("Redis Clusterに接続しました（" + this.provider.getNodes().size() + "個のノード）！");
+
+        if (!this.redisSettings.getDurableChannels().isEmpty()) {
+            this.plugin.logger().warning("Redis Clusterでは永続チャンネルはサポートされていません。通常のチャンネルとして扱われます！");
+        }
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public synchronized void addChannels(Collection<String> channels, boolean durable) {
+        this.channels.addAll(channels);
+        this.route(channels);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public synchronized void removeChannels(Collection<String> channels) {
+        this.channels.removeAll(channels);
+        for (ClusterShardSubscription subscription : this.subscriptions.values()) {
+            subscription.removeChannels(channels);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void publish(List<OutboundMessage> messages) {
+        // スロットが移行された場合は、スロットのキャッシュを更新してリダイレクトされたメッセージのみを再送信する
+        List<OutboundMessage> pending = messages;
+        for (int redirects = 0; !pending.isEmpty(); redirects++) {
+            if (redirects > MAX_PUBLISH_REDIRECTS) {
+                throw new JedisClusterOperationException(pending.size() + "件のメッセージがスロットの移行中のため送信できませんでした！");
+            }
+            if (redirects > 0) {
+                this.provider.renewSlotCache();
+            }
+            pending = this.publishOnce(pending);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * メッセージを1回のパイプラインで送信します。パイプラインはスロットを所有するノードごとにコマンドをまとめて送信します。
+     *
+     * @param messages 送信するメッセージ
+     * @return スロットを所有していないノードに送信され、リダイレクトされたメッセージ
+     */
+    private List<OutboundMessage> publishOnce(List<OutboundMessage> messages) {
+        List<Response<Long>> responses = new ArrayList<>(messages.size());
+        try (ClusterPipeline pipeline = new ClusterPipeline(this.provider)) {
+            for (OutboundMessage message : messages) {
+                responses.add(pipeline.spublish(SafeEncoder.encode(message.channel()), message.message()));
+            }
+            pipeline.sync();
+        }
+
+        // パイプラインはエラーの応答で例外を投げないため、応答ごとに確認する
+        List<OutboundMessage> redirected = new ArrayList<>();
+        for (int i = 0; i < responses.size(); i++) {
+            try {
+                responses.get(i).get();
+            } catch (JedisRedirectionException e) {
+                redirected.add(messages.get(i));
+            }
+        }
+        return redirected;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void close() {
+        this.active = false;
+
+        synchronized (this) {
+            for (ClusterShardSubscription subscription : this.subscriptions.values()) {
+                subscription.shutdown();
+            }
+            this.subscriptions.clear();
+            this.channels.clear();
+        }
+
+        if (this.provider == null) {
+            return;
+        }
+
+        this.provider.close();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルを、スロットを所有するノードのサブスクリプションに追加します。
+     *
+     * @param channelsToRoute 追加するチャンネル
+     */
+    private synchronized void route(Collection<String> channelsToRoute) {
+        Map<HostAndPort, List<String>> channelsByNode = new HashMap<>();
+        for (String channel : channelsToRoute) {
+            HostAndPort node = this.nodeOf(channel);
+            if (node == null) {
+                this.plugin.logger().warning("チャンネル '" + channel + "' のスロットを所有するノードが見つかりません！");
+                continue;
+            }
+            channelsByNode.computeIfAbsent(node, n -> new ArrayList<>()).add(channel);
+        }
+
+        for (Map.Entry<HostAndPort, List<String>> entry : channelsByNode.entrySet()) {
+            this.subscriptions.computeIfAbsent(entry.getKey(), node -> {
+                ClusterShardSubscription subscription = new ClusterShardSubscription(this, node);
+                this.plugin.runAsync(subscription);
+                return subscription;
+            }).addChannels(entry.getValue());
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルのスロットを所有するノードを返します。スロットのキャッシュにない場合はキャッシュを更新します。
+     *
+     * @param channel チャンネルの名前
+     * @return ノード、見つからない場合はnull
+     */
+    private HostAndPort nodeOf(String channel) {
+        int slot = JedisClusterCRC16.getSlot(channel);
+        HostAndPort node = this.provider.getNode(slot);
+        if (node != null) {
+            return node;
+        }
+
+        try {
+            this.provider.renewSlotCache();
+        } catch (Exception ignored) {
+            return null;
+        }
+        return this.provider.getNode(slot);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * スロットのキャッシュを更新し、所有するノードが変わったチャンネルを新しいノードのサブスクリプションに移動します。
+     * スロットの移行やフェイルオーバーの後にサブスクリプションから呼び出されます。
+     *
+     * @param subscription チャンネルを確認するサブスクリプション
+     */
+    synchronized void relocate(ClusterShardSubscription subscription) {
+        if (!this.active) {
+            return;
+        }
+
+        try {
+            this.provider.renewSlotCache();
+        } catch (Exception ignored) {
+            // クラスタに接続できない場合、次の再接続時に再試行する
+            return;
+        }
+
+        List<String> moved = new ArrayList<>();
+        for (String channel : subscription.getChannels()) {
+            if (!this.channels.contains(channel) || !subscription.getNode().equals(this.provider.getNode(JedisClusterCRC16.getSlot(channel)))) {
+                moved.add(channel);
+            }
+        }
+
+        if (moved.isEmpty()) {
+            return;
+        }
+
+        subscription.removeChannels(moved);
+        moved.retainAll(this.channels);
+        this.route(moved);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたノードへの接続を取得します。使用後は必ず閉じてください。
+     *
+     * @param node 接続するノード
+     * @return ノードへの{@link Connection}
+     */
+    Connection getConnection(HostAndPort node) {
+        return this.provider.getConnection(node);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * トランスポートが関連付けられているプラグインを返します。
+     *
+     * @return 現在の{@link IForestRedisPlugin}の実装
+     */
+    IForestRedisPlugin getPlugin() {
+        return plugin;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージを受け取るリスナーを返します。
+     *
+     * @return 現在の{@link ITransportListener}
+     */
+    ITransportListener getListener() {
+        return listener;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,63 @@
+package cz.foresttech.forestredis.shared.transport;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link cz.foresttech.forestredis.shared.RedisManager}がメッセージを送受信するために使用するトランスポートのインターフェース。
+ * <p>
+ * トランスポートは接続の管理、チャンネルの購読、メッセージの送信を担当します。受信したメッセージはデコードされずに
+ * {@link ITransportListener}に渡されます。すべてのメソッドは複数のスレッドから呼び出される可能性があります。
+ *
+ * @see JedisTransport
+ * @see LoopbackTransport
+ */
+public interface IRedisTransport {
+
+    /**
+     * トランスポートを開始します。購読や受信のループは非同期で開始されます。
+     *
+     * @return 開始が成功したかどうか
+     */
+    boolean start();
+
+    /**
+     * トランスポートがRedisサーバーに接続され、追加されたチャンネルの受信が開始されるまで待機します。
+     * リロード時に新しいトランスポートへ切り替えてよいかを判断するために使用されます。
+     *
+     * @param timeoutMillis 最大待機時間（ミリ秒）
+     * @return 時間内に準備ができた場合は 'true'
+     */
+    default boolean awaitReady(long timeoutMillis) {
+        return true;
+    }
+
+    /**
+     * 提供されたチャンネルの受信を開始します。
+     *
+     * @param channels 追加するチャンネル（大文字小文字を区別）
+     * @param durable  チャンネルが永続チャンネルかどうか
+     */
+    void addChannels(Collection<String> channels, boolean durable);
+
+    /**
+     * 提供されたチャンネルの受信を停止します。
+     *
+     * @param channels 削除するチャンネル（大文字小文字を区別）
+     */
+    void removeChannels(Collection<String> channels);
+
+    /**
+     * 提供されたメッセージをまとめて送信します。このメソッドは送信スレッドからのみ呼び出されます。
+     *
+     * @param messages 送信するメッセージのリスト
+     * @throws Exception 送信に失敗した場合
+     */
+    void publish(List<OutboundMessage> messages) throws Exception;
+
+    /**
+     * 受信を停止し、接続を閉じます。
+     */
+    void close();
+
+}
@@ -0,0 +1,32 @@
+package cz.foresttech.forestredis.shared.transport;
+
+import java.util.function.Consumer;
+
+/**
+ * トランスポートが受信したメッセージを受け取るためのインターフェース。
+ */
+public interface ITransportListener {
+
+    /**
+     * メッセージが受信されたときに呼び出されます。
+     *
+     * @param channel メッセージを受信したチャンネル
+     * @param message 受信したメッセージのデータ（エンベロープを含む）
+     */
+    void onMessage(String channel, byte[] message);
+
+    /**
+     * 配信の完了を確認する必要があるメッセージ（永続チャンネルのエントリ）が受信されたときに呼び出されます。
+     * リスナーはメッセージを配信した後に 'true' で、配信せずに破棄した場合は 'false' で "onCompleted" を呼び出す必要があります。
+     * 配信されなかったメッセージは確認されず、再び読み取られます。デフォルトの実装はメッセージを直ちに配信します。
+     *
+     * @param channel     メッセージを受信したチャンネル
+     * @param message     受信したメッセージのデータ（エンベロープを含む）
+     * @param onCompleted メッセージの処理が完了したときに、配信されたかどうかで呼び出すコールバック
+     */
+    default void onMessage(String channel, byte[] message, Consumer<Boolean> onCompleted) {
+        this.onMessage(channel, message);
+        onCompleted.accept(true);
+    }
+
+}
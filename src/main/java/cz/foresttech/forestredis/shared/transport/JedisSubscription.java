@@ -0,0 +1,206 @@
+package cz.foresttech.forestredis.shared.transport;
+
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * PubSub接続を処理するために使用されるサブスクリプションクラス。
+ * <p>
+ * すべてのチャンネルは1つの接続で多重化され、接続を維持したままチャンネルを動的に追加および削除します。
+ * メッセージはバイト配列として受信され、デコードされずに{@link ITransportListener}に渡されます。
+ */
+class JedisSubscription extends BinaryJedisPubSub implements Runnable {
+
+    /**
+     * サブスクリプションが関連付けられているトランスポート
+     */
+    private final JedisTransport transport;
+
+    /**
+     * 購読されるべきチャンネルのセット
+     */
+    private final Set<String> channels;
+
+    /**
+     * 現在の接続でSUBSCRIBEコマンドが送信されたチャンネルのセット
+     */
+    private final Set<String> requestedChannels;
+
+    /**
+     * 現在の接続でRedisサーバーが購読を確認したチャンネルのセット
+     */
+    private final Set<String> confirmedChannels;
+
+    /**
+     * サブスクリプションがまだ使用されているかどうか。リロード後に古いループを終了させるために使用されます
+     */
+    private volatile boolean active;
+
+    JedisSubscription(JedisTransport transport) {
+        this.transport = transport;
+        this.channels = new HashSet<>();
+        this.requestedChannels = new HashSet<>();
+        this.confirmedChannels = new HashSet<>();
+        this.active = true;
+    }
+
+    /**
+     * 提供されたチャンネルを接続に追加します。接続が確立されていない場合、接続時に購読されます。
+     *
+     * @param channelsToAdd 追加するチャンネル
+     */
+    synchronized void addChannels(Collection<String> channelsToAdd) {
+        this.channels.addAll(channelsToAdd);
+        this.synchronizeChannels();
+        this.notifyAll();
+    }
+
+    /**
+     * 提供されたチャンネルを接続から削除します。
+     *
+     * @param channelsToRemove 削除するチャンネル
+     */
+    synchronized void removeChannels(Collection<String> channelsToRemove) {
+        this.channels.removeAll(channelsToRemove);
+        this.synchronizeChannels();
+    }
+
+    /**
+     * 購読されるべきすべてのチャンネルの購読がRedisサーバーで確認されるまで待機します。
+     *
+     * @param timeoutMillis 最大待機時間（ミリ秒）
+     * @return 時間内にすべてのチャンネルが購読された場合は 'true'
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    synchronized boolean awaitSubscribed(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!this.confirmedChannels.containsAll(this.channels)) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || !this.active) {
+                return false;
+            }
+            this.wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * すべてのチャンネルの購読を解除し、ループを終了させます。
+     */
+    synchronized void shutdown() {
+        this.active = false;
+        this.channels.clear();
+        this.synchronizeChannels();
+        this.notifyAll();
+    }
+
+    /**
+     * 購読されるべきチャンネルと現在の接続で購読されているチャンネルの差分を送信します。
+     */
+    private synchronized void synchronizeChannels() {
+        if (!this.isSubscribed()) {
+            return;
+        }
+
+        Set<String> toSubscribe = new HashSet<>(this.channels);
+        toSubscribe.removeAll(this.requestedChannels);
+
+        Set<String> toUnsubscribe = new HashSet<>(this.requestedChannels);
+        toUnsubscribe.removeAll(this.channels);
+
+        try {
+            if (!toSubscribe.isEmpty()) {
+                this.subscribe(SafeEncoder.encodeMany(toSubscribe.toArray(new String[0])));
+                this.requestedChannels.addAll(toSubscribe);
+            }
+            if (!toUnsubscribe.isEmpty()) {
+                this.unsubscribe(SafeEncoder.encodeMany(toUnsubscribe.toArray(new String[0])));
+                this.requestedChannels.removeAll(toUnsubscribe);
+            }
+        } catch (Exception ignored) {
+            // 接続が切断されている場合、再接続時にすべてのチャンネルが購読されます
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean firstTry = true;
+
+        while (this.active && !Thread.interrupted() && !this.transport.isClosed()) {
+            byte[][] channelsToSubscribe;
+
+            // 購読するチャンネルが提供されるまで待機する
+            synchronized (this) {
+                while (this.channels.isEmpty() && this.active) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if (!this.active) {
+                    return;
+                }
+
+                channelsToSubscribe = SafeEncoder.encodeMany(this.channels.toArray(new String[0]));
+                this.requestedChannels.clear();
+                this.requestedChannels.addAll(this.channels);
+                this.confirmedChannels.clear();
+            }
+
+            try (Jedis jedis = this.transport.getJedis()) {
+                if (firstTry) {
+                    this.transport.getPlugin().logger().info("Redis pubsub接続が確立されました！");
+                    firstTry = false;
+                } else {
+                    this.transport.getPlugin().logger().info("Redis pubsub接続が再確立されました！");
+                }
+
+                jedis.subscribe(this, channelsToSubscribe); // ブロッキング呼び出し
+            } catch (Exception e) {
+                if (!this.active) {
+                    return;
+                }
+
+                this.transport.getPlugin().logger().warning("Redis pubsub接続が切断されました。接続を再開しようとしています！");
+
+                // コンソールの大量のスパムを防ぐために5秒間スリープする
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onSubscribe(byte[] channel, int subscribedChannels) {
+        this.confirmedChannels.add(SafeEncoder.encode(channel));
+        this.notifyAll();
+
+        // 接続中に追加または削除されたチャンネルを反映する
+        this.synchronizeChannels();
+    }
+
+    @Override
+    public synchronized void onUnsubscribe(byte[] channel, int subscribedChannels) {
+        this.confirmedChannels.remove(SafeEncoder.encode(channel));
+    }
+
+    @Override
+    public void onMessage(byte[] channelData, byte[] message) {
+        if (channelData == null || message == null) {
+            return;
+        }
+
+        this.transport.getListener().onMessage(SafeEncoder.encode(channelData), message);
+    }
+}
@@ -0,0 +1,267 @@
+package cz.foresttech.forestredis.shared.transport;
+
+import cz.foresttech.forestredis.shared.IForestRedisPlugin;
+import cz.foresttech.forestredis.shared.models.RedisConfiguration;
+import cz.foresttech.forestredis.shared.models.RedisSettings;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jedisを使用してRedisサーバーに接続するトランスポート。
+ * <p>
+ * 通常のチャンネルは1つのpubsub接続で多重化され、永続チャンネルはRedis Streamsで読み取られます。
+ * 送信メッセージは1つの{@link Pipeline}でまとめて送信されます。
+ */
+public class JedisTransport implements IRedisTransport {
+
+    /**
+     * トランスポートが関連付けられているプラグイン
+     */
+    private final IForestRedisPlugin plugin;
+
+    /**
+     * 認証情報を保存するための構成オブジェクト
+     */
+    private final RedisConfiguration redisConfiguration;
+
+    /**
+     * マネージャーの動作に関する設定オブジェクト
+     */
+    private final RedisSettings redisSettings;
+
+    /**
+     * 現在のサーバーの識別子。永続チャンネルのコンシューマーグループの名前として使用されます
+     */
+    private final String serverIdentifier;
+
+    /**
+     * 受信したメッセージを受け取るリスナー
+     */
+    private final ITransportListener listener;
+
+    /**
+     * 現在のJedisPoolオブジェクト
+     */
+    private JedisPool jedisPool;
+
+    /**
+     * すべてのチャンネルを多重化する単一のサブスクリプション
+     */
+    private JedisSubscription subscription;
+
+    /**
+     * 永続チャンネルのストリームを読み取るサブスクリプション
+     */
+    private RedisStreamSubscription streamSubscription;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * トランスポートのインスタンスを構築します。接続は{@link #start()}が呼び出されるまで確立されません。
+     *
+     * @param plugin             トランスポートが関連付けられているプラグイン
+     * @param redisConfiguration Redisサーバーの認証情報を含む{@link RedisConfiguration}オブジェクト
+     * @param redisSettings      マネージャーの動作に関する{@link RedisSettings}オブジェクト
+     * @param serverIdentifier   サーバーの識別子
+     * @param listener           受信したメッセージを受け取るリスナー
+     */
+    public JedisTransport(IForestRedisPlugin plugin, RedisConfiguration redisConfiguration, RedisSettings redisSettings, String serverIdentifier, ITransportListener listener) {
+        this.plugin = plugin;
+        this.redisConfiguration = redisConfiguration;
+        this.redisSettings = redisSettings;
+        this.serverIdentifier = serverIdentifier;
+        this.listener = listener;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public boolean start() {
+        // RedisConfigurationの存在を確認する
+        if (this.redisConfiguration == null) {
+            this.plugin.logger().warning("Jedisプールを確立できません！構成がnullであってはなりません！");
+            return false;
+        }
+
+        // JedisPoolを構築する
+        this.jedisPool = this.redisConfiguration.build();
+        if (this.jedisPool == null) {
+            this.plugin.logger().warning("提供された構成からJedisプールを確立できません！");
+            return false;
+        }
+
+        this.plugin.logger().info("サーバー識別子 '" + this.serverIdentifier + "' でJedisプールが確立されました！");
+
+        // 単一のpubsub接続とストリームの読み取りを開始する。チャンネルが購読されるまで接続は確立されません
+        this.subscription = new JedisSubscription(this);
+        this.plugin.runAsync(this.subscription);
+        this.streamSubscription = new RedisStreamSubscription(this);
+        this.plugin.runAsync(this.streamSubscription);
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public boolean awaitReady(long timeoutMillis) {
+        try (Jedis jedis = this.getJedis()) {
+            jedis.ping();
+        } catch (Exception e) {
+            return false;
+        }
+
+        try {
+            return this.subscription == null || this.subscription.awaitSubscribed(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void addChannels(Collection<String> channels, boolean durable) {
+        if (durable) {
+            if (this.streamSubscription != null) {
+                this.streamSubscription.addChannels(channels);
+            }
+            return;
+        }
+
+        if (this.subscription != null) {
+            this.subscription.addChannels(channels);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void removeChannels(Collection<String> channels) {
+        if (this.subscription != null) {
+            this.subscription.removeChannels(channels);
+        }
+        if (this.streamSubscription != null) {
+            this.streamSubscription.removeChannels(channels);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void publish(List<OutboundMessage> messages) {
+        XAddParams streamParams = null;
+
+        try (Jedis jedis = this.getJedis()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (OutboundMessage message : messages) {
+                if (!message.durable()) {
+                    pipeline.publish(SafeEncoder.encode(message.channel()), message.message());
+                    continue;
+                }
+
+                if (streamParams == null) {
+                    streamParams = XAddParams.xAddParams().maxLen(this.redisSettings.getStreamMaxLength()).approximateTrimming();
+                }
+                pipeline.xadd(RedisStreamSubscription.streamKey(message.channel()), streamParams, Map.of(RedisStreamSubscription.PAYLOAD_FIELD, message.message()));
+            }
+            pipeline.sync();
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void close() {
+        if (this.subscription != null) {
+            this.subscription.shutdown();
+            this.subscription = null;
+        }
+        if (this.streamSubscription != null) {
+            this.streamSubscription.shutdown();
+            this.streamSubscription = null;
+        }
+
+        if (this.jedisPool == null) {
+            return;
+        }
+
+        this.jedisPool.destroy();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * プールから接続を取得します。使用後は必ず閉じてください。
+     *
+     * @return {@link Jedis}接続
+     */
+    public Jedis getJedis() {
+        return this.jedisPool.getResource();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 接続のプールが閉じられているかどうかを返します。
+     *
+     * @return プールが閉じられている場合は 'true'
+     */
+    boolean isClosed() {
+        return this.jedisPool == null || this.jedisPool.isClosed();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * トランスポートが関連付けられているプラグインを返します。
+     *
+     * @return 現在の{@link IForestRedisPlugin}の実装
+     */
+    IForestRedisPlugin getPlugin() {
+        return plugin;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * マネージャーの動作に関する設定を返します。
+     *
+     * @return 現在の{@link RedisSettings}
+     */
+    RedisSettings getSettings() {
+        return redisSettings;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * サーバーの識別子を返します。
+     *
+     * @return サーバー識別子
+     */
+    String getServerIdentifier() {
+        return serverIdentifier;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 受信したメッセージを受け取るリスナーを返します。
+     *
+     * @return 現在の{@link ITransportListener}
+     */
+    ITransportListener getListener() {
+        return listener;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,91 @@
+package cz.foresttech.forestredis.shared.transport;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Redisサーバーを使用せずに、同じプロセス内でメッセージを配信するトランスポート。
+ * <p>
+ * 同じプロセス内で開始されているすべてのループバックトランスポートが1つのネットワークとして扱われるため、
+ * 単一ノードの環境やテスト、ベンチマークでネットワークを経由せずにメッセージを送受信できます。
+ * メッセージは送信スレッドで購読しているトランスポートに直接配信されます。永続チャンネルは通常のチャンネルと同様に扱われ、
+ * メッセージは保存されません。
+ */
+public class LoopbackTransport implements IRedisTransport {
+
+    /**
+     * 開始されているすべてのループバックトランスポート
+     */
+    private static final Set<LoopbackTransport> TRANSPORTS = new CopyOnWriteArraySet<>();
+
+    /**
+     * 受信したメッセージを受け取るリスナー
+     */
+    private final ITransportListener listener;
+
+    /**
+     * 購読されているチャンネルのセット
+     */
+    private final Set<String> channels;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * トランスポートのインスタンスを構築します。メッセージは{@link #start()}が呼び出されるまで受信されません。
+     *
+     * @param listener 受信したメッセージを受け取るリスナー
+     */
+    public LoopbackTransport(ITransportListener listener) {
+        this.listener = listener;
+        this.channels = ConcurrentHashMap.newKeySet();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public boolean start() {
+        TRANSPORTS.add(this);
+        return true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void addChannels(Collection<String> channels, boolean durable) {
+        this.channels.addAll(channels);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void removeChannels(Collection<String> channels) {
+        this.channels.removeAll(channels);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void publish(List<OutboundMessage> messages) {
+        for (OutboundMessage message : messages) {
+            for (LoopbackTransport transport : TRANSPORTS) {
+                if (transport.channels.contains(message.channel())) {
+                    transport.listener.onMessage(message.channel(), message.message());
+                }
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void close() {
+        TRANSPORTS.remove(this);
+        this.channels.clear();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,13 @@
+package cz.foresttech.forestredis.shared.transport;
+
+/**
+ * 送信待ちのメッセージ
+ *
+ * @param channel       公開するチャンネル
+ * @param message       公開するシリアル化されたメッセージ
+ * @param durable       永続チャンネルに送信するかどうか
+ * @param enqueuedAt    キューに追加された時刻（{@link System#nanoTime()}）
+ * @param conflationKey 同じチャンネルの未送信のメッセージを置き換えるためのキー（置き換えない場合はnull）
+ */
+public record OutboundMessage(String channel, byte[] message, boolean durable, long enqueuedAt, String conflationKey) {
+}
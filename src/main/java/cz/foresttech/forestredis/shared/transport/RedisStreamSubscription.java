@@ -0,0 +1,596 @@
+package cz.foresttech.forestredis.shared.transport;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.XClaimParams;
+import redis.clients.jedis.params.XPendingParams;
+import redis.clients.jedis.params.XReadGroupParams;
+import redis.clients.jedis.resps.StreamConsumerInfo;
+import redis.clients.jedis.resps.StreamPendingEntry;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Redis Streamsを使用する永続チャンネルを処理するためのクラス。
+ * <p>
+ * 各サーバーはサーバー識別子を名前とするコンシューマーグループを使用するため、
+ * すべてのサーバーがすべてのメッセージを受信します。接続が切断されている間に送信されたメッセージは失われず、
+ * 再接続時に最後に確認されたIDから読み取りが再開されます。
+ * <p>
+ * エントリはリスナーが配信を完了した後にのみ確認されます。配信される前に破棄されたエントリは確認されず、
+ * 再接続時に未確認のエントリとして再び読み取られます。
+ * <p>
+ * サブスクリプションごとに異なるコンシューマー名を使用するため、ホットリロード中に新旧のサブスクリプションが同じエントリを
+ * 読み取ることはありません。停止したサブスクリプションやクラッシュしたサーバーに残された未確認のエントリは、
+ * そのコンシューマーの読み取りが一定時間途絶えた後に{@code XCLAIM}で引き継がれ、再び配信されます。
+ */
+class RedisStreamSubscription implements Runnable {
+
+    /**
+     * ストリームのキーの接頭辞
+     */
+    private static final String STREAM_KEY_PREFIX = "forestredis:stream:";
+
+    /**
+     * メッセージが保存されるストリームエントリのフィールド名
+     */
+    static final byte[] PAYLOAD_FIELD = SafeEncoder.encode("d");
+
+    /**
+     * 未確認のエントリを読み取るためのID
+     */
+    private static final byte[] PENDING_ENTRIES_ID = SafeEncoder.encode("0");
+
+    /**
+     * 新しいエントリのみを読み取るためのID
+     */
+    private static final byte[] NEW_ENTRIES_ID = SafeEncoder.encode(">");
+
+    /**
+     * ストリームの最後のエントリからグループを作成するためのID
+     */
+    private static final byte[] LAST_ENTRY_ID = SafeEncoder.encode("$");
+
+    /**
+     * 停止時に配信中のエントリの確認を待機する最大時間（ミリ秒）
+     */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * ブロック時間に加えて、コンシューマーが停止したと判断するまでの読み取りのない時間（ミリ秒）
+     */
+    private static final long STALE_CONSUMER_MILLIS = 5000;
+
+    /**
+     * 停止したコンシューマーの未確認のエントリを確認する間隔（ミリ秒）
+     */
+    private static final long CLAIM_INTERVAL_MILLIS = 5000;
+
+    /**
+     * 未確認のエントリの一覧を一度に取得する最大数
+     */
+    private static final int CLAIM_BATCH_SIZE = 100;
+
+    /**
+     * サブスクリプションが関連付けられているトランスポート
+     */
+    private final JedisTransport transport;
+
+    /**
+     * このサブスクリプションが使用するコンシューマー名
+     */
+    private final String consumerName;
+
+    /**
+     * 購読されるべきチャンネルのセット
+     */
+    private final Set<String> channels;
+
+    /**
+     * 現在の接続でコンシューマーグループが確認されたチャンネルのセット
+     */
+    private final Set<String> preparedChannels;
+
+    /**
+     * リスナーに渡され、まだ確認されていないエントリのセット。未確認のエントリを読み取る際に二重に配信しないために使用されます
+     */
+    private final Set<String> inFlight;
+
+    /**
+     * 配信が完了し、確認を待っているエントリのキュー
+     */
+    private final Queue<DeliveredEntry> deliveredEntries;
+
+    /**
+     * 破棄されたエントリがあり、未確認のエントリを再び読み取る必要があるかどうか
+     */
+    private volatile boolean rereadPending;
+
+    /**
+     * サブスクリプションがまだ使用されているかどうか
+     */
+    private volatile boolean active;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * サブスクリプションのインスタンスを構築します。ループは{@link #run()}が呼び出されるまで開始されません。
+     *
+     * @param transport サブスクリプションが関連付けられているトランスポート
+     */
+    RedisStreamSubscription(JedisTransport transport) {
+        this.transport = transport;
+        this.consumerName = transport.getServerIdentifier() + ':' + UUID.randomUUID().toString().substring(0, 8);
+        this.channels = new HashSet<>();
+        this.preparedChannels = new HashSet<>();
+        this.inFlight = ConcurrentHashMap.newKeySet();
+        this.deliveredEntries = new ConcurrentLinkedQueue<>();
+        this.active = true;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルの読み取りを開始します。新しいチャンネルは次の読み取りから反映されます。
+     *
+     * @param channelsToAdd 追加するチャンネル
+     */
+    synchronized void addChannels(Iterable<String> channelsToAdd) {
+        for (String channel : channelsToAdd) {
+            this.channels.add(channel);
+        }
+        this.notifyAll();
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 提供されたチャンネルの読み取りを停止します。コンシューマーグループは削除されません。
+     *
+     * @param channelsToRemove 削除するチャンネル
+     */
+    synchronized void removeChannels(Iterable<String> channelsToRemove) {
+        for (String channel : channelsToRemove) {
+            this.channels.remove(channel);
+            this.preparedChannels.remove(channel);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 読み取りを停止し、ループを終了させます。ブロッキング中の読み取りは最大でブロック時間後に終了します。
+     * 配信中のエントリは、配信されるまで最大{@link #SHUTDOWN_TIMEOUT_MILLIS}ミリ秒待機してから確認されます。
+     */
+    void shutdown() {
+        synchronized (this) {
+            this.active = false;
+            this.channels.clear();
+            this.notifyAll();
+        }
+
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        try (Jedis jedis = this.transport.getJedis()) {
+            this.acknowledgeDelivered(jedis);
+            while (!this.inFlight.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                this.acknowledgeDelivered(jedis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 確認されなかったエントリは次回の開始時に再び読み取られる
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    @Override
+    public void run() {
+        boolean firstTry = true;
+
+        while (this.active && !Thread.interrupted()) {
+            if (!this.awaitChannels()) {
+                return;
+            }
+
+            try (Jedis jedis = this.transport.getJedis()) {
+                if (firstTry) {
+                    this.transport.getPlugin().logger().info("Redis Streams接続が確立されました！");
+                    firstTry = false;
+                } else {
+                    this.transport.getPlugin().logger().info("Redis Streams接続が再確立されました！");
+                }
+
+                synchronized (this) {
+                    this.preparedChannels.clear();
+                }
+
+                // 再接続前に受信したが確認されていないエントリを先に処理する。ストリームごとに最後に読み取ったIDから続きを読み取る
+                Map<String, byte[]> pendingCursors = new HashMap<>();
+                boolean readPending = true;
+                long nextClaim = 0;
+                while (this.active) {
+                    this.acknowledgeDelivered(jedis);
+
+                    Map<String, byte[]> streams = this.prepareStreams(jedis);
+                    if (streams.isEmpty()) {
+                        break;
+                    }
+
+                    // 停止したサブスクリプションやクラッシュしたサーバーの未確認のエントリを引き継ぐ
+                    if (System.currentTimeMillis() >= nextClaim) {
+                        nextClaim = System.currentTimeMillis() + CLAIM_INTERVAL_MILLIS;
+                        if (this.claimStale(jedis, streams)) {
+                            this.rereadPending = true;
+                        }
+                    }
+
+                    if (this.rereadPending) {
+                        this.rereadPending = false;
+                        pendingCursors.clear();
+                        readPending = true;
+                    }
+
+                    if (!readPending) {
+                        this.read(jedis, streams, null, true);
+                        continue;
+                    }
+
+                    Map<String, byte[]> ids = new LinkedHashMap<>();
+                    for (String channel : streams.keySet()) {
+                        byte[] cursor = pendingCursors.getOrDefault(channel, PENDING_ENTRIES_ID);
+                        if (cursor != null) {
+                            ids.put(channel, cursor);
+                        }
+                    }
+                    if (ids.isEmpty()) {
+                        readPending = false;
+                        continue;
+                    }
+
+                    Map<String, byte[]> lastIds = this.read(jedis, streams, ids, false);
+                    for (String channel : ids.keySet()) {
+                        // 未確認のエントリがなくなったストリームはnullとして記録する
+                        pendingCursors.put(channel, lastIds.get(channel));
+                    }
+                }
+            } catch (Exception e) {
+                if (!this.active) {
+                    return;
+                }
+
+                this.transport.getPlugin().logger().warning("Redis Streams接続が切断されました。接続を再開しようとしています！");
+
+                // コンソールの大量のスパムを防ぐために5秒間スリープする
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 読み取るチャンネルが提供されるまで待機します。
+     *
+     * @return サブスクリプションがまだ使用されている場合は 'true'
+     */
+    private synchronized boolean awaitChannels() {
+        while (this.channels.isEmpty() && this.active) {
+            try {
+                this.wait();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return this.active;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 読み取るストリームのキーを準備し、必要に応じてコンシューマーグループを作成します。
+     *
+     * @param jedis 使用する接続
+     * @return チャンネル名とストリームキーのマップ
+     */
+    private Map<String, byte[]> prepareStreams(Jedis jedis) {
+        List<String> toPrepare = new ArrayList<>();
+        Map<String, byte[]> streams = new LinkedHashMap<>();
+
+        synchronized (this) {
+            for (String channel : this.channels) {
+                streams.put(channel, streamKey(channel));
+                if (!this.preparedChannels.contains(channel)) {
+                    toPrepare.add(channel);
+                }
+            }
+        }
+
+        byte[] group = SafeEncoder.encode(this.transport.getServerIdentifier());
+        for (String channel : toPrepare) {
+            try {
+                jedis.xgroupCreate(streams.get(channel), group, LAST_ENTRY_ID, true);
+            } catch (JedisDataException ex) {
+                // グループが既に存在する場合は、最後に確認されたIDから再開する
+                if (ex.getMessage() == null || !ex.getMessage().startsWith("BUSYGROUP")) {
+                    throw ex;
+                }
+            }
+
+            synchronized (this) {
+                if (this.channels.contains(channel)) {
+                    this.preparedChannels.add(channel);
+                }
+            }
+        }
+
+        return streams;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * エントリをまとめて読み取り、リスナーに渡します。エントリは配信が完了した後に{@link #acknowledgeDelivered(Jedis)}で確認されます。
+     *
+     * @param jedis   使用する接続
+     * @param streams チャンネル名とストリームキーのマップ
+     * @param ids     チャンネルごとの読み取りを開始するID（nullの場合はすべてのストリームの新しいエントリを読み取ります）
+     * @param block   新しいエントリを待機するかどうか
+     * @return エントリが読み取られたチャンネルごとの最後のエントリのID
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, byte[]> read(Jedis jedis, Map<String, byte[]> streams, Map<String, byte[]> ids, boolean block) {
+        Map<String, String> channelsByKey = new LinkedHashMap<>();
+        List<Map.Entry<byte[], byte[]>> requests = new ArrayList<>();
+        for (Map.Entry<String, byte[]> stream : streams.entrySet()) {
+            byte[] id = ids != null ? ids.get(stream.getKey()) : NEW_ENTRIES_ID;
+            if (id == null) {
+                continue;
+            }
+
+            channelsByKey.put(SafeEncoder.encode(stream.getValue()), stream.getKey());
+            requests.add(new AbstractMap.SimpleImmutableEntry<>(stream.getValue(), id));
+        }
+
+        XReadGroupParams params = XReadGroupParams.xReadGroupParams().count(this.transport.getSettings().getStreamReadCount());
+        if (block) {
+            params.block(this.transport.getSettings().getStreamBlockMillis());
+        }
+
+        byte[] group = SafeEncoder.encode(this.transport.getServerIdentifier());
+        List<Object> response = jedis.xreadGroup(group, SafeEncoder.encode(this.consumerName), params, toArray(requests));
+        if (response == null) {
+            return Map.of();
+        }
+
+        Map<String, byte[]> lastIds = new HashMap<>();
+        for (Object streamObject : response) {
+            List<Object> stream = (List<Object>) streamObject;
+            byte[] key = (byte[]) stream.get(0);
+            String channel = channelsByKey.get(SafeEncoder.encode(key));
+
+            for (Object entryObject : (List<Object>) stream.get(1)) {
+                // 停止後は配信しない。残りのエントリは確認されずに次回の開始時に読み取られる
+                if (!this.active) {
+                    return lastIds;
+                }
+
+                List<Object> entry = (List<Object>) entryObject;
+                byte[] id = (byte[]) entry.get(0);
+                lastIds.put(channel, id);
+
+                // 配信中のエントリは未確認のエントリとして再び読み取られるため、二重に配信しない
+                DeliveredEntry deliveredEntry = new DeliveredEntry(key, id, SafeEncoder.encode(key) + ' ' + SafeEncoder.encode(id));
+                if (!this.inFlight.add(deliveredEntry.token())) {
+                    continue;
+                }
+
+                // 削除されたエントリは配信せずに確認する
+                byte[] payload = payload((List<Object>) entry.get(1));
+                if (payload == null) {
+                    this.deliveredEntries.add(deliveredEntry);
+                    continue;
+                }
+
+                this.transport.getListener().onMessage(channel, payload, delivered -> this.complete(deliveredEntry, delivered));
+            }
+        }
+
+        return lastIds;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 一定時間以上読み取りを行っていない他のコンシューマーの未確認のエントリを、このコンシューマーに引き継ぎます。
+     * 読み取り中のコンシューマーはブロック時間ごとに読み取りを行うため、そのエントリは引き継がれません。
+     * 未確認のエントリがなくなった停止したコンシューマーはグループから削除されます。
+     *
+     * @param jedis   使用する接続
+     * @param streams チャンネル名とストリームキーのマップ
+     * @return エントリが引き継がれたかどうか
+     */
+    private boolean claimStale(Jedis jedis, Map<String, byte[]> streams) {
+        String group = this.transport.getServerIdentifier();
+        long staleMillis = this.transport.getSettings().getStreamBlockMillis() + STALE_CONSUMER_MILLIS;
+        boolean claimed = false;
+
+        for (byte[] streamKey : streams.values()) {
+            String key = SafeEncoder.encode(streamKey);
+
+            for (StreamConsumerInfo consumerInfo : jedis.xinfoConsumers2(key, group)) {
+                String consumer = consumerInfo.getName();
+                if (consumer.equals(this.consumerName) || consumerInfo.getIdle() < staleMillis) {
+                    continue;
+                }
+
+                // 削除すると未確認のエントリも失われるため、すべて引き継いだ後の確認で削除する
+                if (consumerInfo.getPending() == 0) {
+                    jedis.xgroupDelConsumer(key, group, consumer);
+                    continue;
+                }
+
+                List<StreamPendingEntry> pendingEntries;
+                do {
+                    pendingEntries = jedis.xpending(key, group, XPendingParams.xPendingParams(StreamEntryID.MINIMUM_ID, StreamEntryID.MAXIMUM_ID, CLAIM_BATCH_SIZE).consumer(consumer));
+                    if (pendingEntries.isEmpty()) {
+                        break;
+                    }
+
+                    StreamEntryID[] ids = new StreamEntryID[pendingEntries.size()];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = pendingEntries.get(i).getID();
+                    }
+                    claimed |= !jedis.xclaimJustId(key, group, this.consumerName, 0, XClaimParams.xClaimParams(), ids).isEmpty();
+                } while (pendingEntries.size() == CLAIM_BATCH_SIZE);
+            }
+        }
+
+        if (claimed) {
+            this.transport.getPlugin().logger().info("停止したコンシューマーの未確認のエントリを引き継ぎました！");
+        }
+        return claimed;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * リスナーがエントリの処理を完了したときに呼び出されます。配信されたエントリは次の確認で確認され、
+     * 破棄されたエントリは次に未確認のエントリを読み取る際に再び配信されます。
+     *
+     * @param deliveredEntry 処理されたエントリ
+     * @param delivered      エントリが配信されたかどうか
+     */
+    private void complete(DeliveredEntry deliveredEntry, boolean delivered) {
+        if (delivered) {
+            this.deliveredEntries.add(deliveredEntry);
+        } else {
+            this.inFlight.remove(deliveredEntry.token());
+            this.rereadPending = true;
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 配信が完了したエントリをパイプラインでまとめて確認します。
+     *
+     * @param jedis 使用する接続
+     */
+    private void acknowledgeDelivered(Jedis jedis) {
+        if (this.deliveredEntries.isEmpty()) {
+            return;
+        }
+
+        List<DeliveredEntry> acknowledged = new ArrayList<>();
+        Map<String, List<byte[]>> idsByKey = new LinkedHashMap<>();
+        Map<String, byte[]> keys = new HashMap<>();
+        DeliveredEntry deliveredEntry;
+        while ((deliveredEntry = this.deliveredEntries.poll()) != null) {
+            acknowledged.add(deliveredEntry);
+            String key = SafeEncoder.encode(deliveredEntry.key());
+            keys.putIfAbsent(key, deliveredEntry.key());
+            idsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(deliveredEntry.id());
+        }
+
+        byte[] group = SafeEncoder.encode(this.transport.getServerIdentifier());
+        try {
+            Pipeline pipeline = jedis.pipelined();
+            for (Map.Entry<String, List<byte[]>> entry : idsByKey.entrySet()) {
+                pipeline.xack(keys.get(entry.getKey()), group, entry.getValue().toArray(new byte[0][]));
+            }
+            pipeline.sync();
+        } catch (RuntimeException ex) {
+            // 確認に失敗したエントリは次の確認で再試行する
+            this.deliveredEntries.addAll(acknowledged);
+            throw ex;
+        }
+
+        for (DeliveredEntry acknowledgedEntry : acknowledged) {
+            this.inFlight.remove(acknowledgedEntry.token());
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * ストリームエントリのフィールドからメッセージを取得します。
+     *
+     * @param fields フィールドと値が交互に並んだリスト（削除されたエントリの場合はnull）
+     * @return メッセージのデータ、見つからない場合はnull
+     */
+    private static byte[] payload(List<Object> fields) {
+        if (fields == null) {
+            return null;
+        }
+
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            if (Arrays.equals((byte[]) fields.get(i), PAYLOAD_FIELD)) {
+                return (byte[]) fields.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 読み取りの要求のリストを{@code XREADGROUP}の可変長引数に渡すための配列に変換します。
+     *
+     * @param requests ストリームのキーと読み取りを開始するIDのリスト
+     * @return 要求の配列
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map.Entry<byte[], byte[]>[] toArray(List<Map.Entry<byte[], byte[]>> requests) {
+        // 総称型の配列は作成できないため、raw型の配列を使用する（要素の型はリストによって保証されている）
+        return requests.toArray(new Map.Entry[0]);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * チャンネルに対応するストリームのキーを返します。
+     *
+     * @param channel チャンネルの名前
+     * @return ストリームのキー
+     */
+    static byte[] streamKey(String channel) {
+        return SafeEncoder.encode(STREAM_KEY_PREFIX + channel);
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * リスナーに渡されたエントリ
+     *
+     * @param key   ストリームのキー
+     * @param id    エントリのID
+     * @param token 配信中のエントリのセットで使用するキーとIDの組み合わせ
+     */
+    private record DeliveredEntry(byte[] key, byte[] id, String token) {
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
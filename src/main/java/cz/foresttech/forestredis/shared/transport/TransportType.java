@@ -0,0 +1,53 @@
+package cz.foresttech.forestredis.shared.transport;
+
+/**
+ * {@link cz.foresttech.forestredis.shared.RedisManager}が使用するトランスポートの種類。
+ */
+public enum TransportType {
+
+    /**
+     * Jedisを使用してRedisサーバーに接続します
+     *
+     * @see JedisTransport
+     */
+    REDIS,
+
+    /**
+     * JedisClusterを使用してRedis Clusterに接続し、シャードされたpubsub（SPUBLISH/SSUBSCRIBE）を使用します
+     *
+     * @see ClusterTransport
+     */
+    CLUSTER,
+
+    /**
+     * Redisサーバーを使用せず、同じプロセス内でメッセージを配信します
+     *
+     * @see LoopbackTransport
+     */
+    LOOPBACK;
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+    /**
+     * 名前から種類を取得します（大文字小文字を区別しません）。
+     *
+     * @param name 種類の名前
+     * @param def  名前が無効な場合のデフォルト値
+     * @return 対応する{@link TransportType}、見つからない場合は "def"
+     */
+    public static TransportType fromName(String name, TransportType def) {
+        if (name == null) {
+            return def;
+        }
+
+        for (TransportType type : values()) {
+            if (type.name().equalsIgnoreCase(name.trim())) {
+                return type;
+            }
+        }
+        return def;
+    }
+
+    /*----------------------------------------------------------------------------------------------------------*/
+
+}
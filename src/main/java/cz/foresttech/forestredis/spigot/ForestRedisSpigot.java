@@ -4,16 +4,31 @@ import cz.foresttech.forestredis.shared.*;
 import cz.foresttech.forestredis.shared.adapter.IConfigurationAdapter;
 import cz.foresttech.forestredis.shared.adapter.ILoggerAdapter;
 import cz.foresttech.forestredis.shared.adapter.JUtilLoggerAdapter;
+import cz.foresttech.forestredis.shared.commands.AdminCommandExecutor;
 import cz.foresttech.forestredis.shared.models.MessageTransferObject;
+import cz.foresttech.forestredis.shared.models.OverflowPolicy;
 import cz.foresttech.forestredis.spigot.adapter.SpigotConfigAdapter;
+import cz.foresttech.forestredis.spigot.commands.ForestRedisCommand;
 import cz.foresttech.forestredis.spigot.events.AsyncRedisMessageReceivedEvent;
 import cz.foresttech.forestredis.spigot.events.RedisMessageReceivedEvent;
 import org.bukkit.Bukkit;
+import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 設定ファイルを使用して{@link RedisManager}を設定するためのBootstrap Spigotプラグイン。
  * また、サーバーにリロードとバージョンコマンドを提供します。
+ * <p>
+ * 同期イベントはキューに溜められ、1つの繰り返しタスクによってティックごとの予算内でメインスレッドに配信されます。
+ * 統合チャンネルのイベントは、配信を待っている間に同じキーの新しいメッセージを受信した場合、最初のイベントのキューの位置で最新の内容が配信されます。
+ * キューが上限に達した場合は、チャンネルの{@link OverflowPolicy}に従ってイベントを破棄するか、空きができるまで受信のスレッドを待機させます。
  */
 public class ForestRedisSpigot extends JavaPlugin implements IForestRedisPlugin {
 
@@ -21,16 +36,62 @@ public class ForestRedisSpigot extends JavaPlugin implements IForestRedisPlugin
 
     private ILoggerAdapter loggerAdapter;
 
+    /**
+     * {@link OverflowPolicy#BLOCK}のチャンネルで、キューの空きを待つ間に配信のタスクの状態を確認する間隔（ミリ秒）
+     */
+    private static final long BLOCK_POLL_MILLIS = 50;
+
+    /**
+     * メインスレッドへの配信を待っている同期イベントのキュー。容量は最初の読み込み時の設定で決まります
+     */
+    private volatile BlockingQueue<RedisMessageReceivedEvent> syncEventQueue;
+
+    /**
+     * 統合チャンネルのチャンネルと統合のキーごとの、まだ配信されていない最新の同期イベント
+     */
+    private final Map<String, RedisMessageReceivedEvent> conflatedSyncEvents = new ConcurrentHashMap<>();
+
+    /**
+     * 同期イベントを配信する繰り返しタスク
+     */
+    private volatile BukkitTask syncDeliveryTask;
+
+    /**
+     * 1ティックで配信する同期イベントの最大数（0以下の場合は無制限）
+     */
+    private volatile int maxMessagesPerTick;
+
+    /**
+     * 1ティックで同期イベントの配信に使用する最大時間（ナノ秒、0以下の場合は無制限）
+     */
+    private volatile long maxNanosPerTick;
+
     @Override
     public void onEnable() {
         instance = this;
         loggerAdapter = new JUtilLoggerAdapter(getLogger());
 
         load();
+
+        PluginCommand command = getCommand(AdminCommandExecutor.COMMAND_NAME);
+        if (command != null) {
+            command.setExecutor(new ForestRedisCommand());
+        }
+
+        syncDeliveryTask = Bukkit.getScheduler().runTaskTimer(this, this::deliverSyncEvents, 1L, 1L);
     }
 
     @Override
     public void onDisable() {
+        if (syncDeliveryTask != null) {
+            syncDeliveryTask.cancel();
+            syncDeliveryTask = null;
+        }
+        if (syncEventQueue != null) {
+            syncEventQueue.clear();
+        }
+        conflatedSyncEvents.clear();
+
         if (RedisManager.getAPI() == null) {
             return;
         }
@@ -42,13 +103,186 @@ public class ForestRedisSpigot extends JavaPlugin implements IForestRedisPlugin
         Bukkit.getScheduler().runTaskAsynchronously(instance, task);
     }
 
+    @Override
+    public void load() {
+        // メインスレッドへの配信の予算を読み込む。キューはメッセージを受信する前に作成される
+        IConfigurationAdapter configAdapter = this.getConfigAdapter();
+        if (configAdapter.isSetup()) {
+            maxMessagesPerTick = configAdapter.getInt("spigot.maxMessagesPerTick", 0);
+            maxNanosPerTick = TimeUnit.MILLISECONDS.toNanos(configAdapter.getInt("spigot.maxMillisPerTick", 10));
+            loadSyncEventQueue(configAdapter.getInt("spigot.maxQueuedEvents", 10000));
+        }
+
+        IForestRedisPlugin.super.load();
+    }
+
+    /**
+     * 同期イベントのキューを作成します。キューの容量は変更できないため、リロードで上限が変更された場合は再起動後に適用されます。
+     *
+     * @param maxQueuedEvents メインスレッドへの配信を待つ同期イベントの最大数（0以下の場合は無制限）
+     */
+    private void loadSyncEventQueue(int maxQueuedEvents) {
+        int capacity = maxQueuedEvents > 0 ? maxQueuedEvents : Integer.MAX_VALUE;
+        BlockingQueue<RedisMessageReceivedEvent> queue = syncEventQueue;
+        if (queue == null) {
+            syncEventQueue = new LinkedBlockingQueue<>(capacity);
+            return;
+        }
+
+        if (queue.size() + queue.remainingCapacity() != capacity) {
+            loggerAdapter.warning("spigot.maxQueuedEvents の変更はサーバーの再起動後に適用されます！");
+        }
+    }
+
     @Override
     public void onMessageReceived(String channel, MessageTransferObject messageTransferObject) {
         AsyncRedisMessageReceivedEvent asyncRedisMessageReceivedEvent = new AsyncRedisMessageReceivedEvent(channel, messageTransferObject);
         Bukkit.getPluginManager().callEvent(asyncRedisMessageReceivedEvent);
 
-        if (!asyncRedisMessageReceivedEvent.isCancelled()) {
-            Bukkit.getScheduler().runTask(this, () -> Bukkit.getPluginManager().callEvent(new RedisMessageReceivedEvent(asyncRedisMessageReceivedEvent.getChannel(), asyncRedisMessageReceivedEvent.getMessageTransferObject())));
+        if (asyncRedisMessageReceivedEvent.isCancelled()) {
+            return;
+        }
+
+        RedisMessageReceivedEvent event = new RedisMessageReceivedEvent(asyncRedisMessageReceivedEvent.getChannel(), asyncRedisMessageReceivedEvent.getMessageTransferObject());
+
+        // 配信を待っている同じキーのイベントがある場合は、そのキューの位置で最新の内容が配信される
+        RedisManager redisManager = RedisManager.getAPI();
+        String conflationKey = conflationKey(event);
+        if (conflationKey != null && redisManager != null && redisManager.isConflated(event.getChannel())
+                && conflatedSyncEvents.put(conflationKey, event) != null) {
+            redisManager.getMetrics().recordCoalesced(1);
+            return;
+        }
+
+        if (!enqueue(redisManager, event)) {
+            if (redisManager != null) {
+                redisManager.getMetrics().recordDropped(event.getChannel());
+            }
+            if (conflationKey != null) {
+                conflatedSyncEvents.remove(conflationKey);
+            }
+        }
+    }
+
+    /**
+     * 同期イベントをキューに追加します。キューが上限に達している場合は、チャンネルの{@link OverflowPolicy}に従って動作します。
+     * メインスレッドから呼び出された場合と、配信のタスクが停止している場合は待機せずに破棄します。
+     *
+     * @param redisManager 使用する{@link RedisManager}（nullの場合は上限に達したイベントを破棄します）
+     * @param event        追加する同期イベント
+     * @return イベントがキューに追加された場合は 'true'、破棄する場合は 'false'
+     */
+    private boolean enqueue(RedisManager redisManager, RedisMessageReceivedEvent event) {
+        BlockingQueue<RedisMessageReceivedEvent> queue = syncEventQueue;
+        if (queue.offer(event)) {
+            return true;
+        }
+        if (redisManager == null) {
+            return false;
+        }
+
+        switch (redisManager.getOverflowPolicy(event.getChannel())) {
+            case DROP_NEWEST -> {
+                return false;
+            }
+            case DROP_OLDEST -> {
+                // 破棄できるイベントがキューにない場合は、新しいイベントを破棄する
+                do {
+                    if (!evictOldest(redisManager, queue)) {
+                        return false;
+                    }
+                } while (!queue.offer(event));
+                return true;
+            }
+            default -> {
+                // メインスレッドが配信して空きができるまで待機する
+                try {
+                    while (syncDeliveryTask != null && !Bukkit.isPrimaryThread()) {
+                        if (queue.offer(event, BLOCK_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                            return true;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * キューから破棄できる最も古いイベントを削除します。自身のチャンネルのポリシーで破棄が許可されているイベントのみが対象です。
+     *
+     * @param redisManager 使用する{@link RedisManager}
+     * @param queue        イベントを削除するキュー
+     * @return イベントが削除されたかどうか
+     */
+    private boolean evictOldest(RedisManager redisManager, BlockingQueue<RedisMessageReceivedEvent> queue) {
+        for (RedisMessageReceivedEvent queued : queue) {
+            // 走査中にメインスレッドが取り出した場合は削除されない
+            if (redisManager.getOverflowPolicy(queued.getChannel()) == OverflowPolicy.BLOCK || !queue.remove(queued)) {
+                continue;
+            }
+
+            // 統合されたイベントの最新の内容も一緒に破棄される
+            String conflationKey = conflationKey(queued);
+            if (conflationKey != null) {
+                conflatedSyncEvents.remove(conflationKey);
+            }
+            redisManager.getMetrics().recordDropped(queued.getChannel());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 同期イベントを統合するためのキーを作成します。
+     *
+     * @param event 同期イベント
+     * @return チャンネルと統合のキーの組み合わせ、統合のキーがない場合はnull
+     */
+    private static String conflationKey(RedisMessageReceivedEvent event) {
+        MessageTransferObject messageTransferObject = event.getMessageTransferObject();
+        if (messageTransferObject == null || messageTransferObject.getConflationKey() == null) {
+            return null;
+        }
+        return event.getChannel() + '\0' + messageTransferObject.getConflationKey();
+    }
+
+    /**
+     * キューに溜められた同期イベントをティックごとの予算内で配信します。予算を超えたイベントは次のティックに持ち越されます。
+     */
+    private void deliverSyncEvents() {
+        int maxMessages = maxMessagesPerTick;
+        long maxNanos = maxNanosPerTick;
+        long start = System.nanoTime();
+        int delivered = 0;
+        BlockingQueue<RedisMessageReceivedEvent> queue = syncEventQueue;
+        if (queue == null) {
+            return;
+        }
+
+        while (maxMessages <= 0 || delivered < maxMessages) {
+            if (maxNanos > 0 && delivered > 0 && System.nanoTime() - start >= maxNanos) {
+                break;
+            }
+
+            RedisMessageReceivedEvent event = queue.poll();
+            if (event == null) {
+                break;
+            }
+
+            // 統合されたイベントは最新の内容に置き換える。以降の同じキーのイベントは再びキューに追加される
+            String conflationKey = conflationKey(event);
+            if (conflationKey != null) {
+                RedisMessageReceivedEvent latest = conflatedSyncEvents.remove(conflationKey);
+                if (latest != null) {
+                    event = latest;
+                }
+            }
+
+            Bukkit.getPluginManager().callEvent(event);
+            delivered++;
         }
     }
 
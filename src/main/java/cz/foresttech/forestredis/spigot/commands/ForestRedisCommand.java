@@ -0,0 +1,27 @@
+package cz.foresttech.forestredis.spigot.commands;
+
+import cz.foresttech.forestredis.shared.commands.AdminCommandExecutor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import java.util.List;
+
+/**
+ * ForestRedisAPIの管理コマンドのSpigot実装。
+ */
+public class ForestRedisCommand implements TabExecutor {
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        for (String line : AdminCommandExecutor.execute(args)) {
+            sender.sendMessage(line);
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        return AdminCommandExecutor.complete(args);
+    }
+}
@@ -33,6 +33,15 @@ public class RedisMessageReceivedEvent extends Event implements IRedisMessageRec
         this.messageTransferObject = messageTransferObject;
     }
 
+    /**
+     * 受信したメッセージのデータを含む{@link MessageTransferObject}を返します
+     *
+     * @return 受信したメッセージの{@link MessageTransferObject}
+     */
+    public MessageTransferObject getMessageTransferObject() {
+        return this.messageTransferObject;
+    }
+
     @Override
     public String getSenderIdentifier() {
         return this.messageTransferObject.getSenderIdentifier();
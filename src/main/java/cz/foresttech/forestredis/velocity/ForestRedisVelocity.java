@@ -1,6 +1,7 @@
 package cz.foresttech.forestredis.velocity;
 
 import com.google.inject.Inject;
+import com.velocitypowered.api.command.CommandManager;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
@@ -13,9 +14,11 @@ import cz.foresttech.forestredis.shared.IForestRedisPlugin;
 import cz.foresttech.forestredis.shared.RedisManager;
 import cz.foresttech.forestredis.shared.adapter.IConfigurationAdapter;
 import cz.foresttech.forestredis.shared.adapter.ILoggerAdapter;
+import cz.foresttech.forestredis.shared.commands.AdminCommandExecutor;
 import cz.foresttech.forestredis.shared.models.MessageTransferObject;
 import cz.foresttech.forestredis.velocity.adapter.VelocityConfigAdapter;
 import cz.foresttech.forestredis.velocity.adapter.VelocityLoggerAdapter;
+import cz.foresttech.forestredis.velocity.commands.ForestRedisCommand;
 import cz.foresttech.forestredis.velocity.events.RedisMessageReceivedEvent;
 import org.slf4j.Logger;
 
@@ -52,6 +55,9 @@ public class ForestRedisVelocity implements IForestRedisPlugin {
     @Subscribe
     public void onProxyInitialization(ProxyInitializeEvent event) {
         load();
+
+        CommandManager commandManager = server.getCommandManager();
+        commandManager.register(commandManager.metaBuilder(AdminCommandExecutor.COMMAND_NAME).plugin(this).build(), new ForestRedisCommand());
     }
 
     @Subscribe
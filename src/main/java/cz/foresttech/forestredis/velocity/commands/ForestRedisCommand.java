@@ -0,0 +1,30 @@
+package cz.foresttech.forestredis.velocity.commands;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import cz.foresttech.forestredis.shared.commands.AdminCommandExecutor;
+import net.kyori.adventure.text.Component;
+
+import java.util.List;
+
+/**
+ * ForestRedisAPIの管理コマンドのVelocity実装。
+ */
+public class ForestRedisCommand implements SimpleCommand {
+
+    @Override
+    public void execute(Invocation invocation) {
+        for (String line : AdminCommandExecutor.execute(invocation.arguments())) {
+            invocation.source().sendMessage(Component.text(line));
+        }
+    }
+
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        return AdminCommandExecutor.complete(invocation.arguments());
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission(AdminCommandExecutor.PERMISSION);
+    }
+}